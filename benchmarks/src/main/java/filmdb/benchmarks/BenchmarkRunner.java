@@ -0,0 +1,26 @@
+package filmdb.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line, writing the results in JSON unless another format is requested
+ * (i.e. "java -jar target/benchmarks.jar WebScraper -rf csv -rff results.csv")
+ */
+public class BenchmarkRunner {
+    private static final String RESULTS_FILE = "jmh-results.json";
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.addAll(Arrays.asList("-rf", "json"));
+            if (!arguments.contains("-rff")) {
+                arguments.addAll(Arrays.asList("-rff", RESULTS_FILE));
+            }
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
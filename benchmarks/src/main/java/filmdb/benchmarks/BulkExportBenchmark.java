@@ -0,0 +1,83 @@
+package filmdb.benchmarks;
+
+import filmdb.entities.Film;
+import filmdb.export.BulkSegmentWriter;
+import filmdb.export.ExportManifest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of 10k completed films, following the same steps as FilmScraper: serialization, change detection with the
+ * manifest and append to the bulk segments for every film, and closing of the segments and the manifest
+ * (generateBulkTasksFile). Every invocation writes in an empty folder, so all the films are exported
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkExportBenchmark {
+    private static final int FILMS = 10000;
+    private static final long SEGMENT_BYTES = 3 * 1024 * 1024;
+
+    // Uncompressed segments, and gzip segments with 256 KB blocks
+    @Param({"0", "262144"})
+    public int compressionBlockSize;
+
+    private List<Film> films;
+    private File directory;
+
+    @Setup(Level.Trial)
+    public void createFilms() throws Exception {
+        this.films = Fixtures.completedFilms(FILMS);
+    }
+
+    @Setup(Level.Invocation)
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("bulk-benchmark").toFile();
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDirectory() {
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    @Benchmark
+    public int exportBulkTasks10k() throws IOException {
+        ExportManifest manifest = new ExportManifest(new File(this.directory, "bulkManifest.json").getPath());
+        BulkSegmentWriter writer = new BulkSegmentWriter(this.directory.getPath(), "bulkTasks", SEGMENT_BYTES, this.compressionBlockSize);
+        for (Film film : this.films) {
+            String document = film.toJson();
+            if (manifest.update(film.getImdbID(), ExportManifest.contentHash(document))) {
+                writer.append(film.getImdbID(), document);
+            }
+        }
+        writer.close();
+        manifest.save();
+        return writer.getWrittenTasks();
+    }
+}
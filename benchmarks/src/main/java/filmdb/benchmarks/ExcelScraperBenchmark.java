@@ -0,0 +1,45 @@
+package filmdb.benchmarks;
+
+import filmdb.entities.Film;
+import filmdb.scrappers.ExcelScraper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Initial data load: reading 1000 rows of the IMDb excel file, including the opening of the workbook
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExcelScraperBenchmark {
+    private File excelFile;
+    private OutputStream log;
+
+    @Setup
+    public void copyFixture() throws Exception {
+        this.excelFile = Fixtures.copyToTemporaryFile(Fixtures.SAMPLE_EXCEL);
+        this.log = Fixtures.discardingStream();
+    }
+
+    @Benchmark
+    public List<Film> scrapExcel1kRows() throws Exception {
+        // The first row contains the headers
+        return new ExcelScraper(this.excelFile.getPath()).scrapExcel(1, Fixtures.SAMPLE_EXCEL_ROWS, this.log);
+    }
+}
@@ -0,0 +1,38 @@
+package filmdb.benchmarks;
+
+import filmdb.entities.Film;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a completed film, done once per film for the journal and once for the bulk segments
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilmSerializationBenchmark {
+    private Film film;
+
+    @Setup
+    public void createFilm() throws Exception {
+        this.film = Fixtures.completedFilms(1).get(0);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return this.film.toJson();
+    }
+}
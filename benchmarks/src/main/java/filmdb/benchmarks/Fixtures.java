@@ -0,0 +1,121 @@
+package filmdb.benchmarks;
+
+import filmdb.entities.Film;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.InvalidPropertiesFormatException;
+import java.util.List;
+
+/**
+ * Access to the fixtures of the benchmarks: IMDb pages saved as HTML, and the first 1000 rows of the IMDb excel file
+ */
+final class Fixtures {
+    static final String FILM_URL = "https://www.imdb.com/title/tt1375666/";
+    static final String MAIN_PAGE = "main.html";
+    static final String FULL_CREDITS_PAGE = "fullcredits.html";
+    static final String PLOT_SUMMARY_PAGE = "plotsummary.html";
+    static final String KEYWORDS_PAGE = "keywords.html";
+    static final String LOCATIONS_PAGE = "locations.html";
+    static final String SAMPLE_EXCEL = "MovieGenre-sample-1k.xlsx";
+    static final int SAMPLE_EXCEL_ROWS = 1000;
+
+    private static final String FIXTURES_DIR = "/fixtures/";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Reads a fixture as UTF-8 text
+     *
+     * @param name Name of the fixture
+     * @return The content of the fixture
+     * @throws IOException Raised if the fixture could not be read
+     */
+    static String readText(String name) throws IOException {
+        return new String(Fixtures.readBytes(name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies a fixture to a temporary file, for the classes that need a path
+     *
+     * @param name Name of the fixture
+     * @return The temporary file, deleted when the JVM exits
+     * @throws IOException Raised if the fixture could not be copied
+     */
+    static File copyToTemporaryFile(String name) throws IOException {
+        File file = File.createTempFile("fixture-", "-" + name);
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(Fixtures.readBytes(name));
+        }
+        return file;
+    }
+
+    /**
+     * Creates completed films with the attributes scrapped from the HTML fixtures
+     *
+     * @param count Number of films
+     * @return A List of {@link Film} with consecutive imdbIDs
+     * @throws InvalidPropertiesFormatException Raised if any attribute is invalid
+     */
+    static List<Film> completedFilms(int count) throws InvalidPropertiesFormatException {
+        List<Film> films = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Film film = new Film(i);
+            film.setUrl("https://www.imdb.com/title/tt" + String.format("%07d", i) + "/");
+            film.setTitle("Inception (2010)");
+            film.setAvgScore(8.8F);
+            film.setGenres(new String[]{"Action", "Adventure", "Sci-Fi"});
+            film.setMainActors(new String[]{"Leonardo DiCaprio", "Joseph Gordon-Levitt", "Elliot Page", "Tom Hardy", "Ken Watanabe"});
+            film.setSynopsis("Dom Cobb is a skilled thief, the absolute best in the dangerous art of extraction, stealing valuable "
+                    + "secrets from deep within the subconscious during the dream state, when the mind is at its most vulnerable. "
+                    + "Film number " + i + ".");
+            film.setPlotKeywords(new String[]{"dream", "subconscious", "heist", "corporate espionage", "spinning top"});
+            film.setFilmingLocations(new String[]{"Tangier, Morocco", "Paris, France", "Calgary, Alberta, Canada"});
+            film.setOriginCountry("USA");
+            film.setPrimaryLanguages(new String[]{"English", "Japanese", "French"});
+            film.setDictionaryTags(new String[0]);
+            film.setDictionaryTerms(new String[0]);
+            film.getStatus().setStatusCompleted();
+            films.add(film);
+        }
+        return films;
+    }
+
+    /**
+     * {@link OutputStream} that discards everything, used as the log of the scrappers
+     */
+    static OutputStream discardingStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    private static byte[] readBytes(String name) throws IOException {
+        try (InputStream in = Fixtures.class.getResourceAsStream(FIXTURES_DIR + name)) {
+            if (in == null) {
+                throw new IOException("Fixture not found: " + name);
+            }
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toByteArray();
+        }
+    }
+}
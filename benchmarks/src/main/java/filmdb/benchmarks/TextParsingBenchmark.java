@@ -0,0 +1,50 @@
+package filmdb.benchmarks;
+
+import filmdb.scrappers.WebScraper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text helpers of {@link WebScraper} applied to every scrapped value
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextParsingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dates {
+        // Release date of the main page, and an excel title with the year at the end
+        @Param({"16 July 2010 (USA)", "Daddy-Long-Legs (1919)"})
+        public String date;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Texts {
+        // Short actor name, and a synopsis paragraph with non-ascii characters
+        @Param({"Leonardo DiCaprio", "Dom Cobb is a skilled thief \u2014 the absolute best in the dangerous art of extraction \u2014 stealing valuable secrets from deep within the subconscious during the dream state, when the mind is at its most vulnerable. Cobb's rare ability has made him a coveted player in this treacherous new world of corporate espionage, but it has also made him an international fugitive and cost him everything he has ever loved. Now Cobb is being offered a chance at redemption: one last job could give him his life back, but only if he can accomplish the impossible \u2014 inception."})
+        public String text;
+    }
+
+    @Benchmark
+    public int parseYear(Dates dates) {
+        return WebScraper.parseYear(dates.date);
+    }
+
+    @Benchmark
+    public String removeNonAsciiChars(Texts texts) {
+        return WebScraper.removeNonAsciiChars(texts.text);
+    }
+}
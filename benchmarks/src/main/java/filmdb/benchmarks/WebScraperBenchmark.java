@@ -0,0 +1,98 @@
+package filmdb.benchmarks;
+
+import filmdb.scrappers.WebScraper;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of every attribute from its IMDb page. Each benchmark parses the page it needs (the main page
+ * is parsed in advance for the subpages, because it is only used to find their URLs) and runs the {@link WebScraper}
+ * method, as the scrapper does once the page is downloaded
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebScraperBenchmark {
+    private String mainPage;
+    private String fullCreditsPage;
+    private String plotSummaryPage;
+    private String keywordsPage;
+    private String locationsPage;
+    private Document mainDocument;
+
+    @Setup
+    public void loadFixtures() throws IOException {
+        this.mainPage = Fixtures.readText(Fixtures.MAIN_PAGE);
+        this.fullCreditsPage = Fixtures.readText(Fixtures.FULL_CREDITS_PAGE);
+        this.plotSummaryPage = Fixtures.readText(Fixtures.PLOT_SUMMARY_PAGE);
+        this.keywordsPage = Fixtures.readText(Fixtures.KEYWORDS_PAGE);
+        this.locationsPage = Fixtures.readText(Fixtures.LOCATIONS_PAGE);
+        this.mainDocument = Jsoup.parse(this.mainPage, Fixtures.FILM_URL);
+    }
+
+    @Benchmark
+    public Document parseMainPage() {
+        return Jsoup.parse(this.mainPage, Fixtures.FILM_URL);
+    }
+
+    @Benchmark
+    public int mainPageReleaseYear() {
+        return this.mainPageScraper().getReleaseYear();
+    }
+
+    @Benchmark
+    public String mainPageCountryOfOrigin() {
+        return this.mainPageScraper().getCountryOfOrigin();
+    }
+
+    @Benchmark
+    public String[] mainPagePrimaryLanguages() {
+        return this.mainPageScraper().getPrimaryLanguages();
+    }
+
+    @Benchmark
+    public String[] fullCreditsMainActors() {
+        return this.subpageScraper("fullcredits", this.fullCreditsPage).getMainActors();
+    }
+
+    @Benchmark
+    public String plotSummarySynopsis() {
+        return this.subpageScraper("plotsummary", this.plotSummaryPage).getSynopsis();
+    }
+
+    @Benchmark
+    public String[] keywordsPlotKeywords() {
+        return this.subpageScraper("keywords", this.keywordsPage).getPlotKeywords();
+    }
+
+    @Benchmark
+    public String[] locationsFilmingLocations() {
+        return this.subpageScraper("locations", this.locationsPage).getFilmingLocations();
+    }
+
+    private WebScraper mainPageScraper() {
+        return new WebScraper(Fixtures.FILM_URL, Jsoup.parse(this.mainPage, Fixtures.FILM_URL), Collections.<String, Document>emptyMap());
+    }
+
+    private WebScraper subpageScraper(String keyword, String page) {
+        Document subpage = Jsoup.parse(page, Fixtures.FILM_URL + keyword);
+        return new WebScraper(Fixtures.FILM_URL, this.mainDocument, Collections.singletonMap(keyword, subpage));
+    }
+}
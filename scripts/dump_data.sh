@@ -1,29 +1,16 @@
 #!/bin/bash
 
 #parameters
-originaBulkFile="../../output/bulkTasks.json"
-tempDir="temp"
+bulkDir="../output/bulk"
 
-#To use curl, the response size must be at most 4MB
-#4000 lines per file ~3MB 
-lines_per_file=4000
-i=0
-
-mkdir $tempDir
-cd $tempDir/
-split -l $lines_per_file -d $originaBulkFile
-#count the total number of segments created from the original file
-total_files=$(find . -maxdepth 1 -type f | wc -l)
-
-while [ $i -lt $total_files ]; do
-    if [ $i -lt 10 ]; then
-        tempFileName="@x0$i"    
-    else
-        tempFileName="@x$i"
-    fi            
-    (( i += 1 ))
-    curl -H "Content-Type: application/x-ndjson" -XPOST localhost:9200/films/_bulk?pretty --data-binary "$tempFileName"    
+#The scrapper writes the bulk tasks in segments of ~3 MB (to use curl, the request size must be at most 4MB)
+#Each segment bulkTasks-NNNNN.json has an index bulkTasks-NNNNN.idx with the imdbIDs it contains
+for segment in "$bulkDir"/bulkTasks-*.json; do
+    [ -e "$segment" ] || continue
+    curl -H "Content-Type: application/x-ndjson" -XPOST localhost:9200/films/_bulk?pretty --data-binary "@$segment"
+done
+#Compressed segments (bulkTasks-NNNNN.json.gz) are sent as they are, the node decompresses them
+for segment in "$bulkDir"/bulkTasks-*.json.gz; do
+    [ -e "$segment" ] || continue
+    curl -H "Content-Type: application/x-ndjson" -H "Content-Encoding: gzip" -XPOST localhost:9200/films/_bulk?pretty --data-binary "@$segment"
 done
-#temporal files no longer needed. Delete them
-cd ..
-rm -r $tempDir
@@ -0,0 +1,48 @@
+package filmdb;
+
+import filmdb.loader.BulkLoader;
+
+public class BulkLoaderApp {
+
+    // Required External references
+    private static final String BULK_TASKS_DIR = "..//mm-IMDb-database//output//bulk";
+    private static final String BULK_API_ENDPOINT = "http://localhost:9200/films/_bulk";
+
+    // Execution parameters
+    private static final int MAX_REQUESTS_IN_FLIGHT = 4;
+    private static final long MAX_REQUEST_BYTES = 5 * 1024 * 1024;
+
+    public static void main(String[] args) {
+
+        BulkLoaderApp bulkLoaderApp = new BulkLoaderApp();
+        System.exit(bulkLoaderApp.loadBulkSegments(args.length > 0 ? args[0] : BULK_API_ENDPOINT));
+
+    }
+
+    /**
+     * Sends all the bulk segments generated by the scrapper to the Bulk API
+     *
+     * @param endpoint URL of the Bulk API
+     * @return 0 if all the documents were indexed. 1 otherwise
+     */
+    private int loadBulkSegments(String endpoint) {
+        int errno = 1;
+        try {
+            long start = System.currentTimeMillis();
+            BulkLoader bulkLoader = new BulkLoader(endpoint, MAX_REQUESTS_IN_FLIGHT, MAX_REQUEST_BYTES);
+            bulkLoader.loadSegments(BULK_TASKS_DIR);
+            bulkLoader.close();
+            System.out.println("Indexed documents: " + bulkLoader.getIndexedDocs());
+            System.out.println("Failed documents: " + bulkLoader.getFailedDocs());
+            System.out.println("Retried documents: " + bulkLoader.getRetriedDocs());
+            System.out.println("Throttled requests: " + bulkLoader.getThrottledRequests());
+            System.out.println("Loading time: " + ((System.currentTimeMillis() - start) / 1000.0) + " seconds");
+            if (bulkLoader.getFailedDocs() == 0) {
+                errno = 0;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return errno;
+    }
+}
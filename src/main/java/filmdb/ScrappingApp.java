@@ -1,16 +1,33 @@
 package filmdb;
 
+import filmdb.coordinator.LeaseCoordinator;
+import filmdb.daemon.ScrapDaemon;
+import filmdb.entities.ScrapPlan;
+import filmdb.logging.LogAnalyzer;
+import filmdb.metrics.MetricsHttpServer;
+import filmdb.metrics.MetricsRegistry;
+import filmdb.posters.PosterPipeline;
 import filmdb.scrappers.FilmScraper;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ScrappingApp {
 
     // Required External references
     private static final String IMDb_DATA_EXCEL = "..//mm-IMDb-database//imdb-data//MovieGenreIGC_v3.xlsx";
 
-    // Execution parameters
+    // Execution parameters: rows of the excel file loaded in the full, resume and sharded modes
     private static final int START_INDEX = 36000;
     private static final int TOTAL_SCRAPS = 9000;
     // Single-scrap execution mode parameters
@@ -21,29 +38,122 @@ public class ScrappingApp {
     private static final String FILMS_TO_SCRAP = "[1132193, 2316325, 1022603, 1811293]";
     // Full-scrap execution mode parameters
     private static final int FULL_SCRAP = 3;
+    // Resume execution mode parameters: full scrap of the films not recorded in the journal of an interrupted run
+    private static final int RESUME_SCRAP = 4;
+    // Sharded execution mode parameters: the rows [START_INDEX, START_INDEX + TOTAL_SCRAPS) are split in leases
+    // handed out to every process started in this mode (on this or other machines sharing the output folder)
+    private static final int SHARDED_SCRAP = 5;
+    private static final String LEASE_FILE = "..//mm-IMDb-database//output//leases.json";
+    private static final int ROWS_PER_LEASE = 500;
+    private static final long LEASE_DURATION = 5 * 60 * 1000; // measured in milliseconds
+    private static final long LEASE_POLL_INTERVAL = 30 * 1000; // measured in milliseconds
+    // Refresh execution mode parameters: the films of the snapshot are scrapped again with conditional requests,
+    // highest avgScore first, until REFRESH_REQUEST_BUDGET requests have been sent
+    private static final int REFRESH_SCRAP = 6;
+    private static final int REFRESH_REQUEST_BUDGET = 20000;
+    // Daemon execution mode parameters: the process keeps running, and scraps the jobs (single, set, range or refresh)
+    // submitted to http://localhost:DAEMON_PORT/jobs, so that they do not pay for the startup of a new process
+    private static final int DAEMON_SCRAP = 7;
+    private static final int DAEMON_PORT = 9405;
+    private static final int DAEMON_CONCURRENT_JOBS = 2;
+    private static final int DAEMON_QUEUED_JOBS = 64;
+    // Log analysis mode parameters: the history of the runs in the scrapping log is summed up in LOG_REPORT
+    private static final int ANALYZE_LOG = 8;
+    private static final String LOG_REPORT = "..//mm-IMDb-database//output//logReport.json";
+    // If true, the full, resume and sharded modes start the films that were slowest in the previous runs first
+    private static final boolean SLOWEST_FILMS_FIRST = true;
+    // If true, only the attributes required to complete a film are scrapped (see ScrapPlan#requiredOnly()),
+    // so the pages of the optional attributes, and the keywords of the films with a synopsis, are not requested
+    private static final boolean REQUIRED_ATTRIBUTES_ONLY = false;
+    // If true, the posters of the completed films are downloaded while the films are scrapped, and their thumbnails
+    // are packed in POSTER_STORE. Not available in the sharded mode, since the poster file is not merged between processes
+    private static final boolean DOWNLOAD_POSTERS = false;
+    private static final String POSTER_STORE = "..//mm-IMDb-database//output//posters.pack";
+    private static final int POSTER_DOWNLOAD_THREADS = 4;
+    private static final int POSTER_BUFFERED_IMAGES = 32;
+    private static final int POSTER_THUMBNAIL_WIDTH = 182; // measured in pixels
+    // Maximum time spent on the pages of a film: when it expires, the film keeps the attributes already scrapped and
+    // the rest are retried after the main pass. 0 for no limit (i.e. films are never cut short), which is the default
+    private static final long FILM_TIME_BUDGET = 0; // measured in milliseconds
+    // Maximum time during which films are started (and retried). The films in progress end within FILM_TIME_BUDGET, and
+    // the rest are left for the RESUME_SCRAP mode. 0 for no limit. Not applied in the sharded mode, where leases are completed
+    private static final long RUN_TIME_BUDGET = 0; // measured in milliseconds
+    // Port of the Prometheus endpoint (http://localhost:METRICS_PORT/metrics). The metrics are also available through JMX
+    private static final int METRICS_PORT = 9404;
+
+    // Scrap times of the previous runs, loaded from the log once and shared by every range of the sharded mode
+    private Map<Integer, Double> expectedScrapTimes;
 
 
     public static void main(String[] args) {
 
         ScrappingApp scrappingApp = new ScrappingApp();
-        System.exit(scrappingApp.startFilmScrappingRoutine(SINGLE_SCRAP));
+        scrappingApp.startMetricsEndpoints();
+        int mode = SINGLE_SCRAP;
+        if (mode == SHARDED_SCRAP) {
+            System.exit(scrappingApp.startShardedScrappingRoutine());
+        }
+        if (mode == ANALYZE_LOG) {
+            System.exit(scrappingApp.analyzeLog());
+        }
+        if (mode == DAEMON_SCRAP) {
+            // The process is kept alive by the threads of the daemon until it is stopped
+            if (scrappingApp.startDaemon() != 0) {
+                System.exit(1);
+            }
+            return;
+        }
+        System.exit(scrappingApp.startFilmScrappingRoutine(mode));
 
     }
 
     /**
-     * Creates {@link FilmScraper} and starts the scrapping process in one of the three different modes.
+     * Registers the metrics in JMX and starts the Prometheus endpoint. The scrapping process goes on even if they
+     * could not be started (i.e. the port is already in use by another worker on the same machine)
+     */
+    private void startMetricsEndpoints() {
+        try {
+            MetricsRegistry.getDefault().registerMBean();
+            new MetricsHttpServer(METRICS_PORT, MetricsRegistry.getDefault());
+        } catch (Exception e) {
+            System.out.println("UNSUCCESSFUL function 'startMetricsEndpoints' (ref: " + e + ")");
+        }
+    }
+
+    /**
+     * Creates {@link FilmScraper} and starts the scrapping process in one of the five different modes.
      *
      * @param mode Scrapping mode
      * @return 0 if the routine ended successfully. 1 otherwise
      * @see ScrappingApp#SINGLE_SCRAP
      * @see ScrappingApp#SET_SCRAP
      * @see ScrappingApp#FULL_SCRAP
+     * @see ScrappingApp#RESUME_SCRAP
+     * @see ScrappingApp#REFRESH_SCRAP
      */
     private int startFilmScrappingRoutine(int mode) {
         int errno = 1;
         try {
-            //Scrap all the needed information about the films from the Excel file and the film's url
-            FilmScraper filmScraper = new FilmScraper(IMDb_DATA_EXCEL, START_INDEX, TOTAL_SCRAPS);
+            //Scrap all the needed information about the films from the Excel file and the film's url.
+            //The single and set modes only load the requested films, from the row index of the Excel file
+            FilmScraper filmScraper;
+            if (mode == SINGLE_SCRAP) {
+                filmScraper = new FilmScraper(IMDb_DATA_EXCEL, Collections.singletonList(SINGLE_FILM_TO_SCRAP));
+            } else if (mode == SET_SCRAP) {
+                filmScraper = new FilmScraper(IMDb_DATA_EXCEL, ScrappingApp.parseFilmList(FILMS_TO_SCRAP));
+            } else {
+                filmScraper = new FilmScraper(IMDb_DATA_EXCEL, START_INDEX, TOTAL_SCRAPS);
+            }
+            filmScraper.setScrapPlan(ScrappingApp.getScrapPlan());
+            filmScraper.setTimeBudgets(FILM_TIME_BUDGET, RUN_TIME_BUDGET);
+            if (SLOWEST_FILMS_FIRST && (mode == FULL_SCRAP || mode == RESUME_SCRAP)) {
+                filmScraper.setExpectedScrapTimes(this.getExpectedScrapTimes());
+            }
+            PosterPipeline posterPipeline = null;
+            if (DOWNLOAD_POSTERS) {
+                posterPipeline = new PosterPipeline(POSTER_STORE, POSTER_DOWNLOAD_THREADS, POSTER_BUFFERED_IMAGES, POSTER_THUMBNAIL_WIDTH);
+                filmScraper.attachPosterPipeline(posterPipeline);
+            }
             switch (mode) {
                 case SINGLE_SCRAP:
                     //1st mode: scrap a single film
@@ -57,19 +167,202 @@ public class ScrappingApp {
                     //3rd mode: scrap all available films
                     filmScraper.scrapAllFilms();
                     break;
+                case RESUME_SCRAP:
+                    //4th mode: restore the films of the journal and scrap the rest
+                    filmScraper.resumeFromJournal();
+                    filmScraper.scrapAllFilms();
+                    break;
+                case REFRESH_SCRAP:
+                    //6th mode: refresh the films already scrapped
+                    filmScraper.refreshFilms(REFRESH_REQUEST_BUDGET);
+                    break;
                 default:
                     throw new Exception("Unrecognized mode ");
             }
             //Generate the Bulk JSON file to insert the documents in Elastic Search
-            filmScraper.generateBulkTasksFile();
+            boolean exported = filmScraper.generateBulkTasksFile();
+            //Update the binary snapshot with the films scrapped
+            exported = filmScraper.generateSnapshotFile() && exported;
+            if (posterPipeline != null) {
+                //Wait for the posters still being downloaded and write the poster file
+                posterPipeline.close();
+            }
+            //The journal is kept if the films could not be exported, so that they can be restored with RESUME_SCRAP
             filmScraper.close();
+            errno = exported ? 0 : 1;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return errno;
+    }
+
+    /**
+     * Starts a worker that scraps, one after another, the ranges of rows leased by the {@link LeaseCoordinator}.
+     * Every range is scrapped by its own {@link FilmScraper}, resuming the journal left by a worker that died while
+     * scrapping it. The lease is renewed in the background while the range is being scrapped. The worker ends when
+     * every range has been completed
+     *
+     * @return 0 if all the ranges were completed. 1 otherwise
+     */
+    private int startShardedScrappingRoutine() {
+        int errno = 1;
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+        try {
+            LeaseCoordinator coordinator = new LeaseCoordinator(LEASE_FILE, ManagementFactory.getRuntimeMXBean().getName(), LEASE_DURATION);
+            coordinator.initialize(START_INDEX, TOTAL_SCRAPS, ROWS_PER_LEASE);
+            while (!coordinator.isFinished()) {
+                LeaseCoordinator.Lease lease = coordinator.acquire();
+                if (lease == null) {
+                    // Every remaining range is leased by other workers. Wait in case any of them dies
+                    Thread.sleep(LEASE_POLL_INTERVAL);
+                    continue;
+                }
+                System.out.println("****** Worker " + coordinator.getWorkerId() + " leased rows " + lease + " (attempt " + lease.getAttempts() + ")");
+                // If the lease is taken over (i.e. it could not be renewed in time), the scrap of the range is aborted,
+                // since the new owner resumes the same journal and writes the same bulk segments
+                AtomicBoolean leaseLost = new AtomicBoolean(false);
+                AtomicReference<FilmScraper> leaseScraper = new AtomicReference<>();
+                ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> {
+                    try {
+                        if (!coordinator.renew(lease) && !leaseLost.getAndSet(true)) {
+                            System.out.println("****** Lease of rows " + lease + " taken over by another worker: scrap aborted");
+                            FilmScraper current = leaseScraper.get();
+                            if (current != null) {
+                                current.stop();
+                            }
+                        }
+                    } catch (Exception e) {
+                        System.out.println("UNSUCCESSFUL function 'renew' (ref: " + e + ")");
+                    }
+                }, LEASE_DURATION / 3, LEASE_DURATION / 3, TimeUnit.MILLISECONDS);
+                try {
+                    FilmScraper filmScraper = new FilmScraper(IMDb_DATA_EXCEL, lease.getStartIndex(), lease.getTotalRows(), lease.getName());
+                    leaseScraper.set(filmScraper);
+                    if (leaseLost.get()) {
+                        filmScraper.stop();
+                    }
+                    filmScraper.setScrapPlan(ScrappingApp.getScrapPlan());
+                    filmScraper.setTimeBudgets(FILM_TIME_BUDGET, 0);
+                    if (SLOWEST_FILMS_FIRST) {
+                        filmScraper.setExpectedScrapTimes(this.getExpectedScrapTimes());
+                    }
+                    filmScraper.resumeFromJournal();
+                    filmScraper.scrapAllFilms();
+                    if (leaseLost.get()) {
+                        // Nothing is exported: the films of the journal are exported by the new owner
+                        renewal.cancel(false);
+                        filmScraper.close();
+                        continue;
+                    }
+                    boolean exported = filmScraper.generateBulkTasksFile();
+                    exported = filmScraper.generateSnapshotFile() && exported;
+                    filmScraper.close();
+                    if (!exported) {
+                        // The lease is released with its journal, so the range is exported again by the next worker
+                        throw new Exception("Impossible to export the films of rows " + lease);
+                    }
+                    renewal.cancel(false);
+                    if (!coordinator.complete(lease)) {
+                        System.out.println("****** Lease of rows " + lease + " taken over by another worker before it was completed");
+                    }
+                } catch (Exception e) {
+                    renewal.cancel(false);
+                    coordinator.release(lease);
+                    throw e;
+                }
+            }
             errno = 0;
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            heartbeat.shutdownNow();
         }
         return errno;
     }
 
+    /**
+     * Starts a {@link ScrapDaemon} that runs the jobs submitted to its API until the process is stopped. Posters are not
+     * downloaded in this mode, and every film is limited by {@link ScrappingApp#FILM_TIME_BUDGET}, if set.
+     * The jobs already running are completed when the process is stopped (i.e. with SIGTERM)
+     *
+     * @return 0 if the daemon was started. 1 otherwise
+     */
+    private int startDaemon() {
+        int errno = 1;
+        try {
+            ScrapDaemon daemon = new ScrapDaemon(IMDb_DATA_EXCEL, FilmScraper.EXCEL_ROW_INDEX, DAEMON_PORT, DAEMON_CONCURRENT_JOBS,
+                    DAEMON_QUEUED_JOBS, ScrappingApp.getScrapPlan(), FILM_TIME_BUDGET, REFRESH_REQUEST_BUDGET);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    daemon.close();
+                } catch (Exception e) {
+                    System.out.println("UNSUCCESSFUL function 'close' (ref: " + e + ")");
+                }
+            }, "daemon-shutdown"));
+            System.out.println("****** Daemon listening on http://localhost:" + daemon.getPort() + ScrapDaemon.JOBS_PATH);
+            errno = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return errno;
+    }
+
+    /**
+     * Analyzes the history of the runs in the scrapping log with a {@link LogAnalyzer}, writes the report in
+     * {@link ScrappingApp#LOG_REPORT} and prints a summary of every run
+     *
+     * @return 0 if the report was written. 1 otherwise
+     */
+    private int analyzeLog() {
+        int errno = 1;
+        try {
+            LogAnalyzer.Report report = new LogAnalyzer(FilmScraper.SCRAP_LOG, Runtime.getRuntime().availableProcessors()).analyze();
+            report.write(LOG_REPORT);
+            System.out.println("****** Log analyzed: " + report.getLines() + " lines, " + report.getRuns().size() + " runs ("
+                    + report.getAnalysisMillis() + " ms)");
+            for (LogAnalyzer.Run run : report.getRuns()) {
+                System.out.println(run.getStartedAt() + " [" + run.getMode() + "]: " + run.getScrappedFilms() + " scrapped, "
+                        + run.getIncompleteFilms() + " incomplete, " + run.getFailedFilms() + " failed, "
+                        + (run.getFilmsPerMinute() == null ? "-" : String.format("%.1f", run.getFilmsPerMinute())) + " films/minute, p50 "
+                        + run.getP50Seconds() + " s, p90 " + run.getP90Seconds() + " s, max " + run.getMaxSeconds() + " s");
+            }
+            System.out.println("****** Errors: " + report.getErrorReasons());
+            System.out.println("****** Chronic failures: " + report.getChronicFailures().size() + ", report written in " + LOG_REPORT);
+            errno = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return errno;
+    }
+
+    /**
+     * Provides the mean scrap time of the films scrapped in previous runs, analyzing the scrapping log the first time
+     *
+     * @return Map of imdbID to mean scrap time, measured in seconds. Null if the log could not be analyzed
+     */
+    private Map<Integer, Double> getExpectedScrapTimes() {
+        if (this.expectedScrapTimes == null && new File(FilmScraper.SCRAP_LOG).isFile()) {
+            try {
+                LogAnalyzer.Report report = new LogAnalyzer(FilmScraper.SCRAP_LOG, Runtime.getRuntime().availableProcessors()).analyze();
+                this.expectedScrapTimes = report.getExpectedScrapTimes();
+                System.out.println("****** Scrap times of " + this.expectedScrapTimes.size() + " films loaded from the log ("
+                        + report.getAnalysisMillis() + " ms)");
+            } catch (Exception e) {
+                System.out.println("UNSUCCESSFUL function 'getExpectedScrapTimes' (ref: " + e + ")");
+            }
+        }
+        return this.expectedScrapTimes;
+    }
+
+    /**
+     * Provides the {@link ScrapPlan} of the execution
+     *
+     * @return {@link ScrapPlan#requiredOnly()} if {@link ScrappingApp#REQUIRED_ATTRIBUTES_ONLY} is set. {@link ScrapPlan#full()} otherwise
+     */
+    private static ScrapPlan getScrapPlan() {
+        return REQUIRED_ATTRIBUTES_ONLY ? ScrapPlan.requiredOnly() : ScrapPlan.full();
+    }
+
     /**
      * Parses the given String, containing film's IDs, to a List of integers, with those IDs
      *
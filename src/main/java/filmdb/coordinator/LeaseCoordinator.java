@@ -0,0 +1,299 @@
+package filmdb.coordinator;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out leases on ranges of rows of the excel file to any number of worker processes. The state of the leases is
+ * kept in a JSON file, on storage shared by all the workers, that is only read or written while holding an exclusive
+ * lock on it. A lease expires if its worker does not renew it in time (i.e. the worker died), so that another worker
+ * can take the range over.
+ * <p>
+ * Methods are synchronized because a JVM cannot hold two locks on the same file (i.e. the thread that renews the lease
+ * and the thread that completes it).
+ */
+public class LeaseCoordinator {
+    private final File file;
+    private final String workerId;
+    private final long leaseMillis;
+    private final Gson gson;
+
+    /**
+     * Range of rows leased to a worker
+     */
+    public static class Lease {
+        private int startIndex;
+        private int totalRows;
+        private String owner;
+        private long expiresAt;
+        private boolean completed;
+        // Number of times the range has been leased. It is the epoch of the lease: a worker only holds the lease
+        // while both the owner and the epoch match the ones it got when the lease was acquired
+        private int attempts;
+
+        public int getStartIndex() {
+            return startIndex;
+        }
+
+        public int getTotalRows() {
+            return totalRows;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Name that identifies the range, used to name the files of the worker that scraps it
+         */
+        public String getName() {
+            return "rows" + this.startIndex;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + this.startIndex + ", " + (this.startIndex + this.totalRows) + ")";
+        }
+    }
+
+    /**
+     * Content of the state file
+     */
+    private static class LeaseState {
+        private List<Lease> leases = new ArrayList<>();
+    }
+
+    /**
+     * Constructor to initialize a new {@link LeaseCoordinator}
+     *
+     * @param path        Route to the state file, shared by all the workers
+     * @param workerId    Unique name of this worker (i.e. pid@host)
+     * @param leaseMillis Time that a lease lasts without being renewed
+     * @throws IOException Raised if the path could not be resolved
+     */
+    public LeaseCoordinator(String path, String workerId, long leaseMillis) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        this.workerId = workerId;
+        this.leaseMillis = leaseMillis;
+        this.gson = new Gson();
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * Splits a range of rows into leases. Nothing is done if the state file already contains leases, so every worker
+     * can call this method and only the first one creates the leases
+     *
+     * @param startIndex   First row of the range
+     * @param totalRows    Number of rows of the range
+     * @param rowsPerLease Maximum number of rows of each lease
+     * @throws IOException Raised if the state file could not be read or written
+     */
+    public synchronized void initialize(int startIndex, int totalRows, int rowsPerLease) throws IOException {
+        try (RandomAccessFile stateFile = this.openStateFile()) {
+            FileLock fileLock = stateFile.getChannel().lock();
+            try {
+                LeaseState state = this.read(stateFile.getChannel());
+                if (state.leases.isEmpty()) {
+                    for (int start = startIndex; start < startIndex + totalRows; start += rowsPerLease) {
+                        Lease lease = new Lease();
+                        lease.startIndex = start;
+                        lease.totalRows = Math.min(rowsPerLease, startIndex + totalRows - start);
+                        state.leases.add(lease);
+                    }
+                    this.write(stateFile.getChannel(), state);
+                }
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * Takes the first range that is neither completed nor leased by another worker. Ranges whose lease has expired
+     * are taken over
+     *
+     * @return The {@link Lease}, or null if there is no range available at the moment
+     * @throws IOException Raised if the state file could not be read or written
+     */
+    public synchronized Lease acquire() throws IOException {
+        try (RandomAccessFile stateFile = this.openStateFile()) {
+            FileLock fileLock = stateFile.getChannel().lock();
+            try {
+                LeaseState state = this.read(stateFile.getChannel());
+                long now = System.currentTimeMillis();
+                for (Lease lease : state.leases) {
+                    if (!lease.completed && (lease.owner == null || lease.expiresAt < now || lease.owner.equals(this.workerId))) {
+                        lease.owner = this.workerId;
+                        lease.expiresAt = now + this.leaseMillis;
+                        lease.attempts++;
+                        this.write(stateFile.getChannel(), state);
+                        return lease;
+                    }
+                }
+            } finally {
+                fileLock.release();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extends a lease held by this worker
+     *
+     * @param lease {@link Lease} to be renewed
+     * @return True if the lease was renewed. False if it has been taken over by another worker
+     * @throws IOException Raised if the state file could not be read or written
+     */
+    public synchronized boolean renew(Lease lease) throws IOException {
+        try (RandomAccessFile stateFile = this.openStateFile()) {
+            FileLock fileLock = stateFile.getChannel().lock();
+            try {
+                LeaseState state = this.read(stateFile.getChannel());
+                Lease current = LeaseCoordinator.find(state, lease);
+                if (!this.isHeld(current, lease)) {
+                    return false;
+                }
+                current.expiresAt = System.currentTimeMillis() + this.leaseMillis;
+                this.write(stateFile.getChannel(), state);
+                return true;
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * Marks a range as completed, so that it is not leased again. Nothing is done if the lease is no longer held by
+     * this worker (i.e. it expired and was taken over by another worker)
+     *
+     * @param lease {@link Lease} of the range
+     * @return True if the range was marked as completed. False if the lease has been taken over
+     * @throws IOException Raised if the state file could not be read or written
+     */
+    public synchronized boolean complete(Lease lease) throws IOException {
+        try (RandomAccessFile stateFile = this.openStateFile()) {
+            FileLock fileLock = stateFile.getChannel().lock();
+            try {
+                LeaseState state = this.read(stateFile.getChannel());
+                Lease current = LeaseCoordinator.find(state, lease);
+                if (!this.isHeld(current, lease)) {
+                    return false;
+                }
+                current.completed = true;
+                this.write(stateFile.getChannel(), state);
+                return true;
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * Gives a lease back without completing it, so that another worker can take it immediately
+     *
+     * @param lease {@link Lease} of the range
+     * @throws IOException Raised if the state file could not be read or written
+     */
+    public synchronized void release(Lease lease) throws IOException {
+        try (RandomAccessFile stateFile = this.openStateFile()) {
+            FileLock fileLock = stateFile.getChannel().lock();
+            try {
+                LeaseState state = this.read(stateFile.getChannel());
+                Lease current = LeaseCoordinator.find(state, lease);
+                if (this.isHeld(current, lease)) {
+                    current.owner = null;
+                    current.expiresAt = 0;
+                    this.write(stateFile.getChannel(), state);
+                }
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * Checks if every range has been completed
+     *
+     * @return True if all the leases are completed. False otherwise
+     * @throws IOException Raised if the state file could not be read
+     */
+    public synchronized boolean isFinished() throws IOException {
+        try (RandomAccessFile stateFile = this.openStateFile()) {
+            FileLock fileLock = stateFile.getChannel().lock();
+            try {
+                for (Lease lease : this.read(stateFile.getChannel()).leases) {
+                    if (!lease.completed) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    private RandomAccessFile openStateFile() throws IOException {
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        return new RandomAccessFile(this.file, "rw");
+    }
+
+    private LeaseState read(FileChannel channel) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+        while (content.hasRemaining()) {
+            if (channel.read(content, content.position()) < 0) {
+                break;
+            }
+        }
+        LeaseState state = this.gson.fromJson(new String(content.array(), StandardCharsets.UTF_8), LeaseState.class);
+        return state == null ? new LeaseState() : state;
+    }
+
+    private void write(FileChannel channel, LeaseState state) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(this.gson.toJson(state).getBytes(StandardCharsets.UTF_8));
+        channel.truncate(0);
+        while (content.hasRemaining()) {
+            channel.write(content, content.position());
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Checks if this worker still holds a lease
+     *
+     * @param current State of the lease read from the state file
+     * @param lease   {@link Lease} as it was acquired by this worker
+     * @return True if the range is not completed and neither its owner nor its epoch have changed
+     */
+    private boolean isHeld(Lease current, Lease lease) {
+        return current != null && !current.completed && this.workerId.equals(current.owner) && current.attempts == lease.attempts;
+    }
+
+    private static Lease find(LeaseState state, Lease lease) {
+        for (Lease current : state.leases) {
+            if (current.startIndex == lease.startIndex) {
+                return current;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,381 @@
+package filmdb.daemon;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import filmdb.entities.ScrapPlan;
+import filmdb.metrics.MetricsRegistry;
+import filmdb.scrappers.ExcelRowIndex;
+import filmdb.scrappers.ExcelScraper;
+import filmdb.scrappers.FilmScraper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running scrapping process that runs the {@link ScrapJob}s submitted to its HTTP API, so that small jobs do not
+ * pay for the startup of a new process: the row index of the excel file stays open (and is only rebuilt when the
+ * excel file changes), and the JIT-compiled code, the HTTP connections kept alive and the page buffers are reused.
+ * <p>
+ * The API is only served on the loopback interface:
+ * <ul>
+ *     <li>POST /jobs with a JSON {@link ScrapJob.Request} (i.e. {"type":"set","imdbIDs":[1132193,2316325]}) queues a
+ *     job. Answers 202 with the job, 400 if the request is not valid, or 503 if the queue is full</li>
+ *     <li>GET /jobs lists the jobs, and GET /jobs/{id} provides the status of a job</li>
+ * </ul>
+ * At most concurrentJobs jobs run at the same time. Every running job has its own journal and bulk segments, named
+ * after the slot it runs on ("daemon0", "daemon1"...), while the export of the films to the shared files (manifest,
+ * snapshot and validators) is serialized, since a JVM cannot hold two locks on the same file.
+ */
+public class ScrapDaemon implements Closeable {
+    public static final String JOBS_PATH = "/jobs";
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    // Finished jobs kept for status polling. Older ones are forgotten
+    private static final int MAX_FINISHED_JOBS = 1000;
+
+    private final String excelFile;
+    private final String rowIndexPath;
+    private final ScrapPlan scrapPlan;
+    private final long filmTimeBudget;
+    private final int defaultRequestBudget;
+    private final ThreadPoolExecutor executor;
+    // Slots free to run a job. Every slot names the journal and the bulk segments of the job that runs on it
+    private final BlockingQueue<Integer> freeSlots;
+    private final Object exportLock;
+    private final AtomicLong lastJobID;
+    private final Map<Long, ScrapJob> jobs;
+    private final MetricsRegistry metrics;
+    private final Gson gson;
+    private final HttpServer server;
+    private ExcelRowIndex rowIndex;
+
+    /**
+     * Constructor to initialize and start a new {@link ScrapDaemon}. The row index of the excel file is opened (or
+     * built) before the API is started
+     *
+     * @param excelFile            Route to the excel file containing imdb film data
+     * @param rowIndexPath         Route to the {@link ExcelRowIndex} of the excel file
+     * @param port                 Port of the API, on the loopback interface
+     * @param concurrentJobs       Maximum number of jobs running at the same time
+     * @param queuedJobs           Maximum number of jobs waiting to run. Further submissions are rejected
+     * @param scrapPlan            {@link ScrapPlan} of every job
+     * @param filmTimeBudget       Maximum time spent on the pages of a film, measured in milliseconds. 0 for no limit
+     * @param defaultRequestBudget Request budget of the refresh jobs that do not set their own
+     * @throws Exception Raised if the row index could not be built or the port could not be bound
+     */
+    public ScrapDaemon(String excelFile, String rowIndexPath, int port, int concurrentJobs, int queuedJobs,
+                       ScrapPlan scrapPlan, long filmTimeBudget, int defaultRequestBudget) throws Exception {
+        this.excelFile = new File(excelFile).getCanonicalPath();
+        this.rowIndexPath = rowIndexPath;
+        this.scrapPlan = scrapPlan;
+        this.filmTimeBudget = filmTimeBudget;
+        this.defaultRequestBudget = defaultRequestBudget;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrentJobs, concurrentJobs, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queuedJobs), runnable -> new Thread(runnable, "scrap-job-" + threadNumber.getAndIncrement()));
+        this.freeSlots = new ArrayBlockingQueue<>(concurrentJobs);
+        for (int slot = 0; slot < concurrentJobs; slot++) {
+            this.freeSlots.add(slot);
+        }
+        this.exportLock = new Object();
+        this.lastJobID = new AtomicLong();
+        this.jobs = new LinkedHashMap<>();
+        this.metrics = MetricsRegistry.getDefault();
+        this.metrics.gauge("filmdb_daemon_queued_jobs", () -> this.executor.getQueue().size());
+        this.metrics.gauge("filmdb_daemon_running_jobs", this.executor::getActiveCount);
+        this.gson = new GsonBuilder().disableHtmlEscaping().create();
+        this.getRowIndex();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext(JOBS_PATH, this::handle);
+        this.server.start();
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Queues a job
+     *
+     * @param request {@link ScrapJob.Request} of the job
+     * @return The queued {@link ScrapJob}
+     * @throws IllegalArgumentException   Raised if the request is not valid
+     * @throws RejectedExecutionException Raised if the queue is full or the daemon is stopping
+     */
+    public ScrapJob submit(ScrapJob.Request request) {
+        String error = request == null ? "Empty request" : request.validate();
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        ScrapJob job = new ScrapJob(this.lastJobID.incrementAndGet(), request, this.defaultRequestBudget);
+        synchronized (this.jobs) {
+            this.jobs.put(job.getId(), job);
+            this.forgetFinishedJobs();
+        }
+        try {
+            this.executor.execute(() -> this.run(job));
+        } catch (RejectedExecutionException e) {
+            synchronized (this.jobs) {
+                this.jobs.remove(job.getId());
+            }
+            this.metrics.counter("filmdb_daemon_jobs_total", "type", job.getType(), "state", "rejected").increment();
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Provides the status of a job
+     *
+     * @param id Id of the job
+     * @return The {@link ScrapJob}, or null if it does not exist (or it was forgotten)
+     */
+    public ScrapJob getJob(long id) {
+        synchronized (this.jobs) {
+            ScrapJob job = this.jobs.get(id);
+            if (job != null) {
+                job.updateProgress();
+            }
+            return job;
+        }
+    }
+
+    /**
+     * Provides the status of every job, in submission order
+     */
+    public List<ScrapJob> getJobs() {
+        synchronized (this.jobs) {
+            List<ScrapJob> list = new ArrayList<>(this.jobs.values());
+            list.forEach(ScrapJob::updateProgress);
+            return list;
+        }
+    }
+
+    /**
+     * Stops the API, fails the jobs still queued and waits for the running jobs
+     *
+     * @throws IOException Raised if the row index could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.stop(0);
+        List<Runnable> queued = new ArrayList<>();
+        this.executor.getQueue().drainTo(queued);
+        this.executor.shutdown();
+        synchronized (this.jobs) {
+            for (ScrapJob job : this.jobs.values()) {
+                if (ScrapJob.QUEUED.equals(job.getState())) {
+                    job.finish("Daemon stopped before the job started");
+                }
+            }
+        }
+        try {
+            this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (this.rowIndex != null) {
+                this.rowIndex.close();
+            }
+        }
+    }
+
+    /**
+     * Runs a job on a free slot: loads its films from the row index, scraps them and exports them
+     */
+    private void run(ScrapJob job) {
+        if (job.isFinished()) {
+            return;
+        }
+        Integer slot = this.freeSlots.poll();
+        job.start();
+        System.out.println("****** Job " + job.getId() + " (" + job.getType() + ") started on slot " + slot);
+        FilmScraper filmScraper = null;
+        try {
+            ExcelRowIndex index = this.getRowIndex();
+            String shardName = "daemon" + slot;
+            filmScraper = job.isByImdbID() ? new FilmScraper(this.excelFile, index, job.getImdbIDs(), shardName)
+                    : new FilmScraper(this.excelFile, index, job.getStartIndex(), job.getTotalRows(), shardName);
+            job.attach(filmScraper);
+            filmScraper.setScrapPlan(this.scrapPlan);
+            filmScraper.setTimeBudgets(this.filmTimeBudget, 0);
+            switch (job.getType()) {
+                case ScrapJob.SINGLE:
+                    filmScraper.scrapSingleFilm(job.getImdbIDs().get(0));
+                    break;
+                case ScrapJob.SET:
+                    filmScraper.scrapFilmSet(job.getImdbIDs());
+                    break;
+                case ScrapJob.RANGE:
+                    filmScraper.scrapAllFilms();
+                    break;
+                case ScrapJob.REFRESH:
+                    filmScraper.refreshFilms(job.getRequestBudget());
+                    break;
+                default:
+                    throw new Exception("Unrecognized job type " + job.getType());
+            }
+            boolean exported;
+            synchronized (this.exportLock) {
+                exported = filmScraper.generateBulkTasksFile();
+                exported = filmScraper.generateSnapshotFile() && exported;
+            }
+            if (!exported) {
+                throw new IOException("The films of the job could not be exported");
+            }
+            FilmScraper finishedScraper = filmScraper;
+            filmScraper = null;
+            finishedScraper.close();
+            job.finish(null);
+        } catch (Exception e) {
+            System.out.println("UNSUCCESSFUL function 'run' (ref: " + e + ")");
+            job.finish(e.toString());
+            if (filmScraper != null) {
+                try {
+                    // close() only resets the journal once both exports have succeeded, so the films scrapped by
+                    // the job stay in its journal
+                    filmScraper.close();
+                } catch (IOException closeError) {
+                    System.out.println("UNSUCCESSFUL function 'close' (ref: " + closeError + ")");
+                }
+            }
+        } finally {
+            this.freeSlots.add(slot);
+        }
+        this.metrics.counter("filmdb_daemon_jobs_total", "type", job.getType(), "state", job.getState()).increment();
+        System.out.println("****** Job " + job.getId() + " " + job.getState());
+    }
+
+    /**
+     * Provides the row index of the excel file, that stays open between jobs. It is rebuilt if the excel file has
+     * changed since it was opened. The previous index stays readable by the jobs still using it, since a mapping
+     * does not depend on its file being open
+     *
+     * @return The current {@link ExcelRowIndex}
+     * @throws Exception Raised if the row index could not be built
+     */
+    private synchronized ExcelRowIndex getRowIndex() throws Exception {
+        if (this.rowIndex == null || !this.rowIndex.isCurrent(new File(this.excelFile))) {
+            ExcelRowIndex previous = this.rowIndex;
+            this.rowIndex = new ExcelScraper(this.excelFile).loadRowIndex(this.rowIndexPath, System.out);
+            if (previous != null) {
+                previous.close();
+            }
+        }
+        return this.rowIndex;
+    }
+
+    /**
+     * Forgets the oldest finished jobs beyond {@link ScrapDaemon#MAX_FINISHED_JOBS}. Called holding the lock of the jobs
+     */
+    private void forgetFinishedJobs() {
+        int finished = 0;
+        for (ScrapJob job : this.jobs.values()) {
+            if (job.isFinished()) {
+                finished++;
+            }
+        }
+        for (Iterator<ScrapJob> it = this.jobs.values().iterator(); it.hasNext() && finished > MAX_FINISHED_JOBS; ) {
+            if (it.next().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals(JOBS_PATH) || path.equals(JOBS_PATH + "/")) {
+                if ("POST".equals(method)) {
+                    ScrapJob.Request request;
+                    try {
+                        request = this.gson.fromJson(this.readBody(exchange), ScrapJob.Request.class);
+                    } catch (JsonParseException e) {
+                        this.send(exchange, 400, this.error("Malformed JSON (" + e.getMessage() + ")"));
+                        return;
+                    }
+                    try {
+                        ScrapJob job = this.submit(request);
+                        exchange.getResponseHeaders().set("Location", JOBS_PATH + "/" + job.getId());
+                        this.send(exchange, 202, this.gson.toJson(job));
+                    } catch (IllegalArgumentException e) {
+                        this.send(exchange, 400, this.error(e.getMessage()));
+                    } catch (RejectedExecutionException e) {
+                        this.send(exchange, 503, this.error("The job queue is full"));
+                    }
+                } else if ("GET".equals(method)) {
+                    this.send(exchange, 200, this.gson.toJson(this.getJobs()));
+                } else {
+                    this.send(exchange, 405, this.error("Method not allowed"));
+                }
+                return;
+            }
+            ScrapJob job = null;
+            try {
+                job = this.getJob(Long.parseLong(path.substring(JOBS_PATH.length() + 1)));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                // Not a job id: answered as not found
+            }
+            if (job == null) {
+                this.send(exchange, 404, this.error("Job not found"));
+            } else if (!"GET".equals(method)) {
+                this.send(exchange, 405, this.error("Method not allowed"));
+            } else {
+                this.send(exchange, 200, this.gson.toJson(job));
+            }
+        } catch (Exception e) {
+            System.out.println("UNSUCCESSFUL function 'handle' (ref: " + e + ")");
+            this.send(exchange, 500, this.error(e.toString()));
+        }
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] chunk = new byte[4096];
+            int count;
+            while ((count = in.read(chunk)) >= 0) {
+                body.write(chunk, 0, count);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String error(String message) {
+        return this.gson.toJson(Collections.singletonMap("error", message));
+    }
+
+    private void send(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
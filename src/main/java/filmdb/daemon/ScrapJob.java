@@ -0,0 +1,175 @@
+package filmdb.daemon;
+
+import filmdb.scrappers.FilmScraper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scrapping job submitted to a {@link ScrapDaemon}: the films to scrap (a single film, a set of films, or a range of
+ * rows of the excel file, scrapped or refreshed), and its status, polled while it runs. Jobs are serialized to JSON
+ * as they are returned by the daemon
+ */
+public class ScrapJob {
+    public static final String SINGLE = "single";
+    public static final String SET = "set";
+    public static final String RANGE = "range";
+    public static final String REFRESH = "refresh";
+
+    public static final String QUEUED = "queued";
+    public static final String RUNNING = "running";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String FAILED = "failed";
+
+    /**
+     * Body of a submission. Depending on the type, the films are given by imdbID (single, set) or by range (range, refresh)
+     */
+    public static class Request {
+        private String type;
+        private Integer imdbID;
+        private List<Integer> imdbIDs;
+        private int startIndex;
+        private int totalRows;
+        // Maximum number of requests sent by a refresh job. 0 for the default budget of the daemon
+        private int requestBudget;
+
+        /**
+         * Checks that the request has every parameter required by its type
+         *
+         * @return The description of the first error found, or null if the request is valid
+         */
+        String validate() {
+            if (SINGLE.equals(this.type)) {
+                return this.imdbID == null || this.imdbID <= 0 ? "A single job requires a positive 'imdbID'" : null;
+            }
+            if (SET.equals(this.type)) {
+                if (this.imdbIDs == null || this.imdbIDs.isEmpty()) {
+                    return "A set job requires a non-empty 'imdbIDs' list";
+                }
+                return this.imdbIDs.contains(null) ? "The 'imdbIDs' list cannot contain null values" : null;
+            }
+            if (RANGE.equals(this.type) || REFRESH.equals(this.type)) {
+                if (this.startIndex < 0 || this.totalRows <= 0) {
+                    return "A " + this.type + " job requires 'startIndex' >= 0 and 'totalRows' > 0";
+                }
+                return this.requestBudget < 0 ? "'requestBudget' cannot be negative" : null;
+            }
+            return "Unknown job type '" + this.type + "' (expected " + SINGLE + ", " + SET + ", " + RANGE + " or " + REFRESH + ")";
+        }
+    }
+
+    private final long id;
+    private final String type;
+    private final List<Integer> imdbIDs;
+    private final int startIndex;
+    private final int totalRows;
+    private final int requestBudget;
+    private volatile String state;
+    private final long submittedAt;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    // Films loaded from the excel file, and films completed so far
+    private volatile int films;
+    private volatile long completedFilms;
+    private volatile String error;
+    // Scraper of the running job, used to report its progress
+    private transient volatile FilmScraper filmScraper;
+
+    /**
+     * Constructor to initialize a new {@link ScrapJob}, queued
+     *
+     * @param id                   Id of the job, unique in the daemon
+     * @param request              Validated {@link Request}
+     * @param defaultRequestBudget Request budget of refresh jobs that do not set their own
+     */
+    ScrapJob(long id, Request request, int defaultRequestBudget) {
+        this.id = id;
+        this.type = request.type;
+        this.imdbIDs = new ArrayList<>();
+        if (SINGLE.equals(request.type)) {
+            this.imdbIDs.add(request.imdbID);
+        } else if (SET.equals(request.type)) {
+            this.imdbIDs.addAll(request.imdbIDs);
+        }
+        this.startIndex = request.startIndex;
+        this.totalRows = request.totalRows;
+        this.requestBudget = request.requestBudget > 0 ? request.requestBudget : defaultRequestBudget;
+        this.state = QUEUED;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<Integer> getImdbIDs() {
+        return imdbIDs;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    public int getRequestBudget() {
+        return requestBudget;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Checks if the films of the job are given by imdbID, instead of by range
+     */
+    public boolean isByImdbID() {
+        return SINGLE.equals(this.type) || SET.equals(this.type);
+    }
+
+    public boolean isFinished() {
+        return SUCCEEDED.equals(this.state) || FAILED.equals(this.state);
+    }
+
+    void start() {
+        this.startedAt = System.currentTimeMillis();
+        this.state = RUNNING;
+    }
+
+    /**
+     * Attaches the {@link FilmScraper} of the running job, once its films have been loaded
+     */
+    void attach(FilmScraper filmScraper) {
+        this.filmScraper = filmScraper;
+        this.films = filmScraper.getTotalScraps();
+    }
+
+    /**
+     * Updates the number of films completed, before the status of the job is returned
+     */
+    void updateProgress() {
+        FilmScraper scraper = this.filmScraper;
+        if (scraper != null) {
+            this.completedFilms = scraper.getSuccessfulScraps();
+        }
+    }
+
+    /**
+     * Ends the job
+     *
+     * @param error Description of the error that ended the job. Null if it succeeded
+     */
+    void finish(String error) {
+        this.updateProgress();
+        this.filmScraper = null;
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = error == null ? SUCCEEDED : FAILED;
+    }
+}
@@ -0,0 +1,88 @@
+package filmdb.dedup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter of Strings. It never forgets an added value, and reports a value that was not added with
+ * a probability close to the false positive rate it was sized for, using a fixed amount of memory.
+ * The hash functions are derived from the 64-bit hash of the value with double hashing (see {@link MinHasher#mix(long)})
+ */
+public class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Constructor to initialize a new {@link BloomFilter} with the optimal number of bits and hash functions
+     *
+     * @param expectedValues    Number of values expected to be added
+     * @param falsePositiveRate Probability, between 0 and 1, of reporting a value that was not added once the expected values are added
+     */
+    public BloomFilter(long expectedValues, double falsePositiveRate) {
+        if (expectedValues <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid size of the Bloom filter");
+        }
+        long optimalBits = (long) Math.ceil(-expectedValues * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedValues * Math.log(2)));
+    }
+
+    /**
+     * Memory used by the bits of the filter, measured in bytes
+     */
+    public long getSizeInBytes() {
+        return this.bitCount / 8;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Adds a value to the filter
+     *
+     * @param value Value to be added
+     * @return True if the value was certainly not in the filter. False if it might have been added before
+     */
+    public boolean put(CharSequence value) {
+        long hash = MinHasher.hash(value);
+        long h1 = MinHasher.mix(hash);
+        long h2 = MinHasher.mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        boolean changed = false;
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, this.bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = this.bits.get(word);
+            while ((current & mask) == 0) {
+                if (this.bits.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+                current = this.bits.get(word);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Checks if a value might have been added to the filter
+     *
+     * @param value Value to be checked
+     * @return False if the value was certainly not added. True if it was added or is a false positive
+     */
+    public boolean mightContain(CharSequence value) {
+        long hash = MinHasher.hash(value);
+        long h1 = MinHasher.mix(hash);
+        long h2 = MinHasher.mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, this.bitCount);
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
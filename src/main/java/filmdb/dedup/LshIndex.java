@@ -0,0 +1,131 @@
+package filmdb.dedup;
+
+import filmdb.entities.Film;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LshIndex {
+    private final MinHasher minHasher;
+    private final int bands;
+    private final int rowsPerBand;
+    private final double threshold;
+
+    // Documents are identified by their insertion order
+    private final List<Integer> imdbIDs;
+    private final List<long[]> signatures;
+    private final List<Integer> parents;
+    /**
+     * One bucket table per band. Each bucket stores the first document that fell into it
+     */
+    private final List<Map<Long, Integer>> buckets;
+
+    /**
+     * Constructor to initialize a new {@link LshIndex}. Signatures of bands * rowsPerBand hashes are split in
+     * bands; two films become candidates when all the rows of any band are equal.
+     *
+     * @param bands       Number of bands of every signature
+     * @param rowsPerBand Number of signature positions per band
+     * @param threshold   Minimum estimated Jaccard similarity to report two candidates as duplicates
+     */
+    public LshIndex(int bands, int rowsPerBand, double threshold) {
+        this.minHasher = new MinHasher(bands * rowsPerBand);
+        this.bands = bands;
+        this.rowsPerBand = rowsPerBand;
+        this.threshold = threshold;
+        this.imdbIDs = new ArrayList<>();
+        this.signatures = new ArrayList<>();
+        this.parents = new ArrayList<>();
+        this.buckets = new ArrayList<>();
+        for (int i = 0; i < bands; i++) {
+            this.buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Computes the signature of a {@link Film} and adds it to the index. Films without synopsis nor plot keywords are ignored.
+     * The cost of every insertion is independent from the number of films already indexed
+     *
+     * @param film {@link Film} to be added
+     * @return True if the film is a near-duplicate of a film previously added. False otherwise
+     */
+    public boolean add(Film film) {
+        long[] signature = this.minHasher.signature(film);
+        return signature != null && this.add(film.getImdbID(), signature);
+    }
+
+    private synchronized boolean add(int imdbID, long[] signature) {
+        boolean duplicate = false;
+        int doc = this.imdbIDs.size();
+        this.imdbIDs.add(imdbID);
+        this.signatures.add(signature);
+        this.parents.add(doc);
+
+        for (int band = 0; band < this.bands; band++) {
+            Integer candidate = this.buckets.get(band).putIfAbsent(this.bandKey(signature, band), doc);
+            // Only the first document of the bucket is compared, so that large buckets do not degrade to all pairs
+            if (candidate != null && this.find(candidate) != this.find(doc)
+                    && MinHasher.estimateSimilarity(signature, this.signatures.get(candidate)) >= this.threshold) {
+                this.union(candidate, doc);
+                duplicate = true;
+            }
+        }
+        return duplicate;
+    }
+
+    /**
+     * Groups the indexed films into clusters of candidate duplicates
+     *
+     * @return A List with one entry per cluster (of at least 2 films), containing the imdbIDs of the cluster members
+     */
+    public synchronized List<List<Integer>> getCandidateClusters() {
+        Map<Integer, List<Integer>> clusters = new HashMap<>();
+        for (int doc = 0; doc < this.imdbIDs.size(); doc++) {
+            clusters.computeIfAbsent(this.find(doc), k -> new ArrayList<>()).add(this.imdbIDs.get(doc));
+        }
+        List<List<Integer>> result = new ArrayList<>();
+        for (List<Integer> cluster : clusters.values()) {
+            if (cluster.size() > 1) {
+                result.add(cluster);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return this.imdbIDs.size();
+    }
+
+    private long bandKey(long[] signature, int band) {
+        long key = band;
+        for (int i = band * this.rowsPerBand; i < (band + 1) * this.rowsPerBand; i++) {
+            key = key * 31 + signature[i];
+        }
+        return key;
+    }
+
+    private int find(int doc) {
+        int root = doc;
+        while (this.parents.get(root) != root) {
+            root = this.parents.get(root);
+        }
+        // Path compression
+        while (this.parents.get(doc) != root) {
+            int next = this.parents.get(doc);
+            this.parents.set(doc, root);
+            doc = next;
+        }
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int rootA = this.find(a);
+        int rootB = this.find(b);
+        if (rootA != rootB) {
+            // The oldest document is kept as the root of the cluster
+            this.parents.set(Math.max(rootA, rootB), Math.min(rootA, rootB));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package filmdb.dedup;
+
+import filmdb.entities.Film;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+public class MinHasher {
+    /**
+     * Number of consecutive words that make up a synopsis shingle
+     */
+    private static final int SHINGLE_SIZE = 3;
+    private static final String NON_WORD_REGEX = "[^\\p{L}\\p{N}]+";
+
+    private final long[] seeds;
+
+    /**
+     * Constructor to initialize a new {@link MinHasher} that computes signatures of the specified length
+     *
+     * @param numHashes Number of hash functions, that is, the length of each signature
+     */
+    public MinHasher(int numHashes) {
+        if (numHashes <= 0) {
+            throw new IllegalArgumentException("Invalid number of hash functions (must be positive)");
+        }
+        this.seeds = new long[numHashes];
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < numHashes; i++) {
+            seed = MinHasher.mix(seed + i);
+            this.seeds[i] = seed;
+        }
+    }
+
+    public int getNumHashes() {
+        return this.seeds.length;
+    }
+
+    /**
+     * Computes the MinHash signature of the synopsis and the plot keywords of a {@link Film}
+     *
+     * @param film {@link Film} whose signature is computed
+     * @return The signature of the film, or null if the film has neither synopsis nor plot keywords
+     */
+    public long[] signature(Film film) {
+        return this.signature(MinHasher.shingles(film));
+    }
+
+    /**
+     * Computes the MinHash signature of a set of shingles. Every hash function is simulated by
+     * mixing the 64-bit hash of the shingle with a different seed
+     *
+     * @param shingles Hashes of the shingles that represent a document
+     * @return The signature of the document, or null if the shingle set is empty
+     */
+    public long[] signature(Set<Long> shingles) {
+        if (shingles.isEmpty()) {
+            return null;
+        }
+        long[] signature = new long[this.seeds.length];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = Long.MAX_VALUE;
+        }
+        for (long shingle : shingles) {
+            for (int i = 0; i < signature.length; i++) {
+                long hash = MinHasher.mix(shingle ^ this.seeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Estimates the Jaccard similarity of two documents as the fraction of equal signature positions
+     *
+     * @param a Signature of the first document
+     * @param b Signature of the second document
+     * @return A value between 0 and 1
+     */
+    public static double estimateSimilarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    /**
+     * Splits the synopsis of a {@link Film} in word shingles of {@link MinHasher#SHINGLE_SIZE} words,
+     * and adds every plot keyword as a single shingle
+     *
+     * @param film {@link Film} to be split
+     * @return A Set containing the 64-bit hash of every shingle
+     */
+    static Set<Long> shingles(Film film) {
+        Set<Long> shingles = new HashSet<>();
+        String synopsis = film.getSynopsis();
+        if (synopsis != null && !synopsis.equals(Film.ATTR_NOT_FOUND)) {
+            String[] words = synopsis.toLowerCase(Locale.ROOT).split(NON_WORD_REGEX);
+            StringBuilder shingle = new StringBuilder();
+            for (int i = 0; i + SHINGLE_SIZE <= words.length; i++) {
+                shingle.setLength(0);
+                for (int j = i; j < i + SHINGLE_SIZE; j++) {
+                    shingle.append(words[j]).append(' ');
+                }
+                shingles.add(MinHasher.hash(shingle));
+            }
+        }
+        String[] keywords = film.getPlotKeywords();
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                if (!keyword.equals(Film.ATTR_NOT_FOUND)) {
+                    shingles.add(MinHasher.hash("kw:" + keyword.toLowerCase(Locale.ROOT).trim()));
+                }
+            }
+        }
+        return shingles;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a sequence of chars
+     */
+    static long hash(CharSequence text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of the MurmurHash3 64-bit hash, used to derive independent hash functions from a single one
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -2,12 +2,16 @@ package filmdb.entities;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.InstanceCreator;
 import com.google.gson.annotations.Expose;
+import filmdb.metrics.MetricsRegistry;
+import filmdb.scrappers.ValidatorStore;
 import filmdb.scrappers.WebScraper;
 
 import java.net.UnknownHostException;
-import java.util.Calendar;
+import java.util.HashMap;
 import java.util.InvalidPropertiesFormatException;
+import java.util.Map;
 import java.util.Objects;
 
 public class Film {
@@ -16,16 +20,24 @@ public class Film {
      */
     private static final int DEFAULT_VALUE = -1;
     private static final float DEFAULT_VALUE_F = -1F;
-    private static final String ATTR_NOT_FOUND = "None";
-    /**
-     * The year was obtained from this article: https://www.history.com/this-day-in-history/first-commercial-movie-screened
-     */
-    private static final int FIRST_FILM_RELEASE_YEAR = 1895;
+    public static final String ATTR_NOT_FOUND = "None";
 
     private String url;
 
+    // URL of the poster image, read from the excel. It is not exported: posters are stored apart (see PosterPipeline)
+    private String posterUrl;
+
     private final ScrapStatus status;
 
+    // URLs of the subpages found in the main page, so that failed attributes can be scrapped again without downloading it
+    private Map<String, String> subpageUrls;
+
+    // Validators of the pages downloaded in the last scrap, by URL, to be recorded in a ValidatorStore
+    private Map<String, ValidatorStore.Validator> pageValidators;
+
+    // Requests sent in the last scrap, including the unchanged and failed pages
+    private int requestCount;
+
     @Expose
     private final int imdbID;
 
@@ -63,6 +75,13 @@ public class Film {
     @Expose
     private String[] primaryLanguages;
 
+    // Names of the dictionaries with, at least, one term appearing in the film's title, synopsis or plot keywords
+    @Expose
+    private String[] dictionaryTags;
+
+    @Expose
+    private String[] dictionaryTerms;
+
 
     /**
      * Constructor that initializes the numeric attributes to -1 so that it can be known if the default value has been modified.
@@ -70,7 +89,7 @@ public class Film {
      */
     public Film(int imdbID) throws InvalidPropertiesFormatException {
         this.status = new ScrapStatus();
-        if (imdbID <= 0) {
+        if (FilmValidator.checkImdbID(imdbID) != FilmValidator.VALID) {
             throw new InvalidPropertiesFormatException("Invalid imdbID value (negative)");
         } else {
             this.imdbID = imdbID;
@@ -91,6 +110,22 @@ public class Film {
         return url;
     }
 
+    public String getPosterUrl() {
+        return posterUrl;
+    }
+
+    public Map<String, String> getSubpageUrls() {
+        return subpageUrls;
+    }
+
+    public Map<String, ValidatorStore.Validator> getPageValidators() {
+        return pageValidators;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
     public void setUrl(String url) {
         if (url == null) {
             throw new NullPointerException("Impossible to set url to null");
@@ -100,6 +135,10 @@ public class Film {
 
     }
 
+    public void setPosterUrl(String posterUrl) {
+        this.posterUrl = posterUrl;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -118,12 +157,26 @@ public class Film {
         this.title = title.replaceAll("[(0-9)]{6}", "").trim();
     }
 
+    /**
+     * Restores the title and the release year of a film that was already scrapped (i.e. read from a snapshot).
+     * Unlike {@link Film#setTitle(String)}, the release year is not parsed from the title
+     *
+     * @param title       Title of the film, without the release year
+     * @param releaseYear Release year of the film. -1 if it is unknown
+     */
+    public void restoreTitle(String title, int releaseYear) throws InvalidPropertiesFormatException {
+        this.title = title;
+        if (releaseYear != DEFAULT_VALUE) {
+            this.setReleaseYear(releaseYear);
+        }
+    }
+
     public float getAvgScore() {
         return avgScore;
     }
 
     public void setAvgScore(float avgScore) throws InvalidPropertiesFormatException {
-        if (avgScore < 0 || avgScore > 10) {
+        if (FilmValidator.checkAvgScore(avgScore) != FilmValidator.VALID) {
             throw new InvalidPropertiesFormatException("Invalid avgScore value (out of bounds)");
         } else {
             this.avgScore = avgScore;
@@ -197,9 +250,7 @@ public class Film {
     }
 
     public void setReleaseYear(int releaseYear) throws InvalidPropertiesFormatException {
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeInMillis(System.currentTimeMillis());
-        if (releaseYear < Film.FIRST_FILM_RELEASE_YEAR || releaseYear > cal.get(Calendar.YEAR)) {
+        if (FilmValidator.checkReleaseYear(releaseYear) != FilmValidator.VALID) {
             throw new InvalidPropertiesFormatException("Invalid releaseYear value (out of bounds)");
         } else {
             this.releaseYear = releaseYear;
@@ -232,6 +283,30 @@ public class Film {
         }
     }
 
+    public String[] getDictionaryTags() {
+        return dictionaryTags;
+    }
+
+    public void setDictionaryTags(String[] dictionaryTags) {
+        if (dictionaryTags == null) {
+            throw new NullPointerException("Impossible to set dictionaryTags to null");
+        } else {
+            this.dictionaryTags = dictionaryTags;
+        }
+    }
+
+    public String[] getDictionaryTerms() {
+        return dictionaryTerms;
+    }
+
+    public void setDictionaryTerms(String[] dictionaryTerms) {
+        if (dictionaryTerms == null) {
+            throw new NullPointerException("Impossible to set dictionaryTerms to null");
+        } else {
+            this.dictionaryTerms = dictionaryTerms;
+        }
+    }
+
     // Class methods
     public String toJson() {
 
@@ -240,49 +315,301 @@ public class Film {
 
     }
 
+    /**
+     * Restores the scrapped attributes of this film from a JSON document generated by {@link Film#toJson()}
+     * (i.e. a record of the scrapping journal). The attributes not included in the document, such as the url, are kept
+     *
+     * @param json JSON document of this film
+     */
+    public void restoreFromJson(String json) {
+        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapter(Film.class, (InstanceCreator<Film>) type -> this).create();
+        gson.fromJson(json, Film.class);
+    }
+
     /**
      * Tries to scrap from the web site (filmURL) the attributes of the film that could not be scrapped from the excel file.
      * Those attributes must be initialized, because they cannot be obtained from the {@link WebScraper}
      *
      * @see Film#checkExcelValues()
+     * @see ScrapPlan#full()
      */
     public void initializeUnsetAttributes() {
+        this.initializeUnsetAttributes(ScrapPlan.full());
+    }
+
+    /**
+     * Tries to scrap from the web site (filmURL) the attributes of a {@link ScrapPlan} that could not be scrapped from
+     * the excel file. The pages of the attributes that are not in the plan, or that are skipped by its rules, are not
+     * requested, and those attributes are set as not found
+     *
+     * @param plan {@link ScrapPlan} with the attributes to be scrapped
+     * @see Film#checkExcelValues()
+     */
+    public void initializeUnsetAttributes(ScrapPlan plan) {
+        this.initializeUnsetAttributes(plan, WebScraper.NO_DEADLINE);
+    }
+
+    /**
+     * Like {@link Film#initializeUnsetAttributes(ScrapPlan)}, but the pages are only requested until a deadline: the
+     * request in progress is cancelled when it expires, and the attributes whose page was not downloaded are recorded
+     * as failed, so that the film keeps the attributes already scrapped and the rest can be retried later
+     *
+     * @param plan     {@link ScrapPlan} with the attributes to be scrapped
+     * @param deadline Time, as given by {@link System#nanoTime()}, at which the scrap ends. {@link WebScraper#NO_DEADLINE} for no limit
+     */
+    public void initializeUnsetAttributes(ScrapPlan plan, long deadline) {
         // First check the pre-required attributes of the filmdb.entities.Film
         if (checkExcelValues()) {
+            WebScraper webScraper;
             try {
                 //If the pre-required attributes are OK, then scrap the remaining attributes from the film's web site.
-                WebScraper webScraper = new WebScraper(this.url);
-
+                webScraper = new WebScraper(this.url, deadline);
+            } catch (Exception e) {
+                // Without the main page no attribute could be scrapped
+                this.setScrapError(e, plan.getAttributes());
+                return;
+            }
             /*Sometimes the title (obtained from the excel) contains also the release year.
             Check if the year of this film could be extracted from the excel*/
-                if (releaseYear == DEFAULT_VALUE) {
-                    this.setReleaseYear(webScraper.getReleaseYear());
+            int attributes = plan.getAttributes();
+            if (releaseYear != DEFAULT_VALUE) {
+                attributes &= ~ScrapStatus.ATTR_RELEASE_YEAR;
+            }
+            this.scrapAttributes(webScraper, plan, attributes, null);
+        }
+    }
+
+    /**
+     * Scraps again the attributes of a {@link ScrapPlan} for a film that was scrapped before. Pages with validators are
+     * requested conditionally: the attributes of the pages that have not changed, or could not be downloaded, or are
+     * not requested by the plan, are kept from the previous version of the film
+     *
+     * @param previous    The film as it was scrapped before (i.e. read from the snapshot)
+     * @param subpageUrls URLs of the subpages found in the previous scrap, by keyword
+     * @param validators  Validators of the pages received in the previous scrap, by URL
+     * @param plan        {@link ScrapPlan} with the attributes to be scrapped
+     * @param deadline    Time, as given by {@link System#nanoTime()}, at which the scrap ends. {@link WebScraper#NO_DEADLINE} for no limit
+     * @return True if, at least, one page has changed or could not be revalidated. False if the film has not changed
+     */
+    public boolean refreshAttributes(Film previous, Map<String, String> subpageUrls, Map<String, ValidatorStore.Validator> validators,
+                                     ScrapPlan plan, long deadline) {
+        if (!checkExcelValues()) {
+            return true;
+        }
+        WebScraper webScraper = new WebScraper(this.url, subpageUrls, validators);
+        webScraper.setDeadline(deadline);
+        int attributes = plan.getAttributes();
+        if (releaseYear != DEFAULT_VALUE) {
+            attributes &= ~ScrapStatus.ATTR_RELEASE_YEAR;
+        }
+        this.scrapAttributes(webScraper, plan, attributes, previous);
+        return !this.pageValidators.isEmpty() || webScraper.getFailedAttributes() != 0;
+    }
+
+    /**
+     * Scraps again the attributes whose page could not be downloaded in a previous call to
+     * {@link Film#initializeUnsetAttributes()}. Only the subpages of those attributes are requested: the main page
+     * is downloaded only if it failed before or if the URL of a subpage is unknown
+     *
+     * @return True if, at least, one of the failed attributes could be scrapped
+     */
+    public boolean retryFailedAttributes() {
+        return this.retryFailedAttributes(WebScraper.NO_DEADLINE);
+    }
+
+    /**
+     * Like {@link Film#retryFailedAttributes()}, but the pages are only requested until a deadline
+     *
+     * @param deadline Time, as given by {@link System#nanoTime()}, at which the scrap ends. {@link WebScraper#NO_DEADLINE} for no limit
+     * @return True if, at least, one of the failed attributes could be scrapped
+     */
+    public boolean retryFailedAttributes(long deadline) {
+        int failedAttributes = this.status.getFailedAttributes();
+        if (failedAttributes == 0 || !checkExcelValues()) {
+            return false;
+        }
+        WebScraper webScraper = new WebScraper(this.url, this.subpageUrls == null ? new HashMap<>() : this.subpageUrls);
+        webScraper.setDeadline(deadline);
+        this.scrapAttributes(webScraper, ScrapPlan.full(), failedAttributes, null);
+        return this.status.getFailedAttributes() != failedAttributes;
+    }
+
+    /**
+     * Scraps a set of attributes, in the order of a {@link ScrapPlan}, and updates the {@link Film#status}. Attributes
+     * whose page could not be downloaded are recorded as failed, so that they can be retried later
+     *
+     * @param webScraper {@link WebScraper} of the film's main page
+     * @param plan       {@link ScrapPlan} with the order of the attributes and the rules to skip them
+     * @param attributes Bit mask of the attributes to be scrapped (i.e. {@link ScrapStatus#ATTR_SYNOPSIS})
+     * @param previous   Previous version of the film, whose attributes are kept when they are not downloaded. Null to set them as not found
+     */
+    private void scrapAttributes(WebScraper webScraper, ScrapPlan plan, int attributes, Film previous) {
+        try {
+            int foundAttributes = 0;
+            int requestedAttributes = 0;
+            int skippedAttributes = 0;
+            int year = DEFAULT_VALUE;
+            boolean yearScrapped = false;
+            for (int attribute : plan.getPriority()) {
+                if ((attributes & attribute) == 0) {
+                    continue;
+                }
+                if ((plan.getSkippedAttributes(foundAttributes) & attribute) != 0) {
+                    skippedAttributes |= attribute;
+                } else if (attribute == ScrapStatus.ATTR_RELEASE_YEAR) {
+                    requestedAttributes |= attribute;
+                    year = webScraper.getReleaseYear();
+                    yearScrapped = true;
+                    if (year != DEFAULT_VALUE) {
+                        foundAttributes |= attribute;
+                    }
+                } else {
+                    requestedAttributes |= attribute;
+                    if (this.scrapAttribute(webScraper, attribute)) {
+                        foundAttributes |= attribute;
+                    }
                 }
+            }
+            if (previous != null) {
+                // Only the attributes whose page was downloaded replace the previous ones
+                int downloadedAttributes = requestedAttributes & ~webScraper.getNotModifiedAttributes() & ~webScraper.getFailedAttributes();
+                this.restoreAttributes(previous, ScrapStatus.ALL_ATTRIBUTES & ~downloadedAttributes);
+                yearScrapped &= (downloadedAttributes & ScrapStatus.ATTR_RELEASE_YEAR) != 0;
+            }
+            if (skippedAttributes != 0) {
+                MetricsRegistry.getDefault().counter("filmdb_skipped_attributes_total").add(Integer.bitCount(skippedAttributes));
+            }
+            // Attributes that were not scrapped are set as not found, so that the film can be validated and exported
+            this.setUnscrappedAttributes();
+            // The release year is set the last one, because an invalid value raises an exception
+            if (yearScrapped && (year != DEFAULT_VALUE || this.releaseYear == DEFAULT_VALUE)) {
+                this.setReleaseYear(year);
+            }
+            this.status.setFailedAttributes(webScraper.getFailedAttributes());
+            this.subpageUrls = webScraper.getSubpageUrls();
+
+            long validationStart = System.nanoTime();
+            boolean valid = this.checkRequiredAttributes();
+            MetricsRegistry.getDefault().histogram("filmdb_validation_seconds").recordSince(validationStart);
+            if (valid) {
+                //All the fields could be correctly set
+                this.status.setStatusCompleted();
+            } else {
+                throw new Exception((webScraper.isDeadlineExceeded() ? "Deadline exceeded. " : "")
+                        + "Missing required attribute: '" + this.getIncorrectAttribute() + "'");
+            }
+        } catch (Exception e) {
+            this.setScrapError(e, webScraper.getFailedAttributes());
+            this.subpageUrls = webScraper.getSubpageUrls();
+        } finally {
+            this.pageValidators = webScraper.getFetchedValidators();
+            this.requestCount = webScraper.getRequestCount();
+            if (webScraper.getFailedAttributes() != 0 && webScraper.isDeadlineExceeded()) {
+                MetricsRegistry.getDefault().counter("filmdb_expired_films_total").increment();
+            }
+        }
+    }
 
-                //The rest of the attributes have to be scraped always
+    /**
+     * Scraps a single attribute, other than the release year
+     *
+     * @param webScraper {@link WebScraper} of the film's main page
+     * @param attribute  {@link ScrapStatus} attribute to be scrapped
+     * @return True if the attribute was found
+     */
+    private boolean scrapAttribute(WebScraper webScraper, int attribute) {
+        switch (attribute) {
+            case ScrapStatus.ATTR_MAIN_ACTORS:
                 this.setMainActors(webScraper.getMainActors());
+                return Film.isFound(this.mainActors);
+            case ScrapStatus.ATTR_SYNOPSIS:
                 this.setSynopsis(webScraper.getSynopsis());
+                return !this.synopsis.equals(Film.ATTR_NOT_FOUND);
+            case ScrapStatus.ATTR_PLOT_KEYWORDS:
                 this.setPlotKeywords(webScraper.getPlotKeywords());
+                return Film.isFound(this.plotKeywords);
+            case ScrapStatus.ATTR_FILMING_LOCATIONS:
                 this.setFilmingLocations(webScraper.getFilmingLocations());
+                return Film.isFound(this.filmingLocations);
+            case ScrapStatus.ATTR_ORIGIN_COUNTRY:
                 this.setOriginCountry(webScraper.getCountryOfOrigin());
+                return !this.originCountry.isEmpty();
+            case ScrapStatus.ATTR_PRIMARY_LANGUAGES:
                 this.setPrimaryLanguages(webScraper.getPrimaryLanguages());
+                return Film.isFound(this.primaryLanguages);
+            default:
+                return false;
+        }
+    }
 
-                if (this.checkRequiredAttributes()) {
-                    //All the fields could be correctly set
-                    this.status.setStatusCompleted();
-                } else {
-                    throw new Exception("Missing required attribute: '" + this.getIncorrectAttribute() + "'");
-                }
-            } catch (Exception e) {
-                if ((e instanceof UnknownHostException)) {
-                    this.status.setServerError();
-                } else {
-                    this.status.setStatusError(e.toString());
-                }
-                System.out.println("ERROR in function 'initializeUnsetAttributes' (ref: " + e + ")");
+    /**
+     * Copies a set of attributes from a previous version of the film
+     *
+     * @param previous   Previous version of the film
+     * @param attributes Bit mask of the attributes to be copied
+     */
+    private void restoreAttributes(Film previous, int attributes) {
+        if ((attributes & ScrapStatus.ATTR_MAIN_ACTORS) != 0 && previous.mainActors != null) {
+            this.mainActors = previous.mainActors;
+        }
+        if ((attributes & ScrapStatus.ATTR_SYNOPSIS) != 0 && previous.synopsis != null) {
+            this.synopsis = previous.synopsis;
+        }
+        if ((attributes & ScrapStatus.ATTR_PLOT_KEYWORDS) != 0 && previous.plotKeywords != null) {
+            this.plotKeywords = previous.plotKeywords;
+        }
+        if ((attributes & ScrapStatus.ATTR_FILMING_LOCATIONS) != 0 && previous.filmingLocations != null) {
+            this.filmingLocations = previous.filmingLocations;
+        }
+        if ((attributes & ScrapStatus.ATTR_ORIGIN_COUNTRY) != 0 && previous.originCountry != null) {
+            this.originCountry = previous.originCountry;
+        }
+        if ((attributes & ScrapStatus.ATTR_PRIMARY_LANGUAGES) != 0 && previous.primaryLanguages != null) {
+            this.primaryLanguages = previous.primaryLanguages;
+        }
+        if ((attributes & ScrapStatus.ATTR_RELEASE_YEAR) != 0 && this.releaseYear == DEFAULT_VALUE) {
+            this.releaseYear = previous.releaseYear;
+        }
+    }
 
-            }
+    /**
+     * Sets as not found the attributes that have not been scrapped yet (because they are not in the {@link ScrapPlan}
+     * or they were skipped). Attributes that were scrapped in a previous call are kept
+     */
+    private void setUnscrappedAttributes() {
+        if (this.mainActors == null) {
+            this.setMainActors(null);
+        }
+        if (this.synopsis == null) {
+            this.setSynopsis(null);
+        }
+        if (this.plotKeywords == null) {
+            this.setPlotKeywords(null);
+        }
+        if (this.filmingLocations == null) {
+            this.setFilmingLocations(null);
+        }
+        if (this.originCountry == null) {
+            this.setOriginCountry(null);
+        }
+        if (this.primaryLanguages == null) {
+            this.setPrimaryLanguages(null);
+        }
+    }
+
+    private static boolean isFound(String[] values) {
+        return values.length > 0 && !values[0].equals(Film.ATTR_NOT_FOUND);
+    }
+
+    private void setScrapError(Exception e, int failedAttributes) {
+        if ((e instanceof UnknownHostException)) {
+            this.status.setServerError();
+        } else {
+            this.status.setStatusError(e.toString());
         }
+        this.status.setFailedAttributes(failedAttributes);
+        System.out.println("ERROR in function 'initializeUnsetAttributes' (ref: " + e + ")");
     }
 
     /**
@@ -0,0 +1,113 @@
+package filmdb.entities;
+
+import filmdb.scrappers.WebScraper;
+
+import java.util.Calendar;
+
+/**
+ * Validation of the attributes of a {@link Film} that does not raise exceptions: every check returns a result code,
+ * so that invalid rows of the seed file can be rejected without the cost of building an exception for each of them.
+ * The {@link Film} setters use the same checks, and raise an exception when they fail.
+ */
+public class FilmValidator {
+    public static final int VALID = 0;
+    public static final int EMPTY_ROW = 1;
+    public static final int INVALID_IMDB_ID = 2;
+    public static final int MISSING_URL = 3;
+    public static final int MISSING_TITLE = 4;
+    public static final int INVALID_RELEASE_YEAR = 5;
+    public static final int INVALID_AVG_SCORE = 6;
+    public static final int MISSING_GENRES = 7;
+    private static final String[] REASONS = {"valid", "emptyRow", "invalidImdbID", "missingUrl", "missingTitle",
+            "invalidReleaseYear", "invalidAvgScore", "missingGenres"};
+
+    /**
+     * The year was obtained from this article: https://www.history.com/this-day-in-history/first-commercial-movie-screened
+     */
+    static final int FIRST_FILM_RELEASE_YEAR = 1895;
+
+    // The current year is cached until the next year starts (see System#currentTimeMillis())
+    private static volatile int currentYear;
+    private static volatile long nextYearStart = Long.MIN_VALUE;
+
+    private FilmValidator() {
+    }
+
+    /**
+     * Provides the name of a result code, as written in the reject reports
+     *
+     * @param code Result code of a check
+     * @return The name of the reason (i.e. "invalidReleaseYear")
+     */
+    public static String getReason(int code) {
+        return code >= 0 && code < REASONS.length ? REASONS[code] : "unknown";
+    }
+
+    public static int checkImdbID(int imdbID) {
+        return imdbID > 0 ? VALID : INVALID_IMDB_ID;
+    }
+
+    public static int checkReleaseYear(int releaseYear) {
+        return releaseYear >= FIRST_FILM_RELEASE_YEAR && releaseYear <= getCurrentYear() ? VALID : INVALID_RELEASE_YEAR;
+    }
+
+    /**
+     * Checks an average score. NaN (i.e. an empty cell) is not valid
+     */
+    public static int checkAvgScore(float avgScore) {
+        return avgScore >= 0 && avgScore <= 10 ? VALID : INVALID_AVG_SCORE;
+    }
+
+    /**
+     * Checks the cells of a row of the seed file, in the order they are set in the {@link Film}
+     *
+     * @param imdbID   Id of the film
+     * @param url      Url of the film. Null (or empty) if the cell is empty
+     * @param title    Title of the film, with its release year. Null (or empty) if the cell is empty
+     * @param avgScore Average score of the film. NaN if the cell is empty
+     * @param genres   Genres of the film, separated by the char "|". Null (or empty) if the cell is empty
+     * @return {@link FilmValidator#VALID}, or the code of the first invalid cell
+     */
+    public static int checkSeed(int imdbID, String url, String title, float avgScore, String genres) {
+        if (checkImdbID(imdbID) != VALID) {
+            return INVALID_IMDB_ID;
+        }
+        if (url == null || url.isEmpty()) {
+            return MISSING_URL;
+        }
+        if (title == null || title.isEmpty()) {
+            return MISSING_TITLE;
+        }
+        if (checkReleaseYear(WebScraper.parseYear(title)) != VALID) {
+            return INVALID_RELEASE_YEAR;
+        }
+        if (checkAvgScore(avgScore) != VALID) {
+            return INVALID_AVG_SCORE;
+        }
+        if (genres == null || genres.trim().isEmpty()) {
+            return MISSING_GENRES;
+        }
+        return VALID;
+    }
+
+    /**
+     * Provides the current year, without creating a {@link Calendar} on every call
+     */
+    private static int getCurrentYear() {
+        long now = System.currentTimeMillis();
+        if (now >= nextYearStart) {
+            synchronized (FilmValidator.class) {
+                if (now >= nextYearStart) {
+                    Calendar cal = Calendar.getInstance();
+                    cal.setTimeInMillis(now);
+                    int year = cal.get(Calendar.YEAR);
+                    cal.clear();
+                    cal.set(year + 1, Calendar.JANUARY, 1);
+                    currentYear = year;
+                    nextYearStart = cal.getTimeInMillis();
+                }
+            }
+        }
+        return currentYear;
+    }
+}
@@ -0,0 +1,129 @@
+package filmdb.entities;
+
+/**
+ * Declares which attributes of a {@link Film} are scrapped from the web, in which order, and which of them are skipped
+ * once others have been found. Attributes are the bit flags of {@link ScrapStatus} (i.e. {@link ScrapStatus#ATTR_SYNOPSIS}).
+ * <p>
+ * Every attribute scrapped from a subpage costs an HTTP request, so an attribute that is not planned, or that is
+ * skipped by a rule, is never requested. For example, a film only needs a synopsis or plot keywords to be completed,
+ * so {@link ScrapPlan#requiredOnly()} skips the keywords page when the synopsis was found.
+ */
+public class ScrapPlan {
+    private static final int ATTRIBUTE_COUNT = Integer.bitCount(ScrapStatus.ALL_ATTRIBUTES);
+
+    private final int[] priority;
+    private final int attributes;
+    // Attributes skipped when an attribute is found, by the position of the found attribute's bit
+    private final int[] skipRules;
+
+    /**
+     * Constructor to initialize a new {@link ScrapPlan}
+     *
+     * @param attributesByPriority Attributes to be scrapped, in the order they are scrapped
+     */
+    public ScrapPlan(int... attributesByPriority) {
+        int attributes = 0;
+        for (int attribute : attributesByPriority) {
+            if (Integer.bitCount(attribute) != 1 || (attribute & ~ScrapStatus.ALL_ATTRIBUTES) != 0) {
+                throw new IllegalArgumentException("Invalid attribute: " + attribute);
+            }
+            if ((attributes & attribute) != 0) {
+                throw new IllegalArgumentException("Repeated attribute: " + ScrapStatus.getAttributeNames(attribute));
+            }
+            attributes |= attribute;
+        }
+        this.priority = attributesByPriority.clone();
+        this.attributes = attributes;
+        this.skipRules = new int[ATTRIBUTE_COUNT];
+    }
+
+    /**
+     * Plan that scraps every attribute, as films were always scrapped. The release year is scrapped the last one
+     */
+    public static ScrapPlan full() {
+        return new ScrapPlan(ScrapStatus.ATTR_MAIN_ACTORS, ScrapStatus.ATTR_SYNOPSIS, ScrapStatus.ATTR_PLOT_KEYWORDS,
+                ScrapStatus.ATTR_FILMING_LOCATIONS, ScrapStatus.ATTR_ORIGIN_COUNTRY, ScrapStatus.ATTR_PRIMARY_LANGUAGES,
+                ScrapStatus.ATTR_RELEASE_YEAR);
+    }
+
+    /**
+     * Plan that only scraps the attributes required to complete a film: the synopsis or, if there is no synopsis,
+     * the plot keywords, and the release year (from the main page). The optional attributes are not scrapped
+     */
+    public static ScrapPlan requiredOnly() {
+        return new ScrapPlan(ScrapStatus.ATTR_SYNOPSIS, ScrapStatus.ATTR_PLOT_KEYWORDS, ScrapStatus.ATTR_RELEASE_YEAR)
+                .skipWhenFound(ScrapStatus.ATTR_SYNOPSIS, ScrapStatus.ATTR_PLOT_KEYWORDS);
+    }
+
+    /**
+     * Adds a short-circuit rule: when the attribute is found, the skipped attributes are not scrapped. The rule only
+     * applies to the attributes scrapped after it in the plan
+     *
+     * @param attribute         Attribute that triggers the rule
+     * @param skippedAttributes Bit mask of the attributes that are not scrapped
+     * @return This plan, so that rules can be chained
+     */
+    public ScrapPlan skipWhenFound(int attribute, int skippedAttributes) {
+        if (Integer.bitCount(attribute) != 1 || (attribute & ~ScrapStatus.ALL_ATTRIBUTES) != 0) {
+            throw new IllegalArgumentException("Invalid attribute: " + attribute);
+        }
+        this.skipRules[Integer.numberOfTrailingZeros(attribute)] |= skippedAttributes & ScrapStatus.ALL_ATTRIBUTES;
+        return this;
+    }
+
+    /**
+     * Provides the attributes of the plan, in the order they are scrapped
+     *
+     * @return An array of {@link ScrapStatus} attributes
+     */
+    public int[] getPriority() {
+        return priority.clone();
+    }
+
+    /**
+     * Provides the attributes of the plan
+     *
+     * @return A bit mask of {@link ScrapStatus} attributes
+     */
+    public int getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Checks if an attribute is scrapped by the plan
+     *
+     * @param attribute {@link ScrapStatus} attribute
+     * @return True if the attribute is in the plan
+     */
+    public boolean contains(int attribute) {
+        return (this.attributes & attribute) != 0;
+    }
+
+    /**
+     * Provides the attributes skipped by the rules of the plan once a set of attributes has been found
+     *
+     * @param foundAttributes Bit mask of the attributes found
+     * @return A bit mask of the attributes that must not be scrapped
+     */
+    public int getSkippedAttributes(int foundAttributes) {
+        int skippedAttributes = 0;
+        for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+            if ((foundAttributes & (1 << i)) != 0) {
+                skippedAttributes |= this.skipRules[i];
+            }
+        }
+        return skippedAttributes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder plan = new StringBuilder();
+        for (int attribute : this.priority) {
+            if (plan.length() > 0) {
+                plan.append(" > ");
+            }
+            plan.append(ScrapStatus.getAttributeNames(attribute));
+        }
+        return plan.toString();
+    }
+}
@@ -5,12 +5,26 @@ public class ScrapStatus {
     public static final int NOT_COMPLETED_STATUS = 1;
     public static final int COMPLETED_STATUS = 2;
 
+    // Attributes scrapped from the web, used as bit flags to track which of them failed
+    public static final int ATTR_RELEASE_YEAR = 1;
+    public static final int ATTR_MAIN_ACTORS = 1 << 1;
+    public static final int ATTR_SYNOPSIS = 1 << 2;
+    public static final int ATTR_PLOT_KEYWORDS = 1 << 3;
+    public static final int ATTR_FILMING_LOCATIONS = 1 << 4;
+    public static final int ATTR_ORIGIN_COUNTRY = 1 << 5;
+    public static final int ATTR_PRIMARY_LANGUAGES = 1 << 6;
+    public static final int ALL_ATTRIBUTES = (1 << 7) - 1;
+    private static final String[] ATTRIBUTE_NAMES = {"releaseYear", "mainActors", "synopsis", "plotKeywords",
+            "filmingLocations", "originCountry", "primaryLanguages"};
+
     private static final String DEFAULT_MESSAGE = "Scrapping not completed";
     private static final String OK_MESSAGE = "Scrapping completed successfully";
     private static final String SERVER_DOWN_MSG = "access denied or Server down";
 
     private int statusCode;
     private String message;
+    // Attributes that could not be scrapped because their page could not be downloaded
+    private int failedAttributes;
 
     /**
      * Default constructor. Initializes status to {@link ScrapStatus#NOT_COMPLETED_STATUS}
@@ -30,6 +44,14 @@ public class ScrapStatus {
         return message;
     }
 
+    public int getFailedAttributes() {
+        return failedAttributes;
+    }
+
+    public void setFailedAttributes(int failedAttributes) {
+        this.failedAttributes = failedAttributes & ScrapStatus.ALL_ATTRIBUTES;
+    }
+
     // Class methods
 
     /**
@@ -87,4 +109,32 @@ public class ScrapStatus {
     public boolean isServerError() {
         return (this.message.equals(ScrapStatus.SERVER_DOWN_MSG));
     }
+
+    /**
+     * Checks if any attribute could not be scrapped because its page could not be downloaded
+     *
+     * @return True if there is, at least, one failed attribute
+     */
+    public boolean hasFailedAttributes() {
+        return (this.failedAttributes != 0);
+    }
+
+    /**
+     * Provides the names of a set of attributes
+     *
+     * @param attributes Bit mask of attributes (i.e. {@link ScrapStatus#ATTR_SYNOPSIS})
+     * @return A String with the names of the attributes, separated by commas
+     */
+    public static String getAttributeNames(int attributes) {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < ScrapStatus.ATTRIBUTE_NAMES.length; i++) {
+            if ((attributes & (1 << i)) != 0) {
+                if (names.length() > 0) {
+                    names.append(", ");
+                }
+                names.append(ScrapStatus.ATTRIBUTE_NAMES[i]);
+            }
+        }
+        return names.toString();
+    }
 }
@@ -0,0 +1,282 @@
+package filmdb.export;
+
+import filmdb.entities.Film;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes Bulk API tasks as soon as every film is completed. The tasks are appended, through a single buffered channel,
+ * to numbered segment files that never exceed the configured size. Every segment has an index file listing the
+ * imdbIDs of the films it contains. Optionally, segments are compressed with a {@link ParallelGzipOutputStream}.
+ */
+public class BulkSegmentWriter implements Closeable {
+    public static final String SEGMENT_EXTENSION = ".json";
+    public static final String COMPRESSED_SEGMENT_EXTENSION = ".json.gz";
+    public static final String INDEX_EXTENSION = ".idx";
+    public static final String BLOCK_INDEX_EXTENSION = ".gzidx";
+    private static final String LINE_SEPARATOR = "\r\n";
+    // Name of every segment: <prefix>-NNNNN.json or <prefix>-NNNNN.json.gz
+    private static final Pattern SEGMENT_NAME = Pattern.compile(".+-\\d{5,}(" + Pattern.quote(SEGMENT_EXTENSION)
+            + "|" + Pattern.quote(COMPRESSED_SEGMENT_EXTENSION) + ")");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final String prefix;
+    private final long maxSegmentBytes;
+    private final ByteBuffer buffer;
+    // Only used when the segments are compressed
+    private final int compressionBlockSize;
+    private final ExecutorService compressionPool;
+
+    private FileChannel channel;
+    private ParallelGzipOutputStream compressedStream;
+    // Name of the current segment, without extension
+    private String segmentName;
+    private int segmentNumber;
+    private long segmentBytes;
+    private final List<Integer> segmentIDs;
+    private int writtenTasks;
+    private int segmentCount;
+
+    /**
+     * Constructor to initialize a new {@link BulkSegmentWriter}. Segments are named "prefix-00000.json", and the numbering
+     * continues after the segments already present in the directory
+     *
+     * @param directory       Route to the folder where the segments are written
+     * @param prefix          First part of the name of every segment
+     * @param maxSegmentBytes Maximum size of a segment (a single task bigger than this size gets its own segment)
+     * @throws IOException Raised if the directory could not be created
+     */
+    public BulkSegmentWriter(String directory, String prefix, long maxSegmentBytes) throws IOException {
+        this(directory, prefix, maxSegmentBytes, 0);
+    }
+
+    /**
+     * Constructor to initialize a new {@link BulkSegmentWriter} that compresses the segments. Compressed segments are named
+     * "prefix-00000.json.gz", and the block index of every segment is written in "prefix-00000.gzidx"
+     *
+     * @param directory            Route to the folder where the segments are written
+     * @param prefix               First part of the name of every segment
+     * @param maxSegmentBytes      Maximum uncompressed size of a segment
+     * @param compressionBlockSize Uncompressed size of every compressed block. 0 to write uncompressed segments
+     * @throws IOException Raised if the directory could not be created
+     */
+    public BulkSegmentWriter(String directory, String prefix, long maxSegmentBytes, int compressionBlockSize) throws IOException {
+        this.directory = new File(directory).getCanonicalFile();
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + this.directory);
+        }
+        this.prefix = prefix;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.compressionBlockSize = compressionBlockSize;
+        this.compressionPool = compressionBlockSize > 0 ? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()) : null;
+        this.segmentIDs = new ArrayList<>();
+        this.segmentNumber = this.findLastSegmentNumber();
+        this.writtenTasks = 0;
+        this.segmentCount = 0;
+    }
+
+    public int getWrittenTasks() {
+        return writtenTasks;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Appends the index task of a {@link Film}. The film is serialized by the calling thread,
+     * so that the channel is only locked while the bytes are copied
+     *
+     * @param film {@link Film} to be written
+     * @throws IOException Raised if the task could not be written
+     */
+    public void append(Film film) throws IOException {
+        this.append(film.getImdbID(), film.toJson());
+    }
+
+    /**
+     * Appends the index task of an already serialized film. The document is indexed with the imdbID as its _id,
+     * so that exporting the same film again replaces its previous version
+     *
+     * @param imdbID   Id of the film
+     * @param document JSON document of the film
+     * @throws IOException Raised if the task could not be written
+     */
+    public void append(int imdbID, String document) throws IOException {
+        byte[] task = (BulkSegmentWriter.indexAction(imdbID) + LINE_SEPARATOR + document + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+        this.append(imdbID, task);
+    }
+
+    /**
+     * Appends the delete task of a film
+     *
+     * @param imdbID Id of the film to be deleted
+     * @throws IOException Raised if the task could not be written
+     */
+    public void appendDelete(int imdbID) throws IOException {
+        this.append(imdbID, (BulkSegmentWriter.deleteAction(imdbID) + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the action line of an index task
+     *
+     * @param imdbID Id of the film, used as the document _id
+     * @return The action line, without line separator
+     */
+    public static String indexAction(int imdbID) {
+        return "{\"index\":{\"_id\":\"" + imdbID + "\"}}";
+    }
+
+    /**
+     * Builds the action line of a delete task
+     *
+     * @param imdbID Id of the film, used as the document _id
+     * @return The action line, without line separator
+     */
+    public static String deleteAction(int imdbID) {
+        return "{\"delete\":{\"_id\":\"" + imdbID + "\"}}";
+    }
+
+    private synchronized void append(int imdbID, byte[] task) throws IOException {
+        if (this.channel != null && this.segmentBytes + task.length > this.maxSegmentBytes) {
+            this.closeSegment();
+        }
+        if (this.channel == null) {
+            this.openSegment();
+        }
+        if (this.compressedStream != null) {
+            // The compressed stream buffers whole tasks, so that its blocks are aligned with them
+            this.compressedStream.write(task);
+        } else if (task.length > this.buffer.remaining()) {
+            this.flushBuffer();
+            this.writeOrBuffer(task);
+        } else {
+            this.buffer.put(task);
+        }
+        this.segmentBytes += task.length;
+        this.segmentIDs.add(imdbID);
+        this.writtenTasks++;
+    }
+
+    /**
+     * Flushes and closes the current segment, if any
+     *
+     * @throws IOException Raised if the segment or its index could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel != null) {
+            this.closeSegment();
+        }
+        if (this.compressionPool != null) {
+            this.compressionPool.shutdown();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        this.segmentNumber++;
+        this.segmentName = String.format("%s-%05d", this.prefix, this.segmentNumber);
+        this.channel = new FileOutputStream(new File(this.directory, this.segmentName
+                + (this.compressionPool == null ? SEGMENT_EXTENSION : COMPRESSED_SEGMENT_EXTENSION))).getChannel();
+        if (this.compressionPool != null) {
+            this.compressedStream = new ParallelGzipOutputStream(Channels.newOutputStream(this.channel),
+                    new File(this.directory, this.segmentName + BLOCK_INDEX_EXTENSION), this.compressionBlockSize, this.compressionPool);
+        }
+        this.segmentBytes = 0;
+        this.segmentIDs.clear();
+        this.segmentCount++;
+    }
+
+    private void closeSegment() throws IOException {
+        if (this.compressedStream != null) {
+            // Closing the compressed stream also closes the channel
+            this.compressedStream.close();
+            this.compressedStream = null;
+        } else {
+            this.flushBuffer();
+            this.channel.close();
+        }
+        this.channel = null;
+        this.writeSegmentIndex();
+    }
+
+    /**
+     * Writes the index of the current segment, containing one imdbID per line
+     */
+    private void writeSegmentIndex() throws IOException {
+        File indexFile = new File(this.directory, this.segmentName + INDEX_EXTENSION);
+        StringBuilder index = new StringBuilder();
+        for (int imdbID : this.segmentIDs) {
+            index.append(imdbID).append(LINE_SEPARATOR);
+        }
+        try (FileOutputStream out = new FileOutputStream(indexFile)) {
+            out.write(index.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        this.buffer.flip();
+        this.writeFully(this.buffer);
+        this.buffer.clear();
+    }
+
+    private void writeOrBuffer(byte[] task) throws IOException {
+        if (task.length > this.buffer.capacity()) {
+            this.writeFully(ByteBuffer.wrap(task));
+        } else {
+            this.buffer.put(task);
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            this.channel.write(bytes);
+        }
+    }
+
+    /**
+     * Checks if a file is a bulk segment, so that other files of the directory are not read as bulk tasks
+     *
+     * @param name Name of the file
+     * @return True if the name is a segment name (&lt;prefix&gt;-NNNNN.json or &lt;prefix&gt;-NNNNN.json.gz)
+     */
+    public static boolean isSegment(String name) {
+        return SEGMENT_NAME.matcher(name).matches();
+    }
+
+    /**
+     * Looks for the highest segment number, with the same prefix, already present in the directory
+     *
+     * @return The number of the last segment. 0 if there is no segment
+     */
+    private int findLastSegmentNumber() {
+        int last = 0;
+        Pattern pattern = Pattern.compile(Pattern.quote(this.prefix) + "-(\\d{5,})(" + Pattern.quote(SEGMENT_EXTENSION)
+                + "|" + Pattern.quote(COMPRESSED_SEGMENT_EXTENSION) + ")");
+        String[] names = this.directory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = pattern.matcher(name);
+                if (matcher.matches()) {
+                    last = Math.max(last, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,162 @@
+package filmdb.export;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persisted map of the films already exported, with the content hash of the document sent for each of them.
+ * It is used to export only the films that are new or have changed since the previous run.
+ * Several processes can share the same manifest: every process only saves the films it has updated or removed.
+ */
+public class ExportManifest {
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    private final File file;
+    private final Map<Integer, String> hashes;
+    // Films updated or removed by this process, merged into the manifest when it is saved
+    private final Set<Integer> updatedIDs;
+    private final Set<Integer> removedIDs;
+
+    /**
+     * Constructor to initialize a new {@link ExportManifest}. If the file exists, the hashes of the previous runs are loaded
+     *
+     * @param path Route to the JSON manifest file
+     * @throws IOException Raised if the existing manifest could not be read
+     */
+    public ExportManifest(String path) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        this.hashes = new ConcurrentHashMap<>();
+        this.updatedIDs = ConcurrentHashMap.newKeySet();
+        this.removedIDs = ConcurrentHashMap.newKeySet();
+        this.hashes.putAll(this.read());
+    }
+
+    public int size() {
+        return this.hashes.size();
+    }
+
+    /**
+     * Records the hash of a film's document
+     *
+     * @param imdbID Id of the film
+     * @param hash   Content hash of the document
+     * @return True if the film is new or its document has changed. False if the same document was already exported
+     */
+    public boolean update(int imdbID, String hash) {
+        String previous = this.hashes.put(imdbID, hash);
+        this.updatedIDs.add(imdbID);
+        this.removedIDs.remove(imdbID);
+        return !hash.equals(previous);
+    }
+
+    /**
+     * Removes from the manifest the films that are no longer present in the seed data
+     *
+     * @param seedIDs imdbIDs of all the films present in the seed data
+     * @return A List with the imdbIDs of the films removed
+     */
+    public List<Integer> removeMissing(Set<Integer> seedIDs) {
+        List<Integer> removed = new ArrayList<>();
+        for (Integer imdbID : this.hashes.keySet()) {
+            if (!seedIDs.contains(imdbID)) {
+                removed.add(imdbID);
+            }
+        }
+        for (Integer imdbID : removed) {
+            this.hashes.remove(imdbID);
+            this.updatedIDs.remove(imdbID);
+            this.removedIDs.add(imdbID);
+        }
+        return removed;
+    }
+
+    /**
+     * Writes the manifest. The films updated or removed by this process are merged into the current content of the
+     * manifest, while holding a lock on its lock file, so that the films saved meanwhile by other processes are kept.
+     * The content is written in a temporary file that replaces the previous manifest,
+     * so that an interrupted run never leaves a corrupted manifest
+     *
+     * @throws IOException Raised if the manifest could not be written
+     */
+    public void save() throws IOException {
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        File lockFile = new File(parent, this.file.getName() + ".lock");
+        try (RandomAccessFile lock = new RandomAccessFile(lockFile, "rw")) {
+            FileLock fileLock = lock.getChannel().lock();
+            try {
+                Map<Integer, String> merged = new TreeMap<>(this.read());
+                for (Integer imdbID : new HashSet<>(this.updatedIDs)) {
+                    String hash = this.hashes.get(imdbID);
+                    if (hash != null) {
+                        merged.put(imdbID, hash);
+                    }
+                }
+                for (Integer imdbID : this.removedIDs) {
+                    merged.remove(imdbID);
+                }
+                File temporary = new File(parent, this.file.getName() + ".tmp");
+                try (FileOutputStream out = new FileOutputStream(temporary)) {
+                    out.write(new Gson().toJson(merged).getBytes(StandardCharsets.UTF_8));
+                }
+                Files.move(temporary.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * Reads the content of the manifest file
+     *
+     * @return A Map with the hash of every film. Empty if the file does not exist
+     */
+    private Map<Integer, String> read() throws IOException {
+        if (!this.file.isFile()) {
+            return new TreeMap<>();
+        }
+        String json = new String(Files.readAllBytes(this.file.toPath()), StandardCharsets.UTF_8);
+        Map<Integer, String> content = new Gson().fromJson(json, new TypeToken<Map<Integer, String>>() {
+        }.getType());
+        return content == null ? new TreeMap<>() : content;
+    }
+
+    /**
+     * Computes the content hash of a document
+     *
+     * @param document JSON document of a film
+     * @return Hexadecimal representation of the hash
+     */
+    public static String contentHash(String document) {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(document.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package filmdb.export;
+
+import filmdb.entities.Film;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.InvalidPropertiesFormatException;
+import java.util.function.Consumer;
+
+/**
+ * Read-only view of a snapshot written by {@link FilmSnapshotWriter}. The file is memory-mapped, so opening a snapshot
+ * only reads its footer; records and strings are decoded when they are accessed.
+ * <p>
+ * On Java 8 the mapping is only released when the buffer is garbage collected, not by {@link FilmSnapshot#close()}.
+ * Windows does not allow replacing a mapped file, so a snapshot rewritten right after being read may fail to replace
+ * the previous one; the previous snapshot is then kept and the new one is discarded.
+ */
+public class FilmSnapshot implements Closeable {
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int dictionaryOffset;
+    private final int stringsOffset;
+    private final int indexOffset;
+    private final int recordCount;
+
+    /**
+     * Opens and maps a snapshot file
+     *
+     * @param path Route to the snapshot file
+     * @throws IOException Raised if the file could not be mapped or is not a valid snapshot
+     */
+    public FilmSnapshot(String path) throws IOException {
+        this.file = new RandomAccessFile(new File(path).getCanonicalFile(), "r");
+        FileChannel channel = this.file.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) {
+            this.file.close();
+            throw new IOException("Snapshot too large to be mapped (" + channel.size() + " bytes)");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        int footer = this.buffer.capacity() - FilmSnapshotWriter.FOOTER_SIZE;
+        if (footer < FilmSnapshotWriter.HEADER_SIZE || this.buffer.getInt(0) != FilmSnapshotWriter.MAGIC
+                || this.buffer.getInt(footer + 24) != FilmSnapshotWriter.MAGIC) {
+            this.file.close();
+            throw new IOException("Invalid snapshot file " + path);
+        }
+        if (this.buffer.getInt(4) != FilmSnapshotWriter.VERSION) {
+            this.file.close();
+            throw new IOException("Unsupported snapshot version " + this.buffer.getInt(4));
+        }
+        this.dictionaryOffset = (int) this.buffer.getLong(footer);
+        this.indexOffset = (int) this.buffer.getLong(footer + 8);
+        this.recordCount = this.buffer.getInt(footer + 16);
+        int dictionarySize = this.buffer.getInt(this.dictionaryOffset);
+        this.stringsOffset = this.dictionaryOffset + 4 + 8 * (dictionarySize + 1);
+    }
+
+    /**
+     * Number of films in the snapshot
+     */
+    public int size() {
+        return this.recordCount;
+    }
+
+    /**
+     * Finds a film by its imdbID with a binary search over the index
+     *
+     * @param imdbID Id of the film
+     * @return The {@link Film}, or null if it is not present in the snapshot
+     * @throws InvalidPropertiesFormatException Raised if the record contains invalid values
+     */
+    public Film get(int imdbID) throws InvalidPropertiesFormatException {
+        int low = 0;
+        int high = this.recordCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = this.indexOffset + middle * INDEX_ENTRY_SIZE;
+            int current = this.buffer.getInt(entry);
+            if (current < imdbID) {
+                low = middle + 1;
+            } else if (current > imdbID) {
+                high = middle - 1;
+            } else {
+                return this.readRecord((int) this.buffer.getLong(entry + 4));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a film is present in the snapshot, without decoding its record
+     *
+     * @param imdbID Id of the film
+     * @return True if the film is present. False otherwise
+     */
+    public boolean contains(int imdbID) {
+        int low = 0;
+        int high = this.recordCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int current = this.buffer.getInt(this.indexOffset + middle * INDEX_ENTRY_SIZE);
+            if (current < imdbID) {
+                low = middle + 1;
+            } else if (current > imdbID) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads all the films of the snapshot, in imdbID order
+     *
+     * @param consumer Function invoked with every {@link Film}
+     * @throws InvalidPropertiesFormatException Raised if a record contains invalid values
+     */
+    public void forEach(Consumer<Film> consumer) throws InvalidPropertiesFormatException {
+        for (int i = 0; i < this.recordCount; i++) {
+            consumer.accept(this.readRecord((int) this.buffer.getLong(this.indexOffset + i * INDEX_ENTRY_SIZE + 4)));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    private Film readRecord(int offset) throws InvalidPropertiesFormatException {
+        // Every reader works on its own view, so that a snapshot can be read concurrently
+        ByteBuffer record = this.buffer.duplicate();
+        record.position(offset + 4);
+
+        Film film = new Film(record.getInt());
+        String url = this.string(record.getInt());
+        if (url != null) {
+            film.setUrl(url);
+        }
+        String title = this.string(record.getInt());
+        film.restoreTitle(title, record.getInt());
+        float avgScore = record.getFloat();
+        if (avgScore >= 0) {
+            film.setAvgScore(avgScore);
+        }
+        film.setSynopsis(this.string(record.getInt()));
+        film.setOriginCountry(this.string(record.getInt()));
+        String[] genres = this.stringArray(record);
+        if (genres != null) {
+            film.setGenres(genres);
+        }
+        film.setMainActors(this.stringArray(record));
+        film.setPlotKeywords(this.stringArray(record));
+        film.setFilmingLocations(this.stringArray(record));
+        film.setPrimaryLanguages(this.stringArray(record));
+        String[] dictionaryTags = this.stringArray(record);
+        if (dictionaryTags != null) {
+            film.setDictionaryTags(dictionaryTags);
+        }
+        String[] dictionaryTerms = this.stringArray(record);
+        if (dictionaryTerms != null) {
+            film.setDictionaryTerms(dictionaryTerms);
+        }
+        film.getStatus().setStatusCompleted();
+        return film;
+    }
+
+    private String[] stringArray(ByteBuffer record) {
+        int length = record.getInt();
+        if (length == FilmSnapshotWriter.NULL_REF) {
+            return null;
+        }
+        String[] array = new String[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = this.string(record.getInt());
+        }
+        return array;
+    }
+
+    private String string(int ref) {
+        if (ref == FilmSnapshotWriter.NULL_REF) {
+            return null;
+        }
+        int entry = this.dictionaryOffset + 4 + 8 * ref;
+        int start = (int) this.buffer.getLong(entry);
+        int end = (int) this.buffer.getLong(entry + 8);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(this.stringsOffset + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,180 @@
+package filmdb.export;
+
+import filmdb.entities.Film;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes {@link Film} records in the binary snapshot format read by {@link FilmSnapshot}.
+ * <p>
+ * The file contains a header, the length-prefixed records, a dictionary with every distinct string,
+ * an index of the records sorted by imdbID and a fixed-size footer with the position of each section.
+ * Records reference strings by their position in the dictionary, so repeated values (genres, actors,
+ * countries...) are stored only once.
+ */
+public class FilmSnapshotWriter implements Closeable {
+    static final int MAGIC = 0x464D534E; // "FMSN"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 28;
+    static final int NULL_REF = -1;
+
+    private final File file;
+    private final File temporaryFile;
+    private final DataOutputStream out;
+    private final Map<String, Integer> dictionaryRefs;
+    private final List<byte[]> dictionary;
+    // Offset of every record, sorted by imdbID
+    private final TreeMap<Integer, Long> index;
+    private long position;
+
+    /**
+     * Constructor to initialize a new {@link FilmSnapshotWriter}. The snapshot is written in a temporary file
+     * that replaces the destination file when the writer is closed
+     *
+     * @param path Route to the snapshot file
+     * @throws IOException Raised if the temporary file could not be created
+     */
+    public FilmSnapshotWriter(String path) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        this.temporaryFile = new File(parent, this.file.getName() + ".tmp");
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.temporaryFile), 64 * 1024));
+        this.dictionaryRefs = new HashMap<>();
+        this.dictionary = new ArrayList<>();
+        this.index = new TreeMap<>();
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.position = HEADER_SIZE;
+    }
+
+    /**
+     * Writes the record of a {@link Film}. If a film with the same imdbID was already written, the new record replaces it in the index
+     *
+     * @param film {@link Film} to be written
+     * @throws IOException Raised if the record could not be written
+     */
+    public void write(Film film) throws IOException {
+        int length = 4 * 7 + this.arrayLength(film.getGenres()) + this.arrayLength(film.getMainActors())
+                + this.arrayLength(film.getPlotKeywords()) + this.arrayLength(film.getFilmingLocations())
+                + this.arrayLength(film.getPrimaryLanguages()) + this.arrayLength(film.getDictionaryTags())
+                + this.arrayLength(film.getDictionaryTerms());
+        this.index.put(film.getImdbID(), this.position);
+
+        this.out.writeInt(length);
+        this.out.writeInt(film.getImdbID());
+        this.out.writeInt(this.ref(film.getUrl()));
+        this.out.writeInt(this.ref(film.getTitle()));
+        this.out.writeInt(film.getReleaseYear());
+        this.out.writeFloat(film.getAvgScore());
+        this.out.writeInt(this.ref(film.getSynopsis()));
+        this.out.writeInt(this.ref(film.getOriginCountry()));
+        this.writeArray(film.getGenres());
+        this.writeArray(film.getMainActors());
+        this.writeArray(film.getPlotKeywords());
+        this.writeArray(film.getFilmingLocations());
+        this.writeArray(film.getPrimaryLanguages());
+        this.writeArray(film.getDictionaryTags());
+        this.writeArray(film.getDictionaryTerms());
+        this.position += 4 + length;
+    }
+
+    /**
+     * Writes the dictionary, the index and the footer, and moves the snapshot to its final location
+     *
+     * @throws IOException Raised if the snapshot could not be completed
+     */
+    @Override
+    public void close() throws IOException {
+        // Dictionary: number of strings, offset of every string (plus the end of the last one) and the UTF-8 bytes
+        long dictionaryOffset = this.position;
+        this.out.writeInt(this.dictionary.size());
+        long stringOffset = 0;
+        for (byte[] string : this.dictionary) {
+            this.out.writeLong(stringOffset);
+            stringOffset += string.length;
+        }
+        this.out.writeLong(stringOffset);
+        for (byte[] string : this.dictionary) {
+            this.out.write(string);
+        }
+        this.position += 4 + 8L * (this.dictionary.size() + 1) + stringOffset;
+
+        // Index: (imdbID, record offset) pairs sorted by imdbID
+        long indexOffset = this.position;
+        for (Map.Entry<Integer, Long> entry : this.index.entrySet()) {
+            this.out.writeInt(entry.getKey());
+            this.out.writeLong(entry.getValue());
+        }
+
+        this.out.writeLong(dictionaryOffset);
+        this.out.writeLong(indexOffset);
+        this.out.writeInt(this.index.size());
+        this.out.writeInt(VERSION);
+        this.out.writeInt(MAGIC);
+        this.out.close();
+        Files.move(this.temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Abandons an incomplete snapshot: the temporary file is deleted and the destination file is left untouched.
+     * It can be called after a failed {@link FilmSnapshotWriter#close()}
+     */
+    public void discard() {
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            System.out.println("UNSUCCESSFUL function 'discard' (ref: " + e + ")");
+        }
+        if (this.temporaryFile.exists() && !this.temporaryFile.delete()) {
+            System.out.println("UNSUCCESSFUL function 'discard' (ref: " + this.temporaryFile + " could not be deleted)");
+        }
+    }
+
+    private int arrayLength(String[] array) {
+        return 4 + (array == null ? 0 : 4 * array.length);
+    }
+
+    private void writeArray(String[] array) throws IOException {
+        if (array == null) {
+            this.out.writeInt(NULL_REF);
+            return;
+        }
+        this.out.writeInt(array.length);
+        for (String string : array) {
+            this.out.writeInt(this.ref(string));
+        }
+    }
+
+    /**
+     * Provides the position of a string in the dictionary, adding it if it is not present yet
+     */
+    private int ref(String string) {
+        if (string == null) {
+            return NULL_REF;
+        }
+        Integer ref = this.dictionaryRefs.get(string);
+        if (ref == null) {
+            ref = this.dictionary.size();
+            this.dictionaryRefs.put(string, ref);
+            this.dictionary.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        return ref;
+    }
+}
@@ -0,0 +1,186 @@
+package filmdb.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compatible {@link OutputStream} that splits the data in blocks and compresses them in parallel.
+ * Every block is written as an independent gzip member, so the output can be read by gzip, zcat or
+ * {@link java.util.zip.GZIPInputStream}, and any block can be decompressed on its own.
+ * Blocks are only cut at the end of a write call: writers that write whole records get record-aligned blocks.
+ * <p>
+ * The optional block index contains one line per block: "uncompressedOffset compressedOffset uncompressedLength compressedLength"
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private final OutputStream out;
+    private final File indexFile;
+    private final int blockSize;
+    private final ExecutorService compressionPool;
+    private final int maxPendingBlocks;
+
+    private byte[] block;
+    private int blockLength;
+    // Compressed blocks, in the same order as they were submitted
+    private final Deque<Future<byte[]>> pendingBlocks;
+    private final Deque<Integer> pendingLengths;
+    private final List<long[]> blockIndex;
+    private long uncompressedOffset;
+    private long compressedOffset;
+    private boolean closed;
+
+    /**
+     * Constructor to initialize a new {@link ParallelGzipOutputStream}
+     *
+     * @param out             {@link OutputStream} where the compressed blocks are written
+     * @param indexFile       File where the block index is written when the stream is closed. Null to skip the index
+     * @param blockSize       Minimum number of uncompressed bytes of every block (except the last one)
+     * @param compressionPool {@link ExecutorService} where the blocks are compressed. It is not shut down by this stream
+     */
+    public ParallelGzipOutputStream(OutputStream out, File indexFile, int blockSize, ExecutorService compressionPool) {
+        this.out = out;
+        this.indexFile = indexFile;
+        this.blockSize = blockSize;
+        this.compressionPool = compressionPool;
+        // Bounds the memory used by blocks waiting to be compressed or written
+        this.maxPendingBlocks = 2 * Runtime.getRuntime().availableProcessors();
+        this.block = new byte[blockSize];
+        this.blockLength = 0;
+        this.pendingBlocks = new ArrayDeque<>();
+        this.pendingLengths = new ArrayDeque<>();
+        this.blockIndex = new ArrayList<>();
+        this.uncompressedOffset = 0;
+        this.compressedOffset = 0;
+        this.closed = false;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+        if (this.blockLength + length > this.block.length) {
+            this.block = Arrays.copyOf(this.block, Math.max(this.block.length * 2, this.blockLength + length));
+        }
+        System.arraycopy(bytes, offset, this.block, this.blockLength, length);
+        this.blockLength += length;
+        if (this.blockLength >= this.blockSize) {
+            this.submitBlock();
+        }
+    }
+
+    /**
+     * Submits the current block, and writes all the blocks that have already been compressed
+     *
+     * @throws IOException Raised if a block could not be compressed or written
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.blockLength > 0) {
+            this.submitBlock();
+        }
+        while (!this.pendingBlocks.isEmpty() && this.pendingBlocks.peekFirst().isDone()) {
+            this.writeFirstBlock();
+        }
+        this.out.flush();
+    }
+
+    /**
+     * Compresses and writes the remaining blocks, writes the block index and closes the underlying stream
+     *
+     * @throws IOException Raised if a block or the index could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            if (this.blockLength > 0) {
+                this.submitBlock();
+            }
+            while (!this.pendingBlocks.isEmpty()) {
+                this.writeFirstBlock();
+            }
+            this.writeBlockIndex();
+        } finally {
+            this.closed = true;
+            this.out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = this.block;
+        final int length = this.blockLength;
+        this.pendingBlocks.addLast(this.compressionPool.submit(() -> ParallelGzipOutputStream.compress(data, length)));
+        this.pendingLengths.addLast(length);
+        this.block = new byte[this.blockSize];
+        this.blockLength = 0;
+        while (this.pendingBlocks.size() > this.maxPendingBlocks) {
+            this.writeFirstBlock();
+        }
+    }
+
+    /**
+     * Waits until the oldest pending block is compressed, and writes it
+     */
+    private void writeFirstBlock() throws IOException {
+        byte[] compressed;
+        try {
+            compressed = this.pendingBlocks.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing a block", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Impossible to compress a block", e.getCause());
+        }
+        int length = this.pendingLengths.removeFirst();
+        this.out.write(compressed);
+        this.blockIndex.add(new long[]{this.uncompressedOffset, this.compressedOffset, length, compressed.length});
+        this.uncompressedOffset += length;
+        this.compressedOffset += compressed.length;
+    }
+
+    private void writeBlockIndex() throws IOException {
+        if (this.indexFile == null) {
+            return;
+        }
+        StringBuilder index = new StringBuilder();
+        for (long[] entry : this.blockIndex) {
+            index.append(entry[0]).append(' ').append(entry[1]).append(' ').append(entry[2]).append(' ').append(entry[3]).append(LINE_SEPARATOR);
+        }
+        try (FileOutputStream indexStream = new FileOutputStream(this.indexFile)) {
+            indexStream.write(index.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Compresses a block as a complete gzip member
+     */
+    private static byte[] compress(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 64 * 1024)) {
+            gzip.write(data, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+}
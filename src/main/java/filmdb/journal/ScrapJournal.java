@@ -0,0 +1,176 @@
+package filmdb.journal;
+
+import filmdb.entities.Film;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal where every completed film is recorded as soon as it is scrapped, so that an interrupted run
+ * can be resumed. Each record contains its length, the CRC32 of its content and the JSON document of the film.
+ * The channel is forced to disk every {@link ScrapJournal#fsyncEveryRecords} records or every
+ * {@link ScrapJournal#fsyncIntervalMillis} milliseconds, whichever comes first.
+ */
+public class ScrapJournal implements Closeable {
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int fsyncEveryRecords;
+    private final long fsyncIntervalMillis;
+    private int unsyncedRecords;
+    private long lastSync;
+
+    /**
+     * Opens (or creates) a journal. A truncated or corrupted tail, left by a crash in the middle of a write, is discarded
+     *
+     * @param path                Route to the journal file
+     * @param fsyncEveryRecords   Maximum number of records written between two syncs
+     * @param fsyncIntervalMillis Maximum time between two syncs
+     * @throws IOException Raised if the journal could not be opened
+     */
+    public ScrapJournal(String path, int fsyncEveryRecords, long fsyncIntervalMillis) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        this.channel = new RandomAccessFile(this.file, "rw").getChannel();
+        this.fsyncEveryRecords = fsyncEveryRecords;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.unsyncedRecords = 0;
+        this.lastSync = System.currentTimeMillis();
+        long validLength = this.scan(null);
+        this.channel.truncate(validLength);
+        this.channel.position(validLength);
+    }
+
+    /**
+     * Appends the record of a completed {@link Film}
+     *
+     * @param film Completed {@link Film}
+     * @throws IOException Raised if the record could not be written
+     */
+    public void append(Film film) throws IOException {
+        byte[] payload = film.toJson().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        synchronized (this) {
+            while (record.hasRemaining()) {
+                this.channel.write(record);
+            }
+            this.unsyncedRecords++;
+            long now = System.currentTimeMillis();
+            if (this.unsyncedRecords >= this.fsyncEveryRecords || now - this.lastSync >= this.fsyncIntervalMillis) {
+                this.sync(now);
+            }
+        }
+    }
+
+    /**
+     * Reads all the valid records of the journal
+     *
+     * @return A Map containing, for every imdbID, the JSON document of its last record
+     * @throws IOException Raised if the journal could not be read
+     */
+    public synchronized Map<Integer, String> replay() throws IOException {
+        Map<Integer, String> documents = new LinkedHashMap<>();
+        this.scan(documents);
+        return documents;
+    }
+
+    /**
+     * Checks if the journal contains any record
+     *
+     * @return True if the journal is empty. False otherwise
+     * @throws IOException Raised if the size of the journal could not be read
+     */
+    public synchronized boolean isEmpty() throws IOException {
+        return this.channel.size() == 0;
+    }
+
+    /**
+     * Removes all the records. Used once the films of the journal are safely exported
+     *
+     * @throws IOException Raised if the journal could not be truncated
+     */
+    public synchronized void reset() throws IOException {
+        this.channel.truncate(0);
+        this.channel.position(0);
+        this.sync(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.sync(System.currentTimeMillis());
+        this.channel.close();
+    }
+
+    private void sync(long now) throws IOException {
+        this.channel.force(false);
+        this.unsyncedRecords = 0;
+        this.lastSync = now;
+    }
+
+    /**
+     * Reads the records from the beginning of the journal until the end, or until the first invalid record
+     *
+     * @param documents Map where the documents are stored by imdbID. Null to only validate the records
+     * @return The length of the valid part of the journal
+     */
+    private long scan(Map<Integer, String> documents) throws IOException {
+        long position = 0;
+        long size = this.channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            this.readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            this.readFully(payload, position + RECORD_HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (documents != null) {
+                String document = new String(payload.array(), StandardCharsets.UTF_8);
+                documents.put(ScrapJournal.parseImdbID(document), document);
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position < size) {
+            System.out.println("Discarding " + (size - position) + " bytes from the tail of the journal " + this.file);
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = this.channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of the journal " + this.file);
+            }
+        }
+    }
+
+    private static int parseImdbID(String document) {
+        int start = document.indexOf("\"imdbID\":") + "\"imdbID\":".length();
+        int end = start;
+        while (end < document.length() && Character.isDigit(document.charAt(end))) {
+            end++;
+        }
+        return Integer.parseInt(document.substring(start, end));
+    }
+}
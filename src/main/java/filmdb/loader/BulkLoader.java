@@ -0,0 +1,426 @@
+package filmdb.loader;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import filmdb.entities.Film;
+import filmdb.export.BulkSegmentWriter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Client of the Elastic Search Bulk API. Tasks are grouped in requests of a limited size, and several requests
+ * are kept in flight at the same time. Documents rejected by the server are retried individually, and the number
+ * of requests in flight is reduced while the server keeps answering 429 (Too Many Requests).
+ */
+public class BulkLoader implements Closeable {
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF = 500; // measured in milliseconds
+    private static final long MAX_BACKOFF = 30000; // measured in milliseconds
+    private static final int TIMEOUT = 60000; // measured in milliseconds
+
+    private final URL endpoint;
+    private final int maxInFlight;
+    private final long maxRequestBytes;
+    private final ExecutorService executor;
+
+    // Tasks waiting to be sent in the next request
+    private List<BulkTask> batch;
+    private long batchBytes;
+
+    // Congestion control: the limit of requests in flight is halved on every 429 and increased again on every success
+    private int inFlightLimit;
+    private int inFlight;
+    private int pendingRequests;
+    private long backoff;
+
+    private final AtomicInteger indexedDocs;
+    private final AtomicInteger failedDocs;
+    private final AtomicInteger retriedDocs;
+    private final AtomicInteger throttledRequests;
+
+    /**
+     * Constructor to initialize a new {@link BulkLoader}
+     *
+     * @param endpoint        URL of the Bulk API (i.e. http://localhost:9200/films/_bulk)
+     * @param maxInFlight     Maximum number of requests sent concurrently
+     * @param maxRequestBytes Maximum size of the body of every request
+     * @throws IOException Raised if the endpoint is not a valid URL
+     */
+    public BulkLoader(String endpoint, int maxInFlight, long maxRequestBytes) throws IOException {
+        this.endpoint = new URL(endpoint);
+        this.maxInFlight = maxInFlight;
+        this.maxRequestBytes = maxRequestBytes;
+        this.executor = Executors.newFixedThreadPool(maxInFlight);
+        this.batch = new ArrayList<>();
+        this.batchBytes = 0;
+        this.inFlightLimit = maxInFlight;
+        this.inFlight = 0;
+        this.pendingRequests = 0;
+        this.backoff = 0;
+        this.indexedDocs = new AtomicInteger();
+        this.failedDocs = new AtomicInteger();
+        this.retriedDocs = new AtomicInteger();
+        this.throttledRequests = new AtomicInteger();
+    }
+
+    public int getIndexedDocs() {
+        return indexedDocs.get();
+    }
+
+    public int getFailedDocs() {
+        return failedDocs.get();
+    }
+
+    public int getRetriedDocs() {
+        return retriedDocs.get();
+    }
+
+    public int getThrottledRequests() {
+        return throttledRequests.get();
+    }
+
+    /**
+     * Adds the index task of a completed {@link Film}
+     *
+     * @param film {@link Film} to be indexed
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for a free request slot
+     */
+    public void add(Film film) throws InterruptedException {
+        this.add(new BulkTask(BulkSegmentWriter.indexAction(film.getImdbID()), film.toJson()));
+    }
+
+    /**
+     * Adds a task to the current request. If the request reaches {@link BulkLoader#maxRequestBytes}, it is sent.
+     * The caller is blocked while there are too many requests in flight
+     *
+     * @param action Action line of the task (i.e. {"index":{"_id":"1132193"}})
+     * @param source Document of the task. Null for the actions without document, such as delete
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for a free request slot
+     */
+    public void add(String action, String source) throws InterruptedException {
+        this.add(new BulkTask(action, source));
+    }
+
+    private void add(BulkTask task) throws InterruptedException {
+        List<BulkTask> full = null;
+        synchronized (this) {
+            if (!this.batch.isEmpty() && this.batchBytes + task.size() > this.maxRequestBytes) {
+                full = this.takeBatch();
+            }
+            this.batch.add(task);
+            this.batchBytes += task.size();
+        }
+        if (full != null) {
+            this.submit(full);
+        }
+    }
+
+    /**
+     * Reads all the bulk segments of a directory, in order, and adds their tasks. Compressed segments are decompressed on the fly.
+     * Files whose name is not a segment name (see {@link BulkSegmentWriter#isSegment(String)}) are ignored
+     *
+     * @param directory Route to the folder containing the bulk segments
+     * @throws IOException          Raised if a segment could not be read
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for a free request slot
+     */
+    public void loadSegments(String directory) throws IOException, InterruptedException {
+        File[] segments = new File(directory).getCanonicalFile().listFiles((dir, name) -> BulkSegmentWriter.isSegment(name));
+        if (segments == null) {
+            throw new IOException("Impossible to list the directory " + directory);
+        }
+        Arrays.sort(segments);
+        for (File segment : segments) {
+            try (InputStream in = segment.getName().endsWith(BulkSegmentWriter.COMPRESSED_SEGMENT_EXTENSION)
+                    ? new GZIPInputStream(new FileInputStream(segment), 64 * 1024) : new FileInputStream(segment)) {
+                this.loadTasks(in);
+            }
+        }
+    }
+
+    /**
+     * Reads NDJSON bulk tasks from a stream and adds them
+     *
+     * @param in {@link InputStream} containing bulk tasks
+     * @throws IOException          Raised if the stream could not be read
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for a free request slot
+     */
+    public void loadTasks(InputStream in) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String action;
+        while ((action = reader.readLine()) != null) {
+            if (action.trim().isEmpty()) {
+                continue;
+            }
+            // Only the delete action is not followed by a document
+            String source = BulkLoader.isDeleteAction(action) ? null : reader.readLine();
+            this.add(action, source);
+        }
+    }
+
+    /**
+     * Sends the current request, even if it has not reached its maximum size
+     *
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for a free request slot
+     */
+    public void flush() throws InterruptedException {
+        List<BulkTask> tasks;
+        synchronized (this) {
+            tasks = this.batch.isEmpty() ? null : this.takeBatch();
+        }
+        if (tasks != null) {
+            this.submit(tasks);
+        }
+    }
+
+    /**
+     * Sends the remaining tasks and waits until every request, including the retries, has finished
+     *
+     * @throws IOException Raised if the thread was interrupted while waiting
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            boolean done = false;
+            while (!done) {
+                this.flush();
+                synchronized (this) {
+                    while (this.pendingRequests > 0) {
+                        this.wait();
+                    }
+                    // Finished requests may have added rejected documents to the batch
+                    done = this.batch.isEmpty();
+                }
+            }
+            this.executor.shutdown();
+            this.executor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the bulk loader", e);
+        }
+    }
+
+    private List<BulkTask> takeBatch() {
+        List<BulkTask> tasks = this.batch;
+        this.batch = new ArrayList<>();
+        this.batchBytes = 0;
+        return tasks;
+    }
+
+    /**
+     * Waits for a free request slot and sends the tasks in a worker thread
+     */
+    private void submit(List<BulkTask> tasks) throws InterruptedException {
+        synchronized (this) {
+            while (this.inFlight >= this.inFlightLimit) {
+                this.wait();
+            }
+            this.inFlight++;
+            this.pendingRequests++;
+        }
+        this.executor.execute(() -> this.send(tasks));
+    }
+
+    private void send(List<BulkTask> tasks) {
+        List<BulkTask> rejected = new ArrayList<>();
+        try {
+            this.waitBackoff();
+            BulkResponse response = this.post(tasks);
+            if (response.status == HTTP_TOO_MANY_REQUESTS || response.status >= 500) {
+                this.onThrottled();
+                rejected.addAll(tasks);
+            } else if (response.status >= 300) {
+                System.out.println("UNSUCCESSFUL function 'send' (ref: HTTP " + response.status + ")");
+                this.failedDocs.addAndGet(tasks.size());
+            } else {
+                rejected.addAll(this.parseItems(tasks, response.body));
+                if (rejected.isEmpty()) {
+                    this.onSuccess();
+                } else {
+                    this.onThrottled();
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("UNSUCCESSFUL function 'send' (ref: " + e + ")");
+            this.onThrottled();
+            rejected.addAll(tasks);
+        } finally {
+            this.requeue(rejected);
+            synchronized (this) {
+                this.inFlight--;
+                this.pendingRequests--;
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Checks the result of every item of a bulk response
+     *
+     * @return The tasks that were rejected with a status that can be retried (429 or 5xx)
+     */
+    private List<BulkTask> parseItems(List<BulkTask> tasks, String body) {
+        List<BulkTask> rejected = new ArrayList<>();
+        JsonObject response = new JsonParser().parse(body).getAsJsonObject();
+        if (!response.has("errors") || !response.get("errors").getAsBoolean()) {
+            this.indexedDocs.addAndGet(tasks.size());
+            return rejected;
+        }
+        JsonArray items = response.getAsJsonArray("items");
+        for (int i = 0; i < tasks.size(); i++) {
+            // Every item contains a single entry, whose key is the action (index, create, delete...)
+            JsonObject item = items.get(i).getAsJsonObject().entrySet().iterator().next().getValue().getAsJsonObject();
+            int status = item.get("status").getAsInt();
+            if (status < 300 || (status == 404 && tasks.get(i).delete)) {
+                this.indexedDocs.incrementAndGet();
+            } else if (status == HTTP_TOO_MANY_REQUESTS || status >= 500) {
+                rejected.add(tasks.get(i));
+            } else {
+                JsonElement error = item.get("error");
+                System.out.println("ERROR indexing document (ref: " + status + " " + error + ")");
+                this.failedDocs.incrementAndGet();
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Adds the rejected tasks to the next request, unless they have been attempted {@link BulkLoader#MAX_ATTEMPTS} times
+     */
+    private void requeue(List<BulkTask> rejected) {
+        synchronized (this) {
+            for (BulkTask task : rejected) {
+                if (++task.attempts >= MAX_ATTEMPTS) {
+                    this.failedDocs.incrementAndGet();
+                } else {
+                    this.retriedDocs.incrementAndGet();
+                    this.batch.add(task);
+                    this.batchBytes += task.size();
+                }
+            }
+        }
+    }
+
+    private synchronized void onThrottled() {
+        this.throttledRequests.incrementAndGet();
+        this.inFlightLimit = Math.max(1, this.inFlightLimit / 2);
+        this.backoff = Math.min(MAX_BACKOFF, Math.max(INITIAL_BACKOFF, this.backoff * 2));
+    }
+
+    private synchronized void onSuccess() {
+        this.inFlightLimit = Math.min(this.maxInFlight, this.inFlightLimit + 1);
+        this.backoff = 0;
+        this.notifyAll();
+    }
+
+    private void waitBackoff() throws InterruptedException {
+        long delay;
+        synchronized (this) {
+            delay = this.backoff;
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    private BulkResponse post(List<BulkTask> tasks) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (BulkTask task : tasks) {
+            task.writeTo(body);
+        }
+        HttpURLConnection connection = (HttpURLConnection) this.endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setRequestProperty("Content-Type", "application/x-ndjson");
+            connection.setFixedLengthStreamingMode(body.size());
+            try (OutputStream out = connection.getOutputStream()) {
+                body.writeTo(out);
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            return new BulkResponse(status, BulkLoader.readFully(in));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isDeleteAction(String action) {
+        return action.trim().startsWith("{\"delete\"");
+    }
+
+    /**
+     * Action line and document of a single bulk task
+     */
+    private static class BulkTask {
+        private final byte[] action;
+        private final byte[] source;
+        private final boolean delete;
+        private int attempts;
+
+        private BulkTask(String action, String source) {
+            this.delete = BulkLoader.isDeleteAction(action);
+            this.action = (action.trim() + "\n").getBytes(StandardCharsets.UTF_8);
+            this.source = source == null ? null : (source.trim() + "\n").getBytes(StandardCharsets.UTF_8);
+            this.attempts = 0;
+        }
+
+        private int size() {
+            return this.action.length + (this.source == null ? 0 : this.source.length);
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            out.write(this.action);
+            if (this.source != null) {
+                out.write(this.source);
+            }
+        }
+    }
+
+    private static class BulkResponse {
+        private final int status;
+        private final String body;
+
+        private BulkResponse(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
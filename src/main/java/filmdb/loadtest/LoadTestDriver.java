@@ -0,0 +1,201 @@
+package filmdb.loadtest;
+
+import filmdb.metrics.LatencyHistogram;
+import filmdb.metrics.MetricsRegistry;
+import filmdb.scrappers.FilmScraper;
+import filmdb.scrappers.WebScraper;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of {@link FilmScraper} against a {@link MockImdbServer}. The same set of synthetic films is
+ * fully scrapped once per concurrency level, and the throughput, the latency percentiles, the server responses and the
+ * heap usage of every level are reported, so that the parallelism of the scrapper can be tuned offline.
+ * <p>
+ * Every level scraps the films with as many threads as the concurrency level. Must be started from the project folder,
+ * as the {@link filmdb.ScrappingApp}. The scrapper writes its log, journal and bulk segments in its own folder,
+ * {@link LoadTestDriver#OUTPUT_DIR}, so that the synthetic films never reach the files of the real scrapping runs.
+ */
+public class LoadTestDriver {
+
+    // Mock server parameters
+    private static final double LATENCY_MEDIAN = 150; // measured in milliseconds
+    private static final double LATENCY_P99 = 900; // measured in milliseconds
+    private static final double ERROR_RATE = 0.01;
+    private static final double THROTTLE_RATE = 0.01;
+    private static final int MAX_CONCURRENT_REQUESTS = 48;
+    private static final int PAGE_BYTES = 250 * 1024;
+    // Load test parameters
+    private static final int FILMS_PER_LEVEL = 400;
+    private static final int[] CONCURRENCY_LEVELS = {1, 2, 4, 8, 16, 32, 64};
+    private static final long HEAP_SAMPLE_INTERVAL = 50; // measured in milliseconds
+    private static final String SHARD_NAME = "loadtest";
+    private static final String LOAD_TEST_EXCEL = "..//mm-IMDb-database//output//loadTestFilms.xlsx";
+    private static final String LOAD_TEST_REPORT = "..//mm-IMDb-database//output//loadTestReport.csv";
+    // Folder of the files written by the scrapper (see FilmScraper#OUTPUT_DIR_PROPERTY)
+    private static final String OUTPUT_DIR = "..//mm-IMDb-database//output//loadtest";
+    // Files written by the scrapper of the shard SHARD_NAME, deleted after every level
+    private static final String BULK_TASKS_DIR = OUTPUT_DIR + "//bulk";
+    private static final String SCRAP_JOURNAL = OUTPUT_DIR + "//scrapJournal-" + SHARD_NAME + ".wal";
+    private static final String REPORT_HEADER = "concurrency,films,completed,seconds,films_per_second,film_p50_s,film_p90_s,film_p99_s,film_max_s,"
+            + "fetch_p50_s,fetch_p99_s,requests,throttled,server_errors,mb_downloaded,peak_heap_mb,gc_ms";
+
+    public static void main(String[] args) {
+        try (MockImdbServer server = new MockImdbServer(0)) {
+            // The base URL must be set before WebScraper is loaded, since it is read only once
+            System.setProperty(WebScraper.BASE_URL_PROPERTY, server.getBaseUrl());
+            // The same applies to the output folder of FilmScraper
+            File outputDir = new File(OUTPUT_DIR).getCanonicalFile();
+            if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+                throw new IOException("Could not create the folder " + outputDir);
+            }
+            System.setProperty(FilmScraper.OUTPUT_DIR_PROPERTY, outputDir.getPath());
+            server.setLatency(LATENCY_MEDIAN, LATENCY_P99);
+            server.setErrorRate(ERROR_RATE);
+            server.setThrottleRate(THROTTLE_RATE);
+            server.setMaxConcurrentRequests(MAX_CONCURRENT_REQUESTS);
+            server.setPageBytes(PAGE_BYTES);
+
+            LoadTestDriver driver = new LoadTestDriver();
+            driver.writeFilmsExcel(FILMS_PER_LEVEL);
+            System.out.println("Mock IMDb server started at " + server.getBaseUrl());
+            System.out.println(REPORT_HEADER);
+            try (OutputStream report = new FileOutputStream(new File(LOAD_TEST_REPORT).getCanonicalFile())) {
+                report.write((REPORT_HEADER + "\r\n").getBytes(StandardCharsets.UTF_8));
+                for (int concurrency : CONCURRENCY_LEVELS) {
+                    String line = driver.runLevel(server, concurrency);
+                    System.out.println(line);
+                    report.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+                    report.flush();
+                }
+            }
+            System.out.println("Load test report written in " + LOAD_TEST_REPORT);
+            System.exit(0);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes an excel file with the same format as the IMDb data excel, whose films link to the mock server
+     *
+     * @param films Number of films
+     * @throws IOException Raised if the file could not be written
+     */
+    private void writeFilmsExcel(int films) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+             OutputStream out = new FileOutputStream(new File(LOAD_TEST_EXCEL).getCanonicalFile())) {
+            XSSFSheet sheet = workbook.createSheet();
+            XSSFRow header = sheet.createRow(0);
+            String[] columns = {"imdbId", "Imdb Link", "Title", "IMDB Score", "Genre", "Poster"};
+            for (int i = 0; i < columns.length; i++) {
+                header.createCell(i).setCellValue(columns[i]);
+            }
+            // The last row of the sheet is not read by the ExcelScraper
+            for (int i = 1; i <= films + 1; i++) {
+                int imdbID = 1000000 + i;
+                XSSFRow row = sheet.createRow(i);
+                row.createCell(0).setCellValue(imdbID);
+                row.createCell(1).setCellValue("http://www.imdb.com/title/tt" + imdbID);
+                // As in the IMDb data excel, the title contains the release year
+                row.createCell(2).setCellValue("Load test film (" + (1920 + i % 100) + ")");
+                row.createCell(3).setCellValue(5 + (i % 50) / 10.0);
+                row.createCell(4).setCellValue("Drama|Comedy");
+            }
+            workbook.write(out);
+        }
+    }
+
+    /**
+     * Scraps all the films of the excel with a concurrency level, from a new {@link FilmScraper}
+     *
+     * @param server      Mock server, whose counters are reset
+     * @param concurrency Number of threads scrapping films at the same time
+     * @return A line of the report, in CSV format
+     * @throws Exception Raised if the scrapper could not be created
+     */
+    private String runLevel(MockImdbServer server, int concurrency) throws Exception {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        LatencyHistogram filmScrapTime = metrics.histogram("filmdb_film_scrap_seconds");
+        LatencyHistogram mainPageFetchTime = metrics.histogram("filmdb_fetch_seconds", "page", "main");
+        FilmScraper filmScraper = new FilmScraper(LOAD_TEST_EXCEL, 1, FILMS_PER_LEVEL, SHARD_NAME);
+        filmScrapTime.reset();
+        mainPageFetchTime.reset();
+        server.resetCounters();
+        System.gc();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+        ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+        heapSampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                HEAP_SAMPLE_INTERVAL, HEAP_SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+        long gcTime = LoadTestDriver.getGcTime();
+        long start = System.nanoTime();
+        try {
+            filmScraper.scrapAllFilms(concurrency);
+        } finally {
+            heapSampler.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        gcTime = LoadTestDriver.getGcTime() - gcTime;
+        int completed = (int) (double) metrics.getAttribute("filmdb_successful_scraps");
+        filmScraper.close();
+        LoadTestDriver.deleteShardFiles();
+
+        return concurrency + "," + FILMS_PER_LEVEL + "," + completed + "," + String.format("%.2f", seconds) + ","
+                + String.format("%.2f", completed / seconds) + ","
+                + LoadTestDriver.seconds(filmScrapTime.getValueAtPercentile(50)) + ","
+                + LoadTestDriver.seconds(filmScrapTime.getValueAtPercentile(90)) + ","
+                + LoadTestDriver.seconds(filmScrapTime.getValueAtPercentile(99)) + ","
+                + LoadTestDriver.seconds(filmScrapTime.getMax()) + ","
+                + LoadTestDriver.seconds(mainPageFetchTime.getValueAtPercentile(50)) + ","
+                + LoadTestDriver.seconds(mainPageFetchTime.getValueAtPercentile(99)) + ","
+                + server.getServedRequests() + "," + server.getThrottledRequests() + "," + server.getFailedRequests() + ","
+                + String.format("%.1f", server.getServedBytes() / 1048576.0) + ","
+                + (peakHeap.get() / 1048576) + "," + gcTime;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format("%.3f", nanos / 1e9);
+    }
+
+    /**
+     * Total time spent by the garbage collectors since the JVM was started, measured in milliseconds
+     */
+    private static long getGcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Deletes the journal and the bulk segments written by the scrapper of the load test, so that every level starts
+     * from scratch and the outputs of the real runs are not mixed with synthetic films
+     */
+    private static void deleteShardFiles() throws IOException {
+        new File(SCRAP_JOURNAL).getCanonicalFile().delete();
+        File[] segments = new File(BULK_TASKS_DIR).getCanonicalFile().listFiles((dir, name) -> name.startsWith("bulkTasks-" + SHARD_NAME));
+        if (segments != null) {
+            for (File segment : segments) {
+                segment.delete();
+            }
+        }
+    }
+}
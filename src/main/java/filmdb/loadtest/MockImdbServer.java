@@ -0,0 +1,366 @@
+package filmdb.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local HTTP server that imitates the IMDb pages scrapped by {@link filmdb.scrappers.WebScraper}: the main page of
+ * every film ("/title/tt0000001/") and its fullcredits, plotsummary, keywords and locations subpages. The content of
+ * the pages is synthetic, but the same for every request of a film, so that the scrapped films are always complete.
+ * <p>
+ * The behaviour of the server can be changed at any time: every response is delayed by a log-normal latency, a share of
+ * the requests fail (HTTP 500) or are throttled (HTTP 429), requests above a maximum number of concurrent requests are
+ * throttled, and every page is padded up to a size. Every request is served by its own thread, so that the latency
+ * does not limit the throughput of the server.
+ * <p>
+ * Pages are sent with ETag and Last-Modified validators, and conditional requests of unchanged pages are answered with
+ * "304 Not Modified". The site can be moved to a new revision, in which a share of the pages change.
+ */
+public class MockImdbServer implements Closeable {
+    private static final Pattern TITLE_PATH = Pattern.compile("^/title/tt(\\d+)/?(fullcredits|plotsummary|keywords|locations)?/?$");
+    // Standard normal quantile of the 99th percentile, used to fit the log-normal latency
+    private static final double P99_Z_SCORE = 2.326;
+    private static final int CAST_SIZE = 60;
+    private static final int KEYWORDS = 40;
+    private static final int LOCATIONS = 8;
+    private static final String[] WORDS = {"thief", "dream", "city", "secret", "train", "memory", "empire", "rival",
+            "bridge", "hotel", "father", "son", "maze", "gravity", "kick", "totem", "heist", "snow", "station", "limbo"};
+    private static final String[] COUNTRIES = {"USA", "UK", "France", "Spain", "Japan", "Italy"};
+    private static final String[] LANGUAGES = {"English", "French", "Spanish", "Japanese", "Italian", "German"};
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Log-normal latency. A median of 0 disables the delay
+    private volatile double latencyMedianMillis;
+    private volatile double latencySigma;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile int maxConcurrentRequests;
+    private volatile int pageBytes;
+    // Every page changes, with a probability of changeRate, in each revision after the first one
+    private volatile int revision;
+    private volatile double changeRate;
+    private final AtomicInteger activeRequests;
+    private final LongAdder servedRequests;
+    private final LongAdder failedRequests;
+    private final LongAdder throttledRequests;
+    private final LongAdder servedBytes;
+    private final LongAdder notModifiedRequests;
+
+    /**
+     * Constructor to initialize and start a new {@link MockImdbServer}, without latency, errors or throttling
+     *
+     * @param port Port where the pages are served. 0 to use any free port
+     * @throws IOException Raised if the port could not be bound
+     */
+    public MockImdbServer(int port) throws IOException {
+        this.latencyMedianMillis = 0;
+        this.latencySigma = 0;
+        this.errorRate = 0;
+        this.throttleRate = 0;
+        this.maxConcurrentRequests = Integer.MAX_VALUE;
+        this.pageBytes = 0;
+        this.activeRequests = new AtomicInteger();
+        this.servedRequests = new LongAdder();
+        this.failedRequests = new LongAdder();
+        this.throttledRequests = new LongAdder();
+        this.servedBytes = new LongAdder();
+        this.notModifiedRequests = new LongAdder();
+        this.revision = 0;
+        this.changeRate = 0;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-imdb");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * Provides the root URL of the server, to be set in {@link filmdb.scrappers.WebScraper#BASE_URL_PROPERTY}
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Sets the latency of the responses, which follows a log-normal distribution
+     *
+     * @param medianMillis Median latency, measured in milliseconds. 0 to respond without delay
+     * @param p99Millis    99th percentile of the latency, measured in milliseconds. Must not be below the median
+     */
+    public void setLatency(double medianMillis, double p99Millis) {
+        this.latencySigma = medianMillis > 0 && p99Millis > medianMillis ? Math.log(p99Millis / medianMillis) / P99_Z_SCORE : 0;
+        this.latencyMedianMillis = medianMillis;
+    }
+
+    /**
+     * @param errorRate Share of the requests, between 0 and 1, that are answered with a server error (HTTP 500)
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param throttleRate Share of the requests, between 0 and 1, that are throttled (HTTP 429) regardless of the load
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * @param maxConcurrentRequests Requests served at the same time. Requests above this limit are throttled (HTTP 429)
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * @param pageBytes Minimum size of every page. Smaller pages are padded with filler sections, as the real pages are
+     */
+    public void setPageBytes(int pageBytes) {
+        this.pageBytes = pageBytes;
+    }
+
+    /**
+     * Moves the site to a new revision. Pages keep their content, and their validators, unless they changed in a revision
+     *
+     * @param revision   Revision of the site. 0 for the initial content
+     * @param changeRate Share of the pages, between 0 and 1, that change in every revision
+     */
+    public void setRevision(int revision, double changeRate) {
+        this.changeRate = changeRate;
+        this.revision = revision;
+    }
+
+    public long getServedRequests() {
+        return servedRequests.sum();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    public long getThrottledRequests() {
+        return throttledRequests.sum();
+    }
+
+    public long getServedBytes() {
+        return servedBytes.sum();
+    }
+
+    /**
+     * Conditional requests answered with "304 Not Modified", not included in the served requests
+     */
+    public long getNotModifiedRequests() {
+        return notModifiedRequests.sum();
+    }
+
+    /**
+     * Sets the request counters back to 0 (i.e. between the runs of a load test)
+     */
+    public void resetCounters() {
+        this.servedRequests.reset();
+        this.failedRequests.reset();
+        this.throttledRequests.reset();
+        this.servedBytes.reset();
+        this.notModifiedRequests.reset();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int active = this.activeRequests.incrementAndGet();
+        try {
+            exchange.getRequestBody().close();
+            Matcher matcher = TITLE_PATH.matcher(exchange.getRequestURI().getPath());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            // Throttled requests are rejected at once, as a rate limiter in front of the site would do
+            if (active > this.maxConcurrentRequests || random.nextDouble() < this.throttleRate) {
+                this.throttledRequests.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                this.respond(exchange, 429, "<html><body>Too many requests</body></html>");
+                return;
+            }
+            this.delay();
+            if (!matcher.matches()) {
+                this.respond(exchange, 404, "<html><body>Not found</body></html>");
+            } else if (random.nextDouble() < this.errorRate) {
+                this.failedRequests.increment();
+                this.respond(exchange, 500, "<html><body>Internal server error</body></html>");
+            } else {
+                int imdbID = Integer.parseInt(matcher.group(1));
+                String page = matcher.group(2) == null ? "main" : matcher.group(2);
+                int pageRevision = this.getPageRevision(imdbID, page);
+                String etag = "\"" + imdbID + "-" + page + "-" + pageRevision + "\"";
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    this.notModifiedRequests.increment();
+                    exchange.getResponseHeaders().set("ETag", etag);
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                this.servedRequests.increment();
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).plusDays(pageRevision)));
+                this.respond(exchange, 200, this.renderPage(imdbID, page, pageRevision));
+            }
+        } finally {
+            this.activeRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Finds the last revision in which a page changed
+     *
+     * @param imdbID Id of the film
+     * @param page   "main", "fullcredits", "plotsummary", "keywords" or "locations"
+     * @return The revision of the current content of the page. 0 if it has never changed
+     */
+    private int getPageRevision(int imdbID, String page) {
+        for (int revision = this.revision; revision > 0; revision--) {
+            // SplittableRandom scrambles its seed, so that the changes of consecutive films are not correlated
+            if (new SplittableRandom(imdbID * 31L + page.hashCode() + revision * 1000003L).nextDouble() < this.changeRate) {
+                return revision;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sleeps the latency of a response, drawn from the log-normal distribution
+     */
+    private void delay() {
+        double median = this.latencyMedianMillis;
+        if (median <= 0) {
+            return;
+        }
+        long millis = Math.round(median * Math.exp(this.latencySigma * ThreadLocalRandom.current().nextGaussian()));
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int code, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        this.servedBytes.add(body.length);
+    }
+
+    /**
+     * Generates a page of a film. The content only depends on the film, the page and its revision
+     *
+     * @param imdbID   Id of the film
+     * @param page     "main", "fullcredits", "plotsummary", "keywords" or "locations"
+     * @param revision Revision of the page
+     * @return The HTML of the page
+     */
+    private String renderPage(int imdbID, String page, int revision) {
+        Random random = new Random(imdbID * 31L + page.hashCode() + revision * 1000003L);
+        String title = "/title/tt" + imdbID + "/";
+        StringBuilder html = new StringBuilder(Math.max(4096, this.pageBytes + 1024));
+        html.append("<!DOCTYPE html><html lang=\"en\"><head><meta charset=\"utf-8\"><title>Film ").append(imdbID)
+                .append(" - IMDb</title></head><body><nav id=\"imdbHeader\"><a href=\"/\">IMDb</a><a href=\"/chart/top\">Top 250</a></nav>\n");
+        switch (page) {
+            case "main":
+                int year = 1920 + random.nextInt(100);
+                html.append("<div class=\"title_wrapper\"><h1>Film ").append(imdbID).append("</h1><div class=\"subtext\"><a href=\"")
+                        .append(title).append("releaseinfo?ref_=tt_ov_rdat\" title=\"See more release dates\">")
+                        .append(1 + random.nextInt(28)).append(" July ").append(year).append(" (USA)</a></div></div>\n");
+                html.append("<div class=\"see-more\"><a href=\"").append(title).append("fullcredits/?ref_=tt_cl_sm\">See full cast</a> | <a href=\"")
+                        .append(title).append("plotsummary?ref_=tt_stry_pl\">Plot Summary</a> | <a href=\"")
+                        .append(title).append("keywords?ref_=tt_stry_kw\">Plot Keywords</a> | <a href=\"")
+                        .append(title).append("locations?ref_=tt_dt_loc\">Filming &amp; Production</a></div>\n");
+                html.append("<div id=\"titleDetails\"><div class=\"txt-block\"><h4 class=\"inline\">Country:</h4><a href=\"/search/title?country_of_origin=")
+                        .append(random.nextInt(COUNTRIES.length)).append("&amp;ref_=tt_dt_dt\">").append(COUNTRIES[random.nextInt(COUNTRIES.length)])
+                        .append("</a></div>\n<div class=\"txt-block\"><h4 class=\"inline\">Language:</h4>");
+                for (int i = 0, languages = 1 + random.nextInt(3); i < languages; i++) {
+                    html.append("<a href=\"/search/title?title_type=feature&amp;primary_language=").append(i)
+                            .append("&amp;ref_=tt_dt_dt\">").append(LANGUAGES[random.nextInt(LANGUAGES.length)]).append("</a> ");
+                }
+                html.append("</div></div>\n");
+                break;
+            case "fullcredits":
+                html.append("<div id=\"fullcredits_content\"><table class=\"cast_list\">");
+                for (int i = 0; i < CAST_SIZE; i++) {
+                    int actorID = random.nextInt(9000000);
+                    html.append("<tr><td><a href=\"/name/nm").append(actorID).append("/\">").append(MockImdbServer.words(random, 2))
+                            .append("</a></td><td class=\"character\">").append(MockImdbServer.words(random, 1)).append("</td></tr>");
+                }
+                html.append("</table></div>\n");
+                break;
+            case "plotsummary":
+                html.append("<div id=\"main\"><ul id=\"plot-summaries-content\"><li id=\"summary-po").append(imdbID).append("\"><p>")
+                        .append(MockImdbServer.words(random, 30)).append(".</p></li></ul><ul id=\"plot-synopsis-content\"><li id=\"synopsis-py")
+                        .append(imdbID).append("\">").append(MockImdbServer.words(random, 200)).append(".</li></ul></div>\n");
+                break;
+            case "keywords":
+                html.append("<div id=\"keywords_content\"><table class=\"dataTable\"><tbody>");
+                for (int i = 0; i < KEYWORDS; i++) {
+                    String keyword = MockImdbServer.words(random, 2);
+                    html.append("<tr><td><a href=\"/search/keyword?keywords=").append(keyword.replace(' ', '-')).append("\">")
+                            .append(keyword).append("</a></td></tr>");
+                }
+                html.append("</tbody></table></div>\n");
+                break;
+            case "locations":
+                html.append("<div id=\"filming_locations\">");
+                for (int i = 0; i < LOCATIONS; i++) {
+                    String location = MockImdbServer.words(random, 2);
+                    html.append("<dt><a href=\"/search/title?locations=").append(location.replace(' ', '+')).append("&amp;ref_=ttloc_loc_")
+                            .append(i).append("\">").append(location).append("</a></dt>");
+                }
+                html.append("</div>\n");
+                break;
+        }
+        // Filler sections, as the scripts and the recommendations of the real pages
+        for (int section = 0; html.length() < this.pageBytes; section++) {
+            html.append("<div class=\"ipc-page-section\" data-testid=\"section-").append(section).append("\"><p>")
+                    .append(MockImdbServer.words(random, 25)).append(".</p></div>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
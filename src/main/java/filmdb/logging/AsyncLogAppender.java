@@ -0,0 +1,201 @@
+package filmdb.logging;
+
+import filmdb.metrics.MetricsRegistry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log stream whose writes never wait for the disk. Every write is copied into a bounded ring buffer, and a single
+ * writer thread drains the buffer and appends all the pending entries to the log file in one batch.
+ * If the buffer is full, the entry is discarded and counted, instead of blocking the calling thread.
+ */
+public class AsyncLogAppender extends OutputStream {
+    private static final int BATCH_BYTES = 64 * 1024;
+    // Entry that stops the writer thread
+    private static final byte[] POISON = new byte[0];
+    // Appenders not closed yet. The gauge adds up their dropped entries, since every scrapper has its own appender
+    private static final Set<AsyncLogAppender> LIVE_APPENDERS = ConcurrentHashMap.newKeySet();
+
+    private final FileOutputStream out;
+    private final ArrayBlockingQueue<byte[]> ringBuffer;
+    private final Thread writer;
+    private final AtomicLong enqueuedEntries;
+    private final AtomicLong droppedEntries;
+    // Updated by the writer thread, guarded by the appender's monitor
+    private long writtenEntries;
+    private IOException writeError;
+    private volatile boolean closed;
+
+    /**
+     * Constructor to initialize a new {@link AsyncLogAppender} that appends to the specified file
+     *
+     * @param path     Route to the log file
+     * @param capacity Maximum number of entries waiting to be written
+     * @throws IOException Raised if the log file could not be opened
+     */
+    public AsyncLogAppender(String path, int capacity) throws IOException {
+        this.out = new FileOutputStream(new File(path).getCanonicalPath(), true);
+        this.ringBuffer = new ArrayBlockingQueue<>(capacity);
+        this.enqueuedEntries = new AtomicLong();
+        this.droppedEntries = new AtomicLong();
+        MetricsRegistry.getDefault().gauge("filmdb_log_dropped_entries", AsyncLogAppender::getLiveDroppedEntries);
+        this.writtenEntries = 0;
+        this.writer = new Thread(this::drain, "log-appender");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        LIVE_APPENDERS.add(this);
+    }
+
+    public long getDroppedEntries() {
+        return droppedEntries.get();
+    }
+
+    /**
+     * Number of entries discarded by all the appenders not closed yet
+     */
+    private static double getLiveDroppedEntries() {
+        long droppedEntries = 0;
+        for (AsyncLogAppender appender : LIVE_APPENDERS) {
+            droppedEntries += appender.droppedEntries.get();
+        }
+        return droppedEntries;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        this.write(b, 0, b.length);
+    }
+
+    /**
+     * Enqueues a copy of the bytes. The method returns immediately, even if the entry has to be discarded
+     *
+     * @throws IOException Raised if the appender is closed
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (this.closed) {
+            throw new IOException("Log appender closed");
+        }
+        byte[] entry = new byte[len];
+        System.arraycopy(b, off, entry, 0, len);
+        // The entry is counted before it is enqueued, so that flush() never misses it
+        this.enqueuedEntries.incrementAndGet();
+        if (!this.ringBuffer.offer(entry)) {
+            this.enqueuedEntries.decrementAndGet();
+            this.droppedEntries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits until every entry enqueued before this call has been written in the log file
+     *
+     * @throws IOException Raised if the writer thread could not write in the log file
+     */
+    @Override
+    public void flush() throws IOException {
+        long target = this.enqueuedEntries.get();
+        synchronized (this) {
+            while (this.writtenEntries < target && this.writer.isAlive()) {
+                try {
+                    this.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (this.writeError != null) {
+                throw this.writeError;
+            }
+        }
+    }
+
+    /**
+     * Writes the pending entries, stops the writer thread and closes the log file
+     *
+     * @throws IOException Raised if the pending entries could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        LIVE_APPENDERS.remove(this);
+        try {
+            this.flush();
+        } finally {
+            this.closed = true;
+            try {
+                this.ringBuffer.put(POISON);
+                this.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.out.close();
+        }
+    }
+
+    /**
+     * Body of the writer thread: waits for an entry and writes it along with every other entry already enqueued
+     */
+    private void drain() {
+        List<byte[]> batch = new ArrayList<>();
+        byte[] buffer = new byte[BATCH_BYTES];
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(this.ringBuffer.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            this.ringBuffer.drainTo(batch);
+            // Arrays are compared by identity, so only the POISON entry matches
+            running = !batch.contains(POISON);
+            int position = 0;
+            long start = System.nanoTime();
+            try {
+                for (byte[] entry : batch) {
+                    if (entry == POISON) {
+                        continue;
+                    }
+                    if (position + entry.length > buffer.length) {
+                        this.out.write(buffer, 0, position);
+                        position = 0;
+                    }
+                    if (entry.length > buffer.length) {
+                        this.out.write(entry);
+                    } else {
+                        System.arraycopy(entry, 0, buffer, position, entry.length);
+                        position += entry.length;
+                    }
+                }
+                this.out.write(buffer, 0, position);
+                MetricsRegistry.getDefault().histogram("filmdb_log_write_seconds").recordSince(start);
+            } catch (IOException e) {
+                synchronized (this) {
+                    this.writeError = e;
+                }
+            }
+            // Entries are counted as written even after an error, so that flush() reports it instead of waiting forever
+            int entries = running ? batch.size() : batch.size() - 1;
+            batch.clear();
+            synchronized (this) {
+                this.writtenEntries += entries;
+                this.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package filmdb.logging;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyzer of the history of scrapping runs kept in the scrapping log. The log is memory-mapped and split in
+ * line-aligned chunks that are parsed in parallel: every chunk yields the runs it contains, and its first part, which
+ * belongs to the run started in a previous chunk, is merged with it. Only the few header lines of a run are decoded
+ * as text; the film lines are parsed on the mapped bytes.
+ * <p>
+ * The {@link Report} gives the throughput of every run and the distribution of the scrap time of its films, the
+ * errors grouped by reason, the slowest films and the films that fail run after run. The mean scrap time of every
+ * film can be used to start the slowest films first.
+ */
+public class LogAnalyzer {
+    // Chunks smaller than this are not worth a thread of their own
+    private static final long MIN_CHUNK_SIZE = 256 * 1024;
+    // Largest region that can be mapped at once
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    // Films that failed at least this number of times, and more often than they were scrapped, are chronic failures
+    private static final int CHRONIC_FAILURES = 2;
+    private static final int SLOWEST_FILMS = 100;
+    // Scrap times are counted per second. Longer times are counted as MAX_SECONDS
+    private static final int MAX_SECONDS = 3600;
+
+    private static final byte[] NEW_RUN = "-----|NEW SCRAPPING APP|".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STARTED_AT = "Started at: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SCRAPPED = "Scrapped film: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ERROR = "ERROR scrapping film: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INCOMPLETE = "INCOMPLETE scrapping film: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RETRIED = "Retried film: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SCRAPPING_TIME = "Total scrapping time: ".getBytes(StandardCharsets.US_ASCII);
+    private static final String MODE = "|Mode: ";
+    private static final String REFERENCE = " (ref: ";
+
+    /**
+     * Statistics of a scrapping run, from its "NEW SCRAPPING APP" header to the next one
+     */
+    public static class Run {
+        private String startedAt;
+        private String mode;
+        private int scrappedFilms;
+        private int failedFilms;
+        private int incompleteFilms;
+        private int retriedFilms;
+        // Null if the run did not end (i.e. it was interrupted)
+        private Long scrappingMinutes;
+        private Double filmsPerMinute;
+        private double meanSeconds;
+        private int p50Seconds;
+        private int p90Seconds;
+        private int p99Seconds;
+        private int maxSeconds;
+        private final Map<String, Integer> errorReasons = new TreeMap<>();
+        private final transient long[] secondsHistogram = new long[MAX_SECONDS + 1];
+        private transient long totalSeconds;
+        // True if the run was started before the chunk where this part of it was parsed
+        private final transient boolean continuation;
+
+        private Run(boolean continuation) {
+            this.continuation = continuation;
+        }
+
+        public String getStartedAt() {
+            return startedAt;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public int getScrappedFilms() {
+            return scrappedFilms;
+        }
+
+        public int getFailedFilms() {
+            return failedFilms;
+        }
+
+        public int getIncompleteFilms() {
+            return incompleteFilms;
+        }
+
+        public Double getFilmsPerMinute() {
+            return filmsPerMinute;
+        }
+
+        public int getP50Seconds() {
+            return p50Seconds;
+        }
+
+        public int getP90Seconds() {
+            return p90Seconds;
+        }
+
+        public int getMaxSeconds() {
+            return maxSeconds;
+        }
+
+        public Map<String, Integer> getErrorReasons() {
+            return errorReasons;
+        }
+
+        private boolean isEmpty() {
+            return this.startedAt == null && this.mode == null && this.scrappedFilms + this.failedFilms + this.incompleteFilms
+                    + this.retriedFilms == 0 && this.scrappingMinutes == null;
+        }
+
+        /**
+         * Adds the part of this run parsed in the following chunk
+         */
+        private void merge(Run next) {
+            if (this.startedAt == null) {
+                this.startedAt = next.startedAt;
+            }
+            if (this.mode == null) {
+                this.mode = next.mode;
+            }
+            this.scrappedFilms += next.scrappedFilms;
+            this.failedFilms += next.failedFilms;
+            this.incompleteFilms += next.incompleteFilms;
+            this.retriedFilms += next.retriedFilms;
+            if (next.scrappingMinutes != null) {
+                this.scrappingMinutes = this.scrappingMinutes == null ? next.scrappingMinutes : this.scrappingMinutes + next.scrappingMinutes;
+            }
+            for (Map.Entry<String, Integer> entry : next.errorReasons.entrySet()) {
+                this.errorReasons.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+            for (int i = 0; i <= MAX_SECONDS; i++) {
+                this.secondsHistogram[i] += next.secondsHistogram[i];
+            }
+            this.totalSeconds += next.totalSeconds;
+        }
+
+        /**
+         * Computes the throughput and the percentiles of the scrap time, once every part of the run has been merged
+         */
+        private void summarize() {
+            if (this.scrappingMinutes != null && this.scrappingMinutes > 0) {
+                this.filmsPerMinute = (double) (this.scrappedFilms + this.failedFilms + this.incompleteFilms) / this.scrappingMinutes;
+            }
+            if (this.scrappedFilms > 0) {
+                this.meanSeconds = (double) this.totalSeconds / this.scrappedFilms;
+                this.p50Seconds = this.getSecondsAtPercentile(50);
+                this.p90Seconds = this.getSecondsAtPercentile(90);
+                this.p99Seconds = this.getSecondsAtPercentile(99);
+                this.maxSeconds = this.getSecondsAtPercentile(100);
+            }
+        }
+
+        private int getSecondsAtPercentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.scrappedFilms));
+            long count = 0;
+            for (int seconds = 0; seconds <= MAX_SECONDS; seconds++) {
+                count += this.secondsHistogram[seconds];
+                if (count >= rank) {
+                    return seconds;
+                }
+            }
+            return MAX_SECONDS;
+        }
+    }
+
+    /**
+     * History of a film over every run of the log
+     */
+    public static class FilmHistory {
+        private final int imdbID;
+        private int scraps;
+        private int failures;
+        private long totalSeconds;
+        private int maxSeconds;
+        private String lastError;
+
+        private FilmHistory(int imdbID) {
+            this.imdbID = imdbID;
+        }
+
+        public int getImdbID() {
+            return imdbID;
+        }
+
+        public int getScraps() {
+            return scraps;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public int getMaxSeconds() {
+            return maxSeconds;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        /**
+         * Mean scrap time of the film, measured in seconds. 0 if it was never scrapped
+         */
+        public double getMeanSeconds() {
+            return this.scraps == 0 ? 0 : (double) this.totalSeconds / this.scraps;
+        }
+
+        /**
+         * Adds the history of the film parsed in a following chunk
+         */
+        private void merge(FilmHistory next) {
+            this.scraps += next.scraps;
+            this.failures += next.failures;
+            this.totalSeconds += next.totalSeconds;
+            this.maxSeconds = Math.max(this.maxSeconds, next.maxSeconds);
+            if (next.lastError != null) {
+                this.lastError = next.lastError;
+            }
+        }
+    }
+
+    /**
+     * Result of the analysis of a log
+     */
+    public static class Report {
+        private String log;
+        private long bytes;
+        private long lines;
+        private long analysisMillis;
+        private List<Run> runs;
+        private Map<String, Integer> errorReasons;
+        private List<FilmHistory> slowestFilms;
+        private List<FilmHistory> chronicFailures;
+        private transient Map<Integer, FilmHistory> films;
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getAnalysisMillis() {
+            return analysisMillis;
+        }
+
+        public List<Run> getRuns() {
+            return runs;
+        }
+
+        public Map<String, Integer> getErrorReasons() {
+            return errorReasons;
+        }
+
+        public List<FilmHistory> getSlowestFilms() {
+            return slowestFilms;
+        }
+
+        public List<FilmHistory> getChronicFailures() {
+            return chronicFailures;
+        }
+
+        /**
+         * Provides the history of a film
+         *
+         * @param imdbID Id of the film
+         * @return The {@link FilmHistory} of the film, or null if it is not in the log
+         */
+        public FilmHistory getFilm(int imdbID) {
+            return this.films.get(imdbID);
+        }
+
+        /**
+         * Provides the mean scrap time of every film scrapped at least once
+         *
+         * @return Map of imdbID to mean scrap time, measured in seconds
+         */
+        public Map<Integer, Double> getExpectedScrapTimes() {
+            Map<Integer, Double> expectedScrapTimes = new HashMap<>();
+            for (FilmHistory film : this.films.values()) {
+                if (film.scraps > 0) {
+                    expectedScrapTimes.put(film.imdbID, film.getMeanSeconds());
+                }
+            }
+            return expectedScrapTimes;
+        }
+
+        /**
+         * Writes the report as JSON. The content is written in a temporary file that replaces the destination file
+         *
+         * @param path Route to the report file
+         * @throws IOException Raised if the file could not be written
+         */
+        public void write(String path) throws IOException {
+            File file = new File(path).getCanonicalFile();
+            File temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temporary)) {
+                out.write(new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(this).getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Runs and films parsed from a chunk. The first run is the continuation of the run in progress at the start of the chunk
+     */
+    private static class Chunk {
+        private final List<Run> runs = new ArrayList<>();
+        private final Map<Integer, FilmHistory> films = new HashMap<>();
+        private long lines;
+    }
+
+    private final String path;
+    private final int threads;
+
+    /**
+     * Constructor to initialize a new {@link LogAnalyzer}
+     *
+     * @param path    Route to the scrapping log
+     * @param threads Maximum number of chunks parsed at the same time
+     */
+    public LogAnalyzer(String path, int threads) {
+        this.path = path;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Analyzes the log, as it is when the method is called. Lines appended meanwhile are not read
+     *
+     * @return The {@link Report} of the log
+     * @throws IOException Raised if the log could not be read
+     */
+    public Report analyze() throws IOException {
+        long start = System.currentTimeMillis();
+        File file = new File(this.path).getCanonicalFile();
+        List<Chunk> chunks = new ArrayList<>();
+        long size;
+        try (RandomAccessFile log = new RandomAccessFile(file, "r")) {
+            FileChannel channel = log.getChannel();
+            size = channel.size();
+            List<Long> bounds = this.split(channel, size);
+            ExecutorService parsers = Executors.newFixedThreadPool(Math.min(this.threads, Math.max(1, bounds.size() - 1)));
+            try {
+                List<Future<Chunk>> futures = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.size(); i++) {
+                    long chunkStart = bounds.get(i);
+                    long chunkEnd = bounds.get(i + 1);
+                    futures.add(parsers.submit(() -> LogAnalyzer.parse(channel, chunkStart, chunkEnd)));
+                }
+                for (Future<Chunk> future : futures) {
+                    chunks.add(future.get());
+                }
+            } catch (Exception e) {
+                throw new IOException("Impossible to parse the log " + file, e);
+            } finally {
+                parsers.shutdown();
+            }
+        }
+
+        Report report = new Report();
+        report.log = file.getPath();
+        report.bytes = size;
+        report.runs = new ArrayList<>();
+        report.films = new HashMap<>();
+        report.errorReasons = new TreeMap<>();
+        for (Chunk chunk : chunks) {
+            report.lines += chunk.lines;
+            for (Run run : chunk.runs) {
+                if (run.continuation && !report.runs.isEmpty()) {
+                    report.runs.get(report.runs.size() - 1).merge(run);
+                } else if (!run.continuation || !run.isEmpty()) {
+                    report.runs.add(run);
+                }
+            }
+            for (FilmHistory film : chunk.films.values()) {
+                FilmHistory previous = report.films.putIfAbsent(film.imdbID, film);
+                if (previous != null) {
+                    previous.merge(film);
+                }
+            }
+        }
+        for (Run run : report.runs) {
+            run.summarize();
+            for (Map.Entry<String, Integer> entry : run.errorReasons.entrySet()) {
+                report.errorReasons.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
+        report.slowestFilms = new ArrayList<>();
+        report.chronicFailures = new ArrayList<>();
+        for (FilmHistory film : report.films.values()) {
+            if (film.scraps > 0) {
+                report.slowestFilms.add(film);
+            }
+            if (film.failures >= CHRONIC_FAILURES && film.failures > film.scraps) {
+                report.chronicFailures.add(film);
+            }
+        }
+        report.slowestFilms.sort(Comparator.comparingDouble(FilmHistory::getMeanSeconds).reversed()
+                .thenComparingInt(FilmHistory::getImdbID));
+        if (report.slowestFilms.size() > SLOWEST_FILMS) {
+            report.slowestFilms = new ArrayList<>(report.slowestFilms.subList(0, SLOWEST_FILMS));
+        }
+        report.chronicFailures.sort(Comparator.comparingInt(FilmHistory::getFailures).reversed()
+                .thenComparingInt(FilmHistory::getImdbID));
+        report.analysisMillis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /**
+     * Splits the log in chunks that start at the beginning of a line
+     *
+     * @return The offsets of the chunks, followed by the size of the log
+     */
+    private List<Long> split(FileChannel channel, long size) throws IOException {
+        long chunks = Math.min(this.threads, size / MIN_CHUNK_SIZE);
+        chunks = Math.max(Math.max(1, chunks), (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        for (long i = 1; i < chunks; i++) {
+            long bound = LogAnalyzer.nextLine(channel, size * i / chunks, size);
+            if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+                bounds.add(bound);
+            }
+        }
+        if (size > 0) {
+            bounds.add(size);
+        }
+        return bounds;
+    }
+
+    /**
+     * Searches the start of the first line after the given position
+     */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses the lines of a chunk of the log
+     */
+    private static Chunk parse(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        Chunk chunk = new Chunk();
+        chunk.runs.add(new Run(true));
+        int lineStart = 0;
+        int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                LogAnalyzer.parseLine(buffer, lineStart, i, chunk);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < limit) {
+            LogAnalyzer.parseLine(buffer, lineStart, limit, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses a line of the log
+     *
+     * @param buffer Mapped chunk
+     * @param start  Position of the first char of the line
+     * @param end    Position of the line break, excluded
+     * @param chunk  {@link Chunk} updated with the line
+     */
+    private static void parseLine(ByteBuffer buffer, int start, int end, Chunk chunk) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        chunk.lines++;
+        Run run = chunk.runs.get(chunk.runs.size() - 1);
+        if (LogAnalyzer.startsWith(buffer, start, end, SCRAPPED)) {
+            int position = start + SCRAPPED.length;
+            int imdbID = LogAnalyzer.parseInt(buffer, position, end);
+            // " (<seconds> seconds)"
+            while (position < end && buffer.get(position) != '(') {
+                position++;
+            }
+            int seconds = Math.min(Math.max(0, LogAnalyzer.parseInt(buffer, position + 1, end)), MAX_SECONDS);
+            run.scrappedFilms++;
+            run.secondsHistogram[seconds]++;
+            run.totalSeconds += seconds;
+            FilmHistory film = chunk.films.computeIfAbsent(imdbID, FilmHistory::new);
+            film.scraps++;
+            film.totalSeconds += seconds;
+            film.maxSeconds = Math.max(film.maxSeconds, seconds);
+        } else if (LogAnalyzer.startsWith(buffer, start, end, ERROR)) {
+            run.failedFilms++;
+            LogAnalyzer.parseFailure(buffer, start + ERROR.length, end, "ERROR", run, chunk);
+        } else if (LogAnalyzer.startsWith(buffer, start, end, INCOMPLETE)) {
+            run.incompleteFilms++;
+            LogAnalyzer.parseFailure(buffer, start + INCOMPLETE.length, end, "INCOMPLETE", run, chunk);
+        } else if (LogAnalyzer.startsWith(buffer, start, end, RETRIED)) {
+            run.retriedFilms++;
+        } else if (LogAnalyzer.startsWith(buffer, start, end, NEW_RUN)) {
+            chunk.runs.add(new Run(false));
+        } else if (LogAnalyzer.startsWith(buffer, start, end, STARTED_AT)) {
+            if (run.startedAt == null) {
+                run.startedAt = LogAnalyzer.decode(buffer, start + STARTED_AT.length, end);
+            }
+        } else if (LogAnalyzer.startsWith(buffer, start, end, SCRAPPING_TIME)) {
+            long minutes = LogAnalyzer.parseInt(buffer, start + SCRAPPING_TIME.length, end);
+            run.scrappingMinutes = run.scrappingMinutes == null ? minutes : run.scrappingMinutes + minutes;
+        } else if (end > start && buffer.get(start) == '-' && run.mode == null) {
+            // "--------|Mode: full scrap|--------"
+            String line = LogAnalyzer.decode(buffer, start, end);
+            int mode = line.indexOf(MODE);
+            if (mode >= 0 && line.indexOf('|', mode + MODE.length()) > 0) {
+                run.mode = line.substring(mode + MODE.length(), line.indexOf('|', mode + MODE.length()));
+            }
+        }
+    }
+
+    /**
+     * Parses the imdbID and the reason of an "ERROR" or "INCOMPLETE" line: "[imdbID] (ref: [reason])"
+     */
+    private static void parseFailure(ByteBuffer buffer, int start, int end, String status, Run run, Chunk chunk) {
+        int imdbID = LogAnalyzer.parseInt(buffer, start, end);
+        String line = LogAnalyzer.decode(buffer, start, end);
+        int reference = line.indexOf(REFERENCE);
+        String reason = reference < 0 ? line : line.substring(reference + REFERENCE.length(), line.endsWith(")") ? line.length() - 1 : line.length());
+        // The URL of an HTTP error is specific to the film, the status is kept
+        int url = reason.indexOf(", URL=");
+        if (url >= 0) {
+            reason = reason.substring(0, url);
+        }
+        run.errorReasons.merge(status + ": " + reason, 1, Integer::sum);
+        FilmHistory film = chunk.films.computeIfAbsent(imdbID, FilmHistory::new);
+        film.failures++;
+        film.lastError = reason;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the digits at the given position
+     *
+     * @return The number parsed, or -1 if there are no digits
+     */
+    private static int parseInt(ByteBuffer buffer, int position, int end) {
+        int value = -1;
+        for (; position < end; position++) {
+            byte b = buffer.get(position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = (value < 0 ? 0 : value * 10) + (b - '0');
+        }
+        return value;
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package filmdb.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies, measured in nanoseconds, with log-linear buckets (in the style of HdrHistogram).
+ * Values are grouped by their power of two, and every power of two is split in {@link LatencyHistogram#SUB_BUCKETS}
+ * linear sub-buckets, so that any recorded value is reported with a relative error below 1/64 (~1.6%)
+ * from 1 ns up to the maximum value of a long, using a fixed amount of memory.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalCount = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a latency
+     *
+     * @param nanos Latency measured in nanoseconds. Negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(LatencyHistogram.bucketIndex(value));
+        this.totalCount.increment();
+        this.sum.add(value);
+        long currentMax = this.max.get();
+        while (value > currentMax && !this.max.compareAndSet(currentMax, value)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since the specified instant
+     *
+     * @param startNanos Value of {@link System#nanoTime()} when the measured operation started
+     */
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Discards all the recorded values (i.e. between the runs of a load test). Values recorded while the histogram is
+     * being reset may be partially discarded
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.counts.set(i, 0);
+        }
+        this.totalCount.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    public long getCount() {
+        return this.totalCount.sum();
+    }
+
+    /**
+     * Sum of all the recorded latencies, measured in nanoseconds
+     */
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Provides the latency below which a percentage of the recorded values fall
+     *
+     * @param percentile Value between 0 and 100
+     * @return The upper bound, in nanoseconds, of the bucket that contains the percentile. 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = this.getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100.0));
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += this.counts.get(i);
+            if (accumulated >= target) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    private static int bucketIndex(long value) {
+        // Values below SUB_BUCKETS have a bucket of their own. Larger values are shifted to keep SUB_BUCKET_BITS bits
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        int shift = magnitude - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = index - shift * HALF_SUB_BUCKETS;
+        long upperBound = ((subBucket + 1) << shift) - 1;
+        // The last buckets exceed the range of a long
+        return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+    }
+}
@@ -0,0 +1,54 @@
+package filmdb.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP endpoint that serves the metrics of a {@link MetricsRegistry} in the Prometheus text format, at the path
+ * {@link MetricsHttpServer#PATH}. Requests are served by the dispatcher thread of the embedded JDK server.
+ */
+public class MetricsHttpServer implements Closeable {
+    public static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final MetricsRegistry registry;
+
+    /**
+     * Constructor to initialize and start a new {@link MetricsHttpServer}
+     *
+     * @param port     Port where the metrics are served
+     * @param registry {@link MetricsRegistry} whose metrics are served
+     * @throws IOException Raised if the port could not be bound
+     */
+    public MetricsHttpServer(int port, MetricsRegistry registry) throws IOException {
+        this.registry = registry;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(PATH, this::handle);
+        this.server.start();
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = this.registry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package filmdb.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Set of named metrics (latency histograms, counters and gauges) shared by the whole application. Metrics are created
+ * the first time they are requested, and can be read through JMX or in the Prometheus text format.
+ * <p>
+ * Every metric is identified by its name and, optionally, by a list of label pairs, i.e.
+ * {@code histogram("filmdb_fetch_seconds", "page", "keywords")} is exported as
+ * {@code filmdb_fetch_seconds{page="keywords"}}. Histograms are exported as summaries, measured in seconds.
+ */
+public class MetricsRegistry implements DynamicMBean {
+    public static final String OBJECT_NAME = "filmdb:type=Metrics";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final MetricsRegistry DEFAULT_REGISTRY = new MetricsRegistry();
+
+    private final Map<String, LatencyHistogram> histograms;
+    private final Map<String, LongAdder> counters;
+    private final Map<String, DoubleSupplier> gauges;
+
+    public MetricsRegistry() {
+        this.histograms = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Provides the registry used by the scrappers
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT_REGISTRY;
+    }
+
+    /**
+     * Provides a latency histogram, creating it if it does not exist yet
+     *
+     * @param name   Name of the metric
+     * @param labels Pairs of label names and values
+     * @return The {@link LatencyHistogram}
+     */
+    public LatencyHistogram histogram(String name, String... labels) {
+        return this.histograms.computeIfAbsent(MetricsRegistry.key(name, labels), k -> new LatencyHistogram());
+    }
+
+    /**
+     * Provides a counter, creating it if it does not exist yet
+     *
+     * @param name   Name of the metric
+     * @param labels Pairs of label names and values
+     * @return The counter
+     */
+    public LongAdder counter(String name, String... labels) {
+        return this.counters.computeIfAbsent(MetricsRegistry.key(name, labels), k -> new LongAdder());
+    }
+
+    /**
+     * Registers a gauge, whose value is read every time the metrics are exported. A previous gauge with the same name is replaced
+     *
+     * @param name  Name of the metric
+     * @param value Function that provides the current value
+     */
+    public void gauge(String name, DoubleSupplier value) {
+        this.gauges.put(name, value);
+    }
+
+    /**
+     * Registers the registry in the platform MBean server, under the name {@link MetricsRegistry#OBJECT_NAME}
+     *
+     * @throws JMException Raised if the registry could not be registered
+     */
+    public void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(objectName)) {
+            server.registerMBean(this, objectName);
+        }
+    }
+
+    /**
+     * Writes all the metrics in the Prometheus text exposition format
+     *
+     * @return The text of the metrics, sorted by name
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        String lastName = null;
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(this.histograms).entrySet()) {
+            String name = MetricsRegistry.name(entry.getKey());
+            String labels = MetricsRegistry.labels(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            if (!name.equals(lastName)) {
+                text.append("# TYPE ").append(name).append(" summary\n");
+                lastName = name;
+            }
+            for (double quantile : QUANTILES) {
+                String quantileLabel = "quantile=\"" + quantile + "\"";
+                text.append(name).append('{').append(labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel).append("} ")
+                        .append(MetricsRegistry.format(histogram.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND)).append('\n');
+            }
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+            text.append(name).append("_sum").append(suffix).append(' ').append(MetricsRegistry.format(histogram.getSum() / NANOS_PER_SECOND)).append('\n');
+            text.append(name).append("_count").append(suffix).append(' ').append(histogram.getCount()).append('\n');
+        }
+        lastName = null;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(this.counters).entrySet()) {
+            String name = MetricsRegistry.name(entry.getKey());
+            if (!name.equals(lastName)) {
+                text.append("# TYPE ").append(name).append(" counter\n");
+                lastName = name;
+            }
+            text.append(entry.getKey()).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : new TreeMap<>(this.gauges).entrySet()) {
+            text.append("# TYPE ").append(entry.getKey()).append(" gauge\n");
+            text.append(entry.getKey()).append(' ').append(MetricsRegistry.format(entry.getValue().getAsDouble())).append('\n');
+        }
+        return text.toString();
+    }
+
+    // DynamicMBean: every counter and gauge is an attribute, and every histogram has an attribute per quantile
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder counter = this.counters.get(attribute);
+        if (counter != null) {
+            return counter.sum();
+        }
+        DoubleSupplier gauge = this.gauges.get(attribute);
+        if (gauge != null) {
+            return gauge.getAsDouble();
+        }
+        int separator = attribute.lastIndexOf(':');
+        if (separator > 0) {
+            LatencyHistogram histogram = this.histograms.get(attribute.substring(0, separator));
+            String statistic = attribute.substring(separator + 1);
+            if (histogram != null) {
+                if (statistic.equals("count")) {
+                    return (double) histogram.getCount();
+                } else if (statistic.equals("max")) {
+                    return histogram.getMax() / NANOS_PER_SECOND;
+                } else if (statistic.startsWith("p")) {
+                    return histogram.getValueAtPercentile(Double.parseDouble(statistic.substring(1))) / NANOS_PER_SECOND;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, this.getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Metrics that do not exist are not included
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String key : new TreeMap<>(this.counters).keySet()) {
+            attributes.add(new MBeanAttributeInfo(key, "long", "Counter", true, false, false));
+        }
+        for (String key : new TreeMap<>(this.gauges).keySet()) {
+            attributes.add(new MBeanAttributeInfo(key, "double", "Gauge", true, false, false));
+        }
+        for (String key : new TreeMap<>(this.histograms).keySet()) {
+            attributes.add(new MBeanAttributeInfo(key + ":count", "double", "Number of measures", true, false, false));
+            attributes.add(new MBeanAttributeInfo(key + ":max", "double", "Maximum latency (seconds)", true, false, false));
+            for (double quantile : QUANTILES) {
+                String percentile = MetricsRegistry.format(quantile * 100);
+                attributes.add(new MBeanAttributeInfo(key + ":p" + percentile, "double", percentile + "th percentile latency (seconds)", true, false, false));
+            }
+        }
+        return new MBeanInfo(this.getClass().getName(), "Scrapping metrics", attributes.toArray(new MBeanAttributeInfo[0]),
+                null, new MBeanOperationInfo[0], null);
+    }
+
+    private static String key(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder key = new StringBuilder(name).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(labels[i]).append("=\"").append(labels[i + 1].replace("\"", "\\\"")).append('"');
+        }
+        return key.append('}').toString();
+    }
+
+    private static String name(String key) {
+        int labels = key.indexOf('{');
+        return labels < 0 ? key : key.substring(0, labels);
+    }
+
+    private static String labels(String key) {
+        int labels = key.indexOf('{');
+        return labels < 0 ? "" : key.substring(labels + 1, key.length() - 1);
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.9g", value).replaceAll("0+$", "");
+    }
+}
@@ -0,0 +1,336 @@
+package filmdb.posters;
+
+import filmdb.metrics.LatencyHistogram;
+import filmdb.metrics.MetricsRegistry;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Downloads the posters of the films, reduces them to thumbnails and packs them in a poster file
+ * ({@link PosterStoreWriter}), in the background of the attribute scrap.
+ * <p>
+ * Posters are submitted without blocking and go through two stages: a pool of download threads, and a pool of
+ * thumbnail threads sized to the CPUs. Downloaded posters are kept in memory until their thumbnail is written, so the
+ * number of posters between both stages is limited by a semaphore (every poster is, at most,
+ * {@link PosterPipeline#MAX_POSTER_BYTES} long): when the thumbnail threads fall behind, downloads wait for them.
+ * <p>
+ * Posters are deduplicated twice: films with the same poster URL wait for a single download, and posters with the same
+ * content (i.e. the placeholder image of the films without a poster) share the same thumbnail in the file.
+ * The films of the previous poster file are not downloaded again, and are copied to the new file when the pipeline is closed.
+ */
+public class PosterPipeline implements Closeable {
+    private static final int FETCH_TIMEOUT = 30 * 1000; // measured in milliseconds
+    private static final int MAX_POSTER_BYTES = 4 * 1024 * 1024;
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String THUMBNAIL_FORMAT = "jpg";
+
+    static {
+        // Images are decoded from memory, so the disk cache of ImageIO is not needed
+        ImageIO.setUseCache(false);
+    }
+
+    private final String path;
+    private final int thumbnailWidth;
+    private final PosterStore previousStore;
+    private final PosterStoreWriter writer;
+    private final ExecutorService downloadExecutor;
+    private final ExecutorService thumbnailExecutor;
+    private final Semaphore bufferedPosters;
+    private final Set<Integer> submittedIDs;
+    // Offset of the thumbnail of every poster, by URL and by content hash, completed once it has been written
+    private final Map<String, CompletableFuture<Long>> blobsByUrl;
+    private final Map<String, CompletableFuture<Long>> blobsByHash;
+    private final LongAdder storedPosters;
+    private final LongAdder duplicatedPosters;
+    private final LongAdder failedPosters;
+    private final MetricsRegistry metrics;
+    private final LatencyHistogram downloadTime;
+    private final LatencyHistogram thumbnailTime;
+
+    /**
+     * Constructor to initialize a new {@link PosterPipeline}. If the poster file exists, its films are not downloaded again
+     *
+     * @param path            Route to the poster file
+     * @param downloadThreads Number of posters downloaded at the same time
+     * @param bufferedPosters Maximum number of downloaded posters waiting for, or being reduced to, a thumbnail
+     * @param thumbnailWidth  Width of the thumbnails, measured in pixels. Smaller posters are not enlarged
+     * @throws IOException Raised if the previous poster file could not be read, or the new one could not be created
+     */
+    public PosterPipeline(String path, int downloadThreads, int bufferedPosters, int thumbnailWidth) throws IOException {
+        this.path = path;
+        this.thumbnailWidth = thumbnailWidth;
+        this.previousStore = new File(path).isFile() ? new PosterStore(path) : null;
+        this.writer = new PosterStoreWriter(path);
+        this.downloadExecutor = Executors.newFixedThreadPool(downloadThreads);
+        this.thumbnailExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.bufferedPosters = new Semaphore(bufferedPosters);
+        this.submittedIDs = ConcurrentHashMap.newKeySet();
+        this.blobsByUrl = new ConcurrentHashMap<>();
+        this.blobsByHash = new ConcurrentHashMap<>();
+        this.storedPosters = new LongAdder();
+        this.duplicatedPosters = new LongAdder();
+        this.failedPosters = new LongAdder();
+        this.metrics = MetricsRegistry.getDefault();
+        this.downloadTime = this.metrics.histogram("filmdb_poster_download_seconds");
+        this.thumbnailTime = this.metrics.histogram("filmdb_poster_thumbnail_seconds");
+    }
+
+    /**
+     * Number of different thumbnails written by this pipeline
+     */
+    public long getStoredPosters() {
+        return storedPosters.sum();
+    }
+
+    /**
+     * Number of films whose poster was already written for another film, with the same URL or content
+     */
+    public long getDuplicatedPosters() {
+        return duplicatedPosters.sum();
+    }
+
+    public long getFailedPosters() {
+        return failedPosters.sum();
+    }
+
+    /**
+     * Queues the poster of a film. It returns straight away: the poster is downloaded in the background.
+     * Films without a poster URL, already submitted or present in the previous poster file are ignored
+     *
+     * @param imdbID    Id of the film
+     * @param posterUrl URL of the poster image
+     * @return True if the poster was queued. False if it was ignored
+     */
+    public boolean submit(int imdbID, String posterUrl) {
+        if (posterUrl == null || posterUrl.trim().isEmpty()
+                || (this.previousStore != null && this.previousStore.contains(imdbID)) || !this.submittedIDs.add(imdbID)) {
+            return false;
+        }
+        String url = posterUrl.trim();
+        CompletableFuture<Long> blob = new CompletableFuture<>();
+        CompletableFuture<Long> previous = this.blobsByUrl.putIfAbsent(url, blob);
+        if (previous != null) {
+            this.attach(imdbID, previous);
+            return true;
+        }
+        this.downloadExecutor.execute(() -> this.download(imdbID, url, blob));
+        return true;
+    }
+
+    /**
+     * Waits for the queued posters, copies the posters of the previous file that were not replaced, and writes the poster file
+     *
+     * @throws IOException Raised if the poster file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            // Downloads queue the thumbnails, so the thumbnail threads are stopped once every download has ended
+            this.downloadExecutor.shutdown();
+            this.downloadExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            this.thumbnailExecutor.shutdown();
+            this.thumbnailExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the posters of " + this.path, e);
+        }
+        if (this.previousStore != null) {
+            Map<Long, Long> copiedBlobs = new HashMap<>();
+            for (int imdbID : this.previousStore.getImdbIDs()) {
+                if (!this.writer.contains(imdbID)) {
+                    long previousOffset = this.previousStore.getBlobOffset(imdbID);
+                    Long offset = copiedBlobs.get(previousOffset);
+                    if (offset == null) {
+                        offset = this.writer.append(this.previousStore.readBlob(previousOffset));
+                        copiedBlobs.put(previousOffset, offset);
+                    }
+                    this.writer.put(imdbID, offset);
+                }
+            }
+            this.previousStore.close();
+        }
+        this.writer.close();
+    }
+
+    /**
+     * First stage: downloads a poster and, unless a poster with the same content has already been queued, hands it
+     * over to the thumbnail threads. It waits while too many posters are buffered
+     *
+     * @param imdbID Id of the film
+     * @param url    URL of the poster
+     * @param blob   Completed with the offset of the thumbnail of the URL
+     */
+    private void download(int imdbID, String url, CompletableFuture<Long> blob) {
+        try {
+            this.bufferedPosters.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.fail(imdbID, blob, e);
+            return;
+        }
+        boolean released = false;
+        try {
+            long start = System.nanoTime();
+            byte[] poster = PosterPipeline.fetch(url);
+            this.downloadTime.recordSince(start);
+
+            CompletableFuture<Long> previous = this.blobsByHash.putIfAbsent(PosterPipeline.contentHash(poster), blob);
+            if (previous != null) {
+                this.attach(imdbID, previous);
+                previous.whenComplete((offset, e) -> {
+                    if (e == null) {
+                        blob.complete(offset);
+                    } else {
+                        blob.completeExceptionally(e);
+                    }
+                });
+                return;
+            }
+            this.thumbnailExecutor.execute(() -> {
+                try {
+                    this.storeThumbnail(imdbID, poster, blob);
+                } finally {
+                    this.bufferedPosters.release();
+                }
+            });
+            released = true;
+        } catch (Exception e) {
+            this.fail(imdbID, blob, e);
+        } finally {
+            if (!released) {
+                this.bufferedPosters.release();
+            }
+        }
+    }
+
+    /**
+     * Second stage: reduces a poster to a thumbnail and appends it to the poster file
+     *
+     * @param imdbID Id of the film
+     * @param poster Bytes of the downloaded image
+     * @param blob   Completed with the offset of the thumbnail
+     */
+    private void storeThumbnail(int imdbID, byte[] poster, CompletableFuture<Long> blob) {
+        try {
+            long start = System.nanoTime();
+            byte[] thumbnail = this.thumbnail(poster);
+            this.thumbnailTime.recordSince(start);
+            long offset = this.writer.append(thumbnail);
+            this.writer.put(imdbID, offset);
+            this.count(this.storedPosters, "stored");
+            blob.complete(offset);
+        } catch (Exception e) {
+            this.fail(imdbID, blob, e);
+        }
+    }
+
+    /**
+     * Maps a film to the thumbnail of another film with the same poster, once it has been written
+     *
+     * @param imdbID Id of the film
+     * @param blob   Offset of the thumbnail of the other film
+     */
+    private void attach(int imdbID, CompletableFuture<Long> blob) {
+        blob.whenComplete((offset, e) -> {
+            if (e == null) {
+                this.writer.put(imdbID, offset);
+                this.count(this.duplicatedPosters, "duplicated");
+            } else {
+                this.count(this.failedPosters, "failed");
+            }
+        });
+    }
+
+    private void fail(int imdbID, CompletableFuture<Long> blob, Exception e) {
+        this.count(this.failedPosters, "failed");
+        blob.completeExceptionally(e);
+        System.out.println("UNSUCCESSFUL function 'PosterPipeline' for film " + imdbID + " (ref: " + e + ")");
+    }
+
+    /**
+     * Counts a poster in the statistics of the pipeline and in the metric "filmdb_posters_total"
+     */
+    private void count(LongAdder counter, String result) {
+        counter.increment();
+        this.metrics.counter("filmdb_posters_total", "result", result).increment();
+    }
+
+    /**
+     * Scales an image down to the width of the thumbnails, keeping its aspect ratio, and encodes it as a JPEG
+     *
+     * @param poster Bytes of the image, in any format supported by {@link ImageIO}
+     * @return The bytes of the thumbnail
+     * @throws IOException Raised if the image could not be decoded or encoded
+     */
+    private byte[] thumbnail(byte[] poster) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(poster));
+        if (image == null) {
+            throw new IOException("Unsupported image format");
+        }
+        int width = Math.min(this.thumbnailWidth, image.getWidth());
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        // JPEG has no alpha channel, so the thumbnail is always drawn in RGB
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(thumbnail, THUMBNAIL_FORMAT, out)) {
+            throw new IOException("No writer for " + THUMBNAIL_FORMAT + " images");
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Downloads an image, rejecting the ones longer than {@link PosterPipeline#MAX_POSTER_BYTES}
+     *
+     * @param url URL of the image
+     * @return The bytes of the image
+     * @throws IOException Raised if the image could not be downloaded, or is too large
+     */
+    private static byte[] fetch(String url) throws IOException {
+        // One byte over the limit is read, so that a truncated body can be told apart from a body of exactly the limit
+        Connection.Response response = Jsoup.connect(url).ignoreContentType(true).maxBodySize(MAX_POSTER_BYTES + 1)
+                .timeout(FETCH_TIMEOUT).execute();
+        byte[] poster = response.bodyAsBytes();
+        if (poster.length > MAX_POSTER_BYTES) {
+            throw new IOException("Poster larger than " + MAX_POSTER_BYTES + " bytes: " + url);
+        }
+        return poster;
+    }
+
+    private static String contentHash(byte[] content) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance(HASH_ALGORITHM).digest(content)).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
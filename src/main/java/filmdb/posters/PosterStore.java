@@ -0,0 +1,145 @@
+package filmdb.posters;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only view of a poster file written by {@link PosterStoreWriter}. The file is memory-mapped, so opening it only
+ * reads its footer; thumbnails are copied out of the mapping when they are accessed.
+ */
+public class PosterStore implements Closeable {
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int indexOffset;
+    private final int entryCount;
+    private final int blobCount;
+
+    /**
+     * Opens and maps a poster file
+     *
+     * @param path Route to the poster file
+     * @throws IOException Raised if the file could not be mapped or is not a valid poster file
+     */
+    public PosterStore(String path) throws IOException {
+        this.file = new RandomAccessFile(new File(path).getCanonicalFile(), "r");
+        FileChannel channel = this.file.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) {
+            this.file.close();
+            throw new IOException("Poster file too large to be mapped (" + channel.size() + " bytes)");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        int footer = this.buffer.capacity() - PosterStoreWriter.FOOTER_SIZE;
+        if (footer < PosterStoreWriter.HEADER_SIZE || this.buffer.getInt(0) != PosterStoreWriter.MAGIC
+                || this.buffer.getInt(footer + 20) != PosterStoreWriter.MAGIC) {
+            this.file.close();
+            throw new IOException("Invalid poster file " + path);
+        }
+        if (this.buffer.getInt(4) != PosterStoreWriter.VERSION) {
+            this.file.close();
+            throw new IOException("Unsupported poster file version " + this.buffer.getInt(4));
+        }
+        this.indexOffset = (int) this.buffer.getLong(footer);
+        this.entryCount = this.buffer.getInt(footer + 8);
+        this.blobCount = this.buffer.getInt(footer + 12);
+    }
+
+    /**
+     * Number of films with a poster
+     */
+    public int size() {
+        return this.entryCount;
+    }
+
+    /**
+     * Number of different thumbnails stored
+     */
+    public int getBlobCount() {
+        return this.blobCount;
+    }
+
+    /**
+     * Provides the ids of the films with a poster
+     *
+     * @return The imdbIDs, in ascending order
+     */
+    public int[] getImdbIDs() {
+        int[] imdbIDs = new int[this.entryCount];
+        for (int i = 0; i < this.entryCount; i++) {
+            imdbIDs[i] = this.buffer.getInt(this.indexOffset + i * INDEX_ENTRY_SIZE);
+        }
+        return imdbIDs;
+    }
+
+    /**
+     * Checks if a film has a poster, without reading it
+     *
+     * @param imdbID Id of the film
+     * @return True if the film is present. False otherwise
+     */
+    public boolean contains(int imdbID) {
+        return this.getBlobOffset(imdbID) >= 0;
+    }
+
+    /**
+     * Provides the offset of the thumbnail of a film. Films with the same poster have the same offset
+     *
+     * @param imdbID Id of the film
+     * @return The offset of the blob, or -1 if the film is not present
+     */
+    public long getBlobOffset(int imdbID) {
+        int low = 0;
+        int high = this.entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = this.indexOffset + middle * INDEX_ENTRY_SIZE;
+            int current = this.buffer.getInt(entry);
+            if (current < imdbID) {
+                low = middle + 1;
+            } else if (current > imdbID) {
+                high = middle - 1;
+            } else {
+                return this.buffer.getLong(entry + 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the thumbnail of a film
+     *
+     * @param imdbID Id of the film
+     * @return The bytes of the thumbnail (JPEG), or null if the film is not present
+     */
+    public byte[] get(int imdbID) {
+        long offset = this.getBlobOffset(imdbID);
+        return offset < 0 ? null : this.readBlob(offset);
+    }
+
+    /**
+     * Reads a blob by its offset
+     *
+     * @param offset Offset of the blob, as provided by {@link PosterStore#getBlobOffset(int)}
+     * @return The bytes of the blob
+     */
+    public byte[] readBlob(long offset) {
+        // Every reader works on its own view, so that the file can be read concurrently
+        ByteBuffer blob = this.buffer.duplicate();
+        blob.position((int) offset);
+        byte[] bytes = new byte[blob.getInt()];
+        blob.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
@@ -0,0 +1,127 @@
+package filmdb.posters;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the packed poster file read by {@link PosterStore}.
+ * <p>
+ * The file starts with a fixed-size header (magic number and version), followed by the blobs (the length and bytes of
+ * every thumbnail), appended in the order they are added. The same blob can be shared by several films, so films are
+ * only mapped to the offset of their blob in the index, written when the writer is closed: a sequence of
+ * (imdbID, offset) entries sorted by imdbID. The file ends with a fixed-size footer with the offset of the index and
+ * the number of entries and blobs. The content is written in a temporary file that replaces the destination file when
+ * the writer is closed, so readers never see a partial file.
+ * <p>
+ * Blobs and index entries can be added from several threads.
+ */
+public class PosterStoreWriter implements Closeable {
+    static final int MAGIC = 0x46505354; // "FPST"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 24;
+
+    private final File file;
+    private final File temporaryFile;
+    private final DataOutputStream out;
+    private final TreeMap<Integer, Long> index;
+    private long position;
+    private int blobCount;
+
+    /**
+     * Constructor to initialize a new {@link PosterStoreWriter}
+     *
+     * @param path Route to the poster file
+     * @throws IOException Raised if the temporary file could not be created
+     */
+    public PosterStoreWriter(String path) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        this.temporaryFile = new File(parent, this.file.getName() + ".tmp");
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.temporaryFile), 64 * 1024));
+        this.index = new TreeMap<>();
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.position = HEADER_SIZE;
+        this.blobCount = 0;
+    }
+
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    public synchronized int getBlobCount() {
+        return blobCount;
+    }
+
+    /**
+     * Appends a blob to the file
+     *
+     * @param blob Bytes of the thumbnail
+     * @return The offset of the blob, to be referenced by {@link PosterStoreWriter#put(int, long)}
+     * @throws IOException Raised if the blob could not be written
+     */
+    public synchronized long append(byte[] blob) throws IOException {
+        long offset = this.position;
+        this.out.writeInt(blob.length);
+        this.out.write(blob);
+        this.position += 4 + blob.length;
+        this.blobCount++;
+        return offset;
+    }
+
+    /**
+     * Maps a film to a blob already appended. A previous mapping of the film is replaced
+     *
+     * @param imdbID Id of the film
+     * @param offset Offset of the blob, as returned by {@link PosterStoreWriter#append(byte[])}
+     */
+    public synchronized void put(int imdbID, long offset) {
+        if (offset < HEADER_SIZE || offset >= this.position) {
+            throw new IllegalArgumentException("Invalid blob offset: " + offset);
+        }
+        this.index.put(imdbID, offset);
+    }
+
+    /**
+     * Checks if a film has been mapped to a blob
+     *
+     * @param imdbID Id of the film
+     * @return True if the film is in the index
+     */
+    public synchronized boolean contains(int imdbID) {
+        return this.index.containsKey(imdbID);
+    }
+
+    /**
+     * Writes the index and the footer, and replaces the destination file
+     *
+     * @throws IOException Raised if the file could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        long indexOffset = this.position;
+        for (Map.Entry<Integer, Long> entry : this.index.entrySet()) {
+            this.out.writeInt(entry.getKey());
+            this.out.writeLong(entry.getValue());
+        }
+        this.out.writeLong(indexOffset);
+        this.out.writeInt(this.index.size());
+        this.out.writeInt(this.blobCount);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(MAGIC);
+        this.out.close();
+        Files.move(this.temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
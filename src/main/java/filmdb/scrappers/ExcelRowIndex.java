@@ -0,0 +1,259 @@
+package filmdb.scrappers;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only view of a row index written by {@link ExcelRowIndexWriter}. The file is memory-mapped, so opening it only
+ * reads its header and footer, and the seed cells of a film, or of a range of rows, are read without opening the excel file.
+ * It can be read concurrently.
+ */
+public class ExcelRowIndex implements Closeable {
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    /**
+     * Seed cells of a row, as read from the excel file
+     */
+    public static class Row {
+        private final int row;
+        private final boolean empty;
+        private final int imdbID;
+        private final String url;
+        private final String title;
+        private final float avgScore;
+        private final String genres;
+        private final String posterUrl;
+
+        private Row(DataInputStream in) throws IOException {
+            this.row = in.readInt();
+            this.empty = in.readBoolean();
+            this.imdbID = in.readInt();
+            this.url = Row.readString(in);
+            this.title = Row.readString(in);
+            this.avgScore = in.readFloat();
+            this.genres = Row.readString(in);
+            String posterUrl = Row.readString(in);
+            this.posterUrl = posterUrl.isEmpty() ? null : posterUrl;
+        }
+
+        /**
+         * Reads a String written as its length in bytes followed by its UTF-8 bytes
+         */
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid string length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Checks if the row has no cells
+         */
+        public boolean isEmpty() {
+            return empty;
+        }
+
+        public int getImdbID() {
+            return imdbID;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public float getAvgScore() {
+            return avgScore;
+        }
+
+        public String getGenres() {
+            return genres;
+        }
+
+        public String getPosterUrl() {
+            return posterUrl;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final long excelSize;
+    private final long excelLastModified;
+    private final int indexOffset;
+    private final int rowTableOffset;
+    private final int rowCount;
+    private final int entryCount;
+    private final int totalRows;
+
+    /**
+     * Opens and maps a row index
+     *
+     * @param path Route to the index file
+     * @throws IOException Raised if the file could not be mapped or is not a valid index file
+     */
+    public ExcelRowIndex(String path) throws IOException {
+        this.file = new RandomAccessFile(new File(path).getCanonicalFile(), "r");
+        FileChannel channel = this.file.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) {
+            this.file.close();
+            throw new IOException("Row index too large to be mapped (" + channel.size() + " bytes)");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        int footer = this.buffer.capacity() - ExcelRowIndexWriter.FOOTER_SIZE;
+        if (footer < ExcelRowIndexWriter.HEADER_SIZE || this.buffer.getInt(0) != ExcelRowIndexWriter.MAGIC
+                || this.buffer.getInt(footer + 32) != ExcelRowIndexWriter.MAGIC) {
+            this.file.close();
+            throw new IOException("Invalid row index " + path);
+        }
+        if (this.buffer.getInt(4) != ExcelRowIndexWriter.VERSION) {
+            // Indexes of previous versions are rebuilt
+            this.file.close();
+            throw new IOException("Unsupported row index version " + this.buffer.getInt(4));
+        }
+        this.excelSize = this.buffer.getLong(8);
+        this.excelLastModified = this.buffer.getLong(16);
+        this.indexOffset = (int) this.buffer.getLong(footer);
+        this.rowTableOffset = (int) this.buffer.getLong(footer + 8);
+        this.rowCount = this.buffer.getInt(footer + 16);
+        this.entryCount = this.buffer.getInt(footer + 20);
+        this.totalRows = this.buffer.getInt(footer + 24);
+    }
+
+    /**
+     * Number of films indexed
+     */
+    public int size() {
+        return this.entryCount;
+    }
+
+    /**
+     * Number of rows stored, from the first row of the sheet to the last one
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Number of rows of the excel file, as provided by {@link ExcelScraper#getTotalRows()}
+     */
+    public int getTotalRows() {
+        return this.totalRows;
+    }
+
+    /**
+     * Checks if the index was built from the current version of an excel file
+     *
+     * @param excelFile Excel file indexed
+     * @return True if the size and modification time of the file have not changed since the index was built
+     */
+    public boolean isCurrent(File excelFile) {
+        return excelFile.length() == this.excelSize && excelFile.lastModified() == this.excelLastModified;
+    }
+
+    /**
+     * Provides the row of a film
+     *
+     * @param imdbID Id of the film
+     * @return The number of the row in the first sheet, or -1 if the film is not present
+     */
+    public int getRow(int imdbID) {
+        int entry = this.findEntry(imdbID);
+        return entry < 0 ? -1 : this.buffer.getInt(entry + 4);
+    }
+
+    /**
+     * Reads the seed cells of a film
+     *
+     * @param imdbID Id of the film
+     * @return The {@link Row} of the film, or null if the film is not present
+     * @throws IOException Raised if the record of the film is corrupted
+     */
+    public Row get(int imdbID) throws IOException {
+        int entry = this.findEntry(imdbID);
+        return entry < 0 ? null : this.readRecord((int) this.buffer.getLong(entry + 8));
+    }
+
+    /**
+     * Reads the seed cells of a row, whether it is valid or not
+     *
+     * @param row Number of the row in the first sheet
+     * @return The {@link Row}, or null if the row is beyond the last row of the sheet
+     * @throws IOException Raised if the record of the row is corrupted
+     */
+    public Row getByRow(int row) throws IOException {
+        if (row < 0 || row >= this.rowCount) {
+            return null;
+        }
+        return this.readRecord((int) this.buffer.getLong(this.rowTableOffset + row * 8));
+    }
+
+    private Row readRecord(int offset) throws IOException {
+        // Every reader works on its own view, so that the file can be read concurrently
+        ByteBuffer record = this.buffer.duplicate();
+        record.position(offset);
+        return new Row(new DataInputStream(new InputStream() {
+            @Override
+            public int read() {
+                return record.hasRemaining() ? record.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!record.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, record.remaining());
+                record.get(bytes, offset, count);
+                return count;
+            }
+        }));
+    }
+
+    /**
+     * Searches the index entry of a film
+     *
+     * @param imdbID Id of the film
+     * @return The position of the entry in the file, or -1 if the film is not present
+     */
+    private int findEntry(int imdbID) {
+        int low = 0;
+        int high = this.entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = this.indexOffset + middle * INDEX_ENTRY_SIZE;
+            int current = this.buffer.getInt(entry);
+            if (current < imdbID) {
+                low = middle + 1;
+            } else if (current > imdbID) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
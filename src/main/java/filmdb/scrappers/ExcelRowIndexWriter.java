@@ -0,0 +1,165 @@
+package filmdb.scrappers;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the row index of an excel file read by {@link ExcelRowIndex}.
+ * <p>
+ * The file starts with a fixed-size header (magic number, version, and the size and modification time of the excel
+ * file it was built from, so that a stale index can be detected), followed by the records: the row number, a flag
+ * for empty rows and the seed cells (imdbID, url, title, avgScore, genres and poster url) of every row of the sheet,
+ * in order. Strings are written as their length in bytes followed by their UTF-8 bytes. The index, written when the writer is closed, is a sequence of (imdbID, row, offset) entries sorted by
+ * imdbID, followed by the offset of the record of every row, so that a range of rows can be read too.
+ * The file ends with a fixed-size footer with the offsets of the index and the row table, the number of entries and
+ * the number of rows of the excel file. The content is written in a temporary file that replaces the destination file
+ * when the writer is closed, so readers never see a partial file.
+ */
+public class ExcelRowIndexWriter implements Closeable {
+    static final int MAGIC = 0x46524F57; // "FROW"
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 24;
+    static final int FOOTER_SIZE = 36;
+
+    private final File file;
+    private final File temporaryFile;
+    private final DataOutputStream out;
+    // Row and offset of the record of every film
+    private final TreeMap<Integer, long[]> index;
+    // Offset of the record of every row, by row number
+    private final List<Long> rowOffsets;
+    private long position;
+    private int totalRows;
+
+    /**
+     * Constructor to initialize a new {@link ExcelRowIndexWriter}
+     *
+     * @param path      Route to the index file
+     * @param excelFile Excel file indexed
+     * @throws IOException Raised if the temporary file could not be created
+     */
+    public ExcelRowIndexWriter(String path, File excelFile) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        this.temporaryFile = new File(parent, this.file.getName() + ".tmp");
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.temporaryFile), 64 * 1024));
+        this.index = new TreeMap<>();
+        this.rowOffsets = new ArrayList<>();
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeLong(excelFile.length());
+        this.out.writeLong(excelFile.lastModified());
+        this.position = HEADER_SIZE;
+        this.totalRows = 0;
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Sets the number of rows of the excel file, as provided by {@link ExcelScraper#getTotalRows()}
+     */
+    public void setTotalRows(int totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    /**
+     * Appends the seed cells of the next row. Every row is kept for the range reads, but if the film was already
+     * added, only the first row is indexed by imdbID, as it is the one found first when the films are loaded by range
+     *
+     * @param row       Number of the row in the first sheet
+     * @param imdbID    Id of the film. -1 if the cell is not valid: the row is not indexed by imdbID
+     * @param url       Url of the film
+     * @param title     Title of the film, with its release year
+     * @param avgScore  Average score of the film
+     * @param genres    Genres of the film, separated by the char "|"
+     * @param posterUrl Url of the poster of the film. Null if the row has no poster
+     * @throws IOException Raised if the record could not be written
+     */
+    public void append(int row, int imdbID, String url, String title, float avgScore, String genres, String posterUrl) throws IOException {
+        if (imdbID > 0 && !this.index.containsKey(imdbID)) {
+            this.index.put(imdbID, new long[]{row, this.position});
+        }
+        this.write(row, false, imdbID, url, title, avgScore, genres, posterUrl);
+    }
+
+    /**
+     * Appends an empty row (i.e. a row without cells)
+     *
+     * @param row Number of the row in the first sheet
+     * @throws IOException Raised if the record could not be written
+     */
+    public void appendEmpty(int row) throws IOException {
+        this.write(row, true, -1, "", "", Float.NaN, "", null);
+    }
+
+    private void write(int row, boolean empty, int imdbID, String url, String title, float avgScore, String genres, String posterUrl) throws IOException {
+        if (row != this.rowOffsets.size()) {
+            throw new IllegalArgumentException("Rows must be appended in order: expected " + this.rowOffsets.size() + ", found " + row);
+        }
+        this.rowOffsets.add(this.position);
+        int start = this.out.size();
+        this.out.writeInt(row);
+        this.out.writeBoolean(empty);
+        this.out.writeInt(imdbID);
+        this.writeString(url);
+        this.writeString(title);
+        this.out.writeFloat(avgScore);
+        this.writeString(genres);
+        this.writeString(posterUrl == null ? "" : posterUrl);
+        this.position += this.out.size() - start;
+    }
+
+    /**
+     * Writes a String as its length in bytes followed by its UTF-8 bytes, so that cells are not limited to the 64 KB
+     * of {@link DataOutputStream#writeUTF(String)}
+     */
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.out.writeInt(bytes.length);
+        this.out.write(bytes);
+    }
+
+    /**
+     * Writes the index and the footer, and replaces the destination file
+     *
+     * @throws IOException Raised if the file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        long indexOffset = this.position;
+        for (Map.Entry<Integer, long[]> entry : this.index.entrySet()) {
+            this.out.writeInt(entry.getKey());
+            this.out.writeInt((int) entry.getValue()[0]);
+            this.out.writeLong(entry.getValue()[1]);
+        }
+        long rowTableOffset = indexOffset + (long) this.index.size() * 16;
+        for (long offset : this.rowOffsets) {
+            this.out.writeLong(offset);
+        }
+        this.out.writeLong(indexOffset);
+        this.out.writeLong(rowTableOffset);
+        this.out.writeInt(this.rowOffsets.size());
+        this.out.writeInt(this.index.size());
+        this.out.writeInt(this.totalRows);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(MAGIC);
+        this.out.close();
+        Files.move(this.temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
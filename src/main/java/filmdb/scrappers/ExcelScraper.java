@@ -1,80 +1,108 @@
 package filmdb.scrappers;
 
 import filmdb.entities.Film;
+import filmdb.entities.FilmValidator;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
 
 public class ExcelScraper {
     private final String path;
+    // Route to the RejectReport of the rows that are not valid. Null if they are not reported
+    private final String rejectReportPath;
+    private int totalRows;
 
     public ExcelScraper(String path) {
+        this(path, null);
+    }
+
+    /**
+     * Constructor to initialize a new {@link ExcelScraper} that writes the rows that are not valid in a {@link RejectReport}
+     *
+     * @param path             Route to the excel file
+     * @param rejectReportPath Route to the {@link RejectReport}. Null if the rows that are not valid are not reported
+     */
+    public ExcelScraper(String path, String rejectReportPath) {
         this.path = path;
+        this.rejectReportPath = rejectReportPath;
+        this.totalRows = 0;
+    }
+
+    /**
+     * Number of rows of the excel file. Only available after {@link ExcelScraper#scrapExcel(int, int, OutputStream)}
+     *
+     * @return The index of the last row of the first sheet
+     */
+    public int getTotalRows() {
+        return totalRows;
     }
 
     /**
-     * Scraps an excel file containing films' data extracted from IMDb web page
+     * Scraps an excel file containing films' data extracted from IMDb web page.
+     * Rows with empty or invalid cells are rejected (see {@link FilmValidator}) and written in the {@link RejectReport}
      *
      * @param start          first row of the excel to scrap
      * @param quantumToScrap Quantity of rows to be scrapped
-     * @param logStream      {@link FileOutputStream} to print the scrap statistical data
+     * @param logStream      {@link OutputStream} to print the scrap statistical data
      * @return An {@link ArrayList} containing the {@link Film} objects that could be scrapped from the file
-     * @throws Exception Raised when some any of the cells is empty or corrupted
+     * @throws Exception Raised when the excel file could not be read
      */
-    public ArrayList<Film> scrapExcel(int start, int quantumToScrap, FileOutputStream logStream) throws Exception {
+    public ArrayList<Film> scrapExcel(int start, int quantumToScrap, OutputStream logStream) throws Exception {
         XSSFWorkbook wb = new XSSFWorkbook(new FileInputStream(this.path));
         ArrayList<Film> list = new ArrayList<>();
+        RejectReport rejectReport = this.openRejectReport();
 
         //Get the first sheet from the Excel workbook
         XSSFSheet sheet = wb.getSheetAt(0);
 
-        int totalRows = sheet.getLastRowNum();
+        this.totalRows = sheet.getLastRowNum();
         int successfulReads = 0;
+        int rejectedRows = 0;
         for (int i = start; i < totalRows && i < (start + quantumToScrap); ++i) {
             //Get a single row from the excel file
             XSSFRow row = sheet.getRow(i);
+            if (row == null) {
+                this.reject(rejectReport, i, FilmValidator.EMPTY_ROW, -1, null, null, Float.NaN, null);
+                rejectedRows++;
+                continue;
+            }
 
-            //Reading the data contained in the row
-            XSSFCell idCell = row.getCell(0);
-            XSSFCell urlCell = row.getCell(1);
-            XSSFCell titleCell = row.getCell(2);
-            XSSFCell scoreCell = row.getCell(3);
-            XSSFCell genreCell = row.getCell(4);
-            //XSSFCell posterCell = row.getCell(5);
-
-            try {
             /*
             There are 3 different data types contained in the excel
-            Integers, Doubles and Strings
+            Integers, Doubles and Strings. Empty cells, or cells of other types, are read as -1, NaN or null
              */
-                int id = (int) idCell.getNumericCellValue();
-                String filmURL = urlCell.getStringCellValue();
-                String title = titleCell.getStringCellValue();
-                float avgScore = (float) scoreCell.getNumericCellValue();
-                String genres = genreCell.getStringCellValue();
-
-                //If the values are not corrupt then create the filmdb.entities.Film object
-                Film film = new Film(id);
-                film.setUrl(filmURL);
-                film.setTitle(title);
-                film.setAvgScore(avgScore);
-                //Some films have several genres separated by the char "|"
-                film.setGenres(genres.trim().split("[|]"));
-
-                successfulReads++;
+            int id = ExcelScraper.getImdbID(row.getCell(0));
+            String filmURL = ExcelScraper.getString(row.getCell(1));
+            String title = ExcelScraper.getString(row.getCell(2));
+            float avgScore = (float) ExcelScraper.getNumber(row.getCell(3));
+            String genres = ExcelScraper.getString(row.getCell(4));
 
+            //If the values are not corrupt then create the filmdb.entities.Film object
+            int code = FilmValidator.checkSeed(id, filmURL, title, avgScore, genres);
+            if (code != FilmValidator.VALID) {
+                this.reject(rejectReport, i, code, id, filmURL, title, avgScore, genres);
+                rejectedRows++;
+                continue;
+            }
+            try {
                 //Finally add the film to the list
-                list.add(film);
+                list.add(this.createFilm(id, filmURL, title, avgScore, genres, ExcelScraper.getString(row.getCell(5))));
+                successfulReads++;
             } catch (Exception e) {
                 System.out.println("ERROR scraping excel at row " + i + " (ref:" + e + ")");
             }
         }
+        this.closeRejectReport(rejectReport);
 
         // Try to write the statistic into the log
         try {
@@ -83,6 +111,134 @@ public class ExcelScraper {
             logStream.write(strToBytes);
             strToBytes = ("Successful Excel scraps: " + successfulReads + "/" + quantumToScrap + "\r\n").getBytes(StandardCharsets.UTF_8);
             logStream.write(strToBytes);
+            this.writeRejectStats(rejectReport, rejectedRows, logStream);
+            logStream.write(("-------------------------------------\r\n").getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return list;
+    }
+
+    /**
+     * Loads the given films from the row index of the excel file, without opening it. The index is built the first
+     * time (or when the excel file has changed since it was built), so only then the whole excel file is read
+     *
+     * @param imdbIDs   Ids of the films to load
+     * @param indexPath Route to the {@link ExcelRowIndex} of the excel file
+     * @param logStream {@link OutputStream} to print the scrap statistical data
+     * @return An {@link ArrayList} containing the {@link Film} objects found in the excel file
+     * @throws Exception Raised if the index could not be built, or the excel file has no valid rows
+     * @see ExcelScraper#scrapFilms(List, ExcelRowIndex, OutputStream)
+     */
+    public ArrayList<Film> scrapFilms(List<Integer> imdbIDs, String indexPath, OutputStream logStream) throws Exception {
+        try (ExcelRowIndex index = this.loadRowIndex(indexPath, logStream)) {
+            return this.scrapFilms(imdbIDs, index, logStream);
+        }
+    }
+
+    /**
+     * Opens the row index of the excel file. The index is built if it does not exist yet, or if the excel file has
+     * changed since it was built, so only then the whole excel file is read
+     *
+     * @param indexPath Route to the {@link ExcelRowIndex} of the excel file
+     * @param logStream {@link OutputStream} to print the scrap statistical data
+     * @return The {@link ExcelRowIndex}, to be closed by the caller
+     * @throws Exception Raised if the index could not be built, or the excel file has no valid rows
+     */
+    public ExcelRowIndex loadRowIndex(String indexPath, OutputStream logStream) throws Exception {
+        ExcelRowIndex index = this.openRowIndex(indexPath);
+        if (index == null) {
+            long start = System.currentTimeMillis();
+            this.buildRowIndex(indexPath);
+            index = new ExcelRowIndex(indexPath);
+            logStream.write(("Row index built: " + index.size() + " films [total rows = " + index.getTotalRows() + "] ("
+                    + (System.currentTimeMillis() - start) + " ms)\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        if (index.size() == 0) {
+            index.close();
+            throw new Exception("The excel format is not correct");
+        }
+        return index;
+    }
+
+    /**
+     * Loads the given films from the row index of the excel file, wherever they are.
+     * Films whose row is not valid are rejected (see {@link FilmValidator}) and written in the {@link RejectReport}
+     *
+     * @param imdbIDs   Ids of the films to load
+     * @param index     {@link ExcelRowIndex} of the excel file. It is not closed
+     * @param logStream {@link OutputStream} to print the scrap statistical data
+     * @return An {@link ArrayList} containing the {@link Film} objects found in the excel file
+     * @throws IOException Raised if the index is corrupted
+     */
+    public ArrayList<Film> scrapFilms(List<Integer> imdbIDs, ExcelRowIndex index, OutputStream logStream) throws IOException {
+        long start = System.currentTimeMillis();
+        ArrayList<Film> list = new ArrayList<>();
+        RejectReport rejectReport = this.openRejectReport();
+        this.totalRows = index.getTotalRows();
+        int rejectedRows = 0;
+        try {
+            for (int imdbID : imdbIDs) {
+                ExcelRowIndex.Row row = index.get(imdbID);
+                if (row != null && !this.loadRow(row, rejectReport, list)) {
+                    rejectedRows++;
+                }
+            }
+        } finally {
+            this.closeRejectReport(rejectReport);
+        }
+
+        // Try to write the statistic into the log
+        try {
+            logStream.write(("-----|EXCEL SCRAPPING STATISTICS|----\r\n").getBytes(StandardCharsets.UTF_8));
+            byte[] strToBytes = ("Films loaded from the row index: " + list.size() + "/" + imdbIDs.size() + " ("
+                    + (System.currentTimeMillis() - start) + " ms)\r\n").getBytes(StandardCharsets.UTF_8);
+            logStream.write(strToBytes);
+            this.writeRejectStats(rejectReport, rejectedRows, logStream);
+            logStream.write(("-------------------------------------\r\n").getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return list;
+    }
+
+    /**
+     * Loads a range of rows from the row index of the excel file. The films are the same that
+     * {@link ExcelScraper#scrapExcel(int, int, OutputStream)} reads from the excel file
+     *
+     * @param start          first row of the excel to scrap
+     * @param quantumToScrap Quantity of rows to be scrapped
+     * @param index          {@link ExcelRowIndex} of the excel file. It is not closed
+     * @param logStream      {@link OutputStream} to print the scrap statistical data
+     * @return An {@link ArrayList} containing the {@link Film} objects that could be scrapped from the rows
+     * @throws IOException Raised if the index is corrupted
+     */
+    public ArrayList<Film> scrapRows(int start, int quantumToScrap, ExcelRowIndex index, OutputStream logStream) throws IOException {
+        ArrayList<Film> list = new ArrayList<>();
+        RejectReport rejectReport = this.openRejectReport();
+        this.totalRows = index.getTotalRows();
+        int rejectedRows = 0;
+        try {
+            for (int i = start; i < totalRows && i < (start + quantumToScrap); ++i) {
+                ExcelRowIndex.Row row = index.getByRow(i);
+                if (row != null && !this.loadRow(row, rejectReport, list)) {
+                    rejectedRows++;
+                }
+            }
+        } finally {
+            this.closeRejectReport(rejectReport);
+        }
+
+        // Try to write the statistic into the log
+        try {
+            logStream.write(("-----|EXCEL SCRAPPING STATISTICS|----\r\n").getBytes(StandardCharsets.UTF_8));
+            byte[] strToBytes = ("Scrapping rows from " + start + " to " + (start + quantumToScrap) + " [total rows = " + totalRows + "] (row index)\r\n").getBytes(StandardCharsets.UTF_8);
+            logStream.write(strToBytes);
+            strToBytes = ("Successful Excel scraps: " + list.size() + "/" + quantumToScrap + "\r\n").getBytes(StandardCharsets.UTF_8);
+            logStream.write(strToBytes);
+            this.writeRejectStats(rejectReport, rejectedRows, logStream);
             logStream.write(("-------------------------------------\r\n").getBytes(StandardCharsets.UTF_8));
         } catch (Exception e) {
             e.printStackTrace();
@@ -90,4 +246,183 @@ public class ExcelScraper {
 
         return list;
     }
+
+    /**
+     * Validates a row of the {@link ExcelRowIndex} and adds its {@link Film} to the list
+     *
+     * @return False if the row was rejected
+     */
+    private boolean loadRow(ExcelRowIndex.Row row, RejectReport rejectReport, ArrayList<Film> list) {
+        int code = row.isEmpty() ? FilmValidator.EMPTY_ROW
+                : FilmValidator.checkSeed(row.getImdbID(), row.getUrl(), row.getTitle(), row.getAvgScore(), row.getGenres());
+        if (code != FilmValidator.VALID) {
+            if (code == FilmValidator.EMPTY_ROW) {
+                this.reject(rejectReport, row.getRow(), code, -1, null, null, Float.NaN, null);
+            } else {
+                this.reject(rejectReport, row.getRow(), code, row.getImdbID(), ExcelScraper.nullIfEmpty(row.getUrl()),
+                        ExcelScraper.nullIfEmpty(row.getTitle()), row.getAvgScore(), ExcelScraper.nullIfEmpty(row.getGenres()));
+            }
+            return false;
+        }
+        try {
+            list.add(this.createFilm(row.getImdbID(), row.getUrl(), row.getTitle(), row.getAvgScore(),
+                    row.getGenres(), row.getPosterUrl()));
+        } catch (Exception e) {
+            System.out.println("ERROR scraping excel at row " + row.getRow() + " (ref:" + e + ")");
+        }
+        return true;
+    }
+
+    /**
+     * Opens the row index of the excel file
+     *
+     * @param indexPath Route to the {@link ExcelRowIndex}
+     * @return The {@link ExcelRowIndex}, or null if it does not exist, is corrupted or was built from a previous
+     * version of the excel file
+     */
+    private ExcelRowIndex openRowIndex(String indexPath) {
+        if (!new File(indexPath).isFile()) {
+            return null;
+        }
+        try {
+            ExcelRowIndex index = new ExcelRowIndex(indexPath);
+            if (index.isCurrent(new File(this.path))) {
+                return index;
+            }
+            index.close();
+        } catch (IOException e) {
+            System.out.println("UNSUCCESSFUL function 'openRowIndex' (ref: " + e + ")");
+        }
+        return null;
+    }
+
+    /**
+     * Reads every row of the excel file and writes the {@link ExcelRowIndex} that maps every film to its row.
+     * Rows are validated when they are loaded, so every row is written, and empty cells are written as empty Strings
+     * (or NaN). Rows without a valid imdbID can only be read by range
+     *
+     * @param indexPath Route to the {@link ExcelRowIndex}
+     * @throws Exception Raised if the excel file could not be read or the index could not be written
+     */
+    public void buildRowIndex(String indexPath) throws Exception {
+        File excelFile = new File(this.path);
+        try (XSSFWorkbook wb = new XSSFWorkbook(new FileInputStream(excelFile))) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            this.totalRows = sheet.getLastRowNum();
+            ExcelRowIndexWriter writer = new ExcelRowIndexWriter(indexPath, excelFile);
+            writer.setTotalRows(this.totalRows);
+            for (int i = 0; i <= this.totalRows; ++i) {
+                XSSFRow row = sheet.getRow(i);
+                if (row == null) {
+                    writer.appendEmpty(i);
+                    continue;
+                }
+                writer.append(i, ExcelScraper.getImdbID(row.getCell(0)), ExcelScraper.emptyIfNull(ExcelScraper.getString(row.getCell(1))),
+                        ExcelScraper.emptyIfNull(ExcelScraper.getString(row.getCell(2))), (float) ExcelScraper.getNumber(row.getCell(3)),
+                        ExcelScraper.emptyIfNull(ExcelScraper.getString(row.getCell(4))), ExcelScraper.getString(row.getCell(5)));
+            }
+            writer.close();
+        }
+    }
+
+    /**
+     * Creates a {@link Film} with the seed cells of a row, already checked by {@link FilmValidator#checkSeed(int, String, String, float, String)}
+     *
+     * @throws Exception Raised when any of the values is not valid
+     */
+    private Film createFilm(int id, String filmURL, String title, float avgScore, String genres, String posterUrl) throws Exception {
+        Film film = new Film(id);
+        film.setUrl(filmURL);
+        film.setTitle(title);
+        film.setAvgScore(avgScore);
+        //Some films have several genres separated by the char "|"
+        film.setGenres(genres.trim().split("[|]"));
+        //The poster is optional: some rows have no poster URL
+        film.setPosterUrl(posterUrl == null ? null : posterUrl.trim());
+        return film;
+    }
+
+    /**
+     * Opens the {@link RejectReport}. The excel file is scrapped anyway if it could not be opened
+     *
+     * @return The {@link RejectReport}, or null if there is no report or it could not be opened
+     */
+    private RejectReport openRejectReport() {
+        if (this.rejectReportPath == null) {
+            return null;
+        }
+        try {
+            return new RejectReport(this.rejectReportPath);
+        } catch (IOException e) {
+            System.out.println("UNSUCCESSFUL function 'openRejectReport' (ref: " + e + ")");
+            return null;
+        }
+    }
+
+    private void closeRejectReport(RejectReport rejectReport) {
+        if (rejectReport != null) {
+            try {
+                rejectReport.close();
+            } catch (IOException e) {
+                System.out.println("UNSUCCESSFUL function 'closeRejectReport' (ref: " + e + ")");
+            }
+        }
+    }
+
+    /**
+     * Writes a rejected row in the {@link RejectReport}, if there is one
+     */
+    private void reject(RejectReport rejectReport, int row, int code, int imdbID, String url, String title, float avgScore, String genres) {
+        if (rejectReport != null) {
+            try {
+                rejectReport.reject(row, code, imdbID, url, title, avgScore, genres);
+            } catch (IOException e) {
+                System.out.println("UNSUCCESSFUL function 'reject' (ref: " + e + ")");
+            }
+        }
+    }
+
+    /**
+     * Adds to the log the number of rows rejected, by reason
+     */
+    private void writeRejectStats(RejectReport rejectReport, int rejectedRows, OutputStream logStream) throws IOException {
+        String details = rejectReport == null ? "" : " (" + rejectReport.getSummary() + ") [report = " + this.rejectReportPath + "]";
+        logStream.write(("Rejected rows: " + rejectedRows + (rejectedRows > 0 ? details : "") + "\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the imdbID of a row
+     *
+     * @return The id, or -1 if the cell is empty or not numeric
+     */
+    private static int getImdbID(XSSFCell cell) {
+        double id = ExcelScraper.getNumber(cell);
+        return Double.isNaN(id) ? -1 : (int) id;
+    }
+
+    /**
+     * Reads a numeric cell
+     *
+     * @return The value, or NaN if the cell is empty or not numeric
+     */
+    private static double getNumber(XSSFCell cell) {
+        return cell != null && cell.getCellType() == CellType.NUMERIC ? cell.getNumericCellValue() : Double.NaN;
+    }
+
+    /**
+     * Reads a String cell
+     *
+     * @return The value, or null if the cell is empty or not a String
+     */
+    private static String getString(XSSFCell cell) {
+        return cell != null && cell.getCellType() == CellType.STRING ? cell.getStringCellValue() : null;
+    }
+
+    private static String emptyIfNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String nullIfEmpty(String value) {
+        return value.isEmpty() ? null : value;
+    }
 }
@@ -1,31 +1,136 @@
 package filmdb.scrappers;
 
+import filmdb.dedup.LshIndex;
 import filmdb.entities.Film;
+import filmdb.entities.ScrapPlan;
+import filmdb.export.BulkSegmentWriter;
+import filmdb.export.ExportManifest;
+import filmdb.export.FilmSnapshot;
+import filmdb.export.FilmSnapshotWriter;
+import filmdb.journal.ScrapJournal;
+import filmdb.loader.BulkLoader;
+import filmdb.logging.AsyncLogAppender;
+import filmdb.metrics.LatencyHistogram;
+import filmdb.metrics.MetricsRegistry;
+import filmdb.posters.PosterPipeline;
 import filmdb.entities.ScrapStatus;
+import filmdb.tagging.DictionaryTagger;
 
 import java.io.*;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
 
 public class FilmScraper {
     //Class parameters
-    private static final String BULK_TASKS_FILE = "..//mm-IMDb-database//output//bulkTasks.json";
-    private static final String SCRAP_LOG = "..//mm-IMDb-database//output//scrappingApp.log";
+    /**
+     * System property with the folder where the scrapper writes its log, journals, bulk segments, manifest, snapshot and
+     * validators instead of the output folder (i.e. the folder of a load test). It is read once, when this class is loaded
+     */
+    public static final String OUTPUT_DIR_PROPERTY = "filmdb.outputDir";
+    private static final String OUTPUT_DIR = System.getProperty(OUTPUT_DIR_PROPERTY, "..//mm-IMDb-database//output");
+    private static final String BULK_TASKS_DIR = OUTPUT_DIR + "//bulk";
+    private static final String BULK_TASKS_PREFIX = "bulkTasks";
+    private static final String BULK_MANIFEST = OUTPUT_DIR + "//bulkManifest.json";
+    private static final String FILM_SNAPSHOT = OUTPUT_DIR + "//films.snapshot";
+    private static final String SCRAP_JOURNAL = OUTPUT_DIR + "//scrapJournal.wal";
+    // HTTP validators of the pages of the films in the snapshot, used to refresh them with conditional requests
+    private static final String VALIDATOR_STORE = OUTPUT_DIR + "//validators.json";
+    // Row of every film of the excel file, with its seed cells, used to load a set of films without reading the excel file
+    public static final String EXCEL_ROW_INDEX = OUTPUT_DIR + "//excelRows.idx";
+    // Rows of the excel file rejected by the FilmValidator, with the reason, as JSON lines
+    private static final String REJECT_REPORT = OUTPUT_DIR + "//excelRejects.ndjson";
+    // Requests reserved for every film refreshed: the main page and its 4 subpages
+    private static final int MAX_REQUESTS_PER_FILM = 5;
+    // The journal is synced to disk, at least, every JOURNAL_FSYNC_RECORDS records or every JOURNAL_FSYNC_INTERVAL ms
+    private static final int JOURNAL_FSYNC_RECORDS = 50;
+    private static final long JOURNAL_FSYNC_INTERVAL = 1000;
+    // Maximum size of every bulk segment. Each segment must be small enough to be sent in a single request
+    private static final long BULK_SEGMENT_BYTES = 3 * 1024 * 1024;
+    // Uncompressed size of the blocks of the gzip bulk segments. 0 to write uncompressed segments
+    private static final int BULK_COMPRESSION_BLOCK_SIZE = 0;
+    public static final String SCRAP_LOG = OUTPUT_DIR + "//scrappingApp.log";
+    // Maximum number of log entries waiting to be written. Further entries are discarded
+    private static final int LOG_BUFFER_ENTRIES = 16 * 1024;
+    private static final String ANIMALS_DICTIONARY = "..//mm-IMDb-database//output//animals.json";
+    private static final String SPANISH_DICTIONARY = "..//mm-IMDb-database//output//spanish-word-dic.json";
     private static final double AVG_SCRAP_TIME = 5.7; // measured in seconds
+    // Near-duplicate detection parameters. Signatures have LSH_BANDS * LSH_ROWS_PER_BAND hashes
+    private static final int LSH_BANDS = 32;
+    private static final int LSH_ROWS_PER_BAND = 4;
+    private static final double DUPLICATE_THRESHOLD = 0.8;
+    // If true, only the first film of every duplicate cluster is written in the bulk segments
+    private static final boolean SKIP_DUPLICATE_FILMS = false;
+    // Films with failed attributes are retried after the main pass using, at most, RETRY_PARALLELISM threads
+    private static final int RETRY_PARALLELISM = 2;
+    // Scrappers not closed yet. The gauges add up the progress of all of them, since several jobs may run at once
+    private static final Set<FilmScraper> LIVE_SCRAPERS = ConcurrentHashMap.newKeySet();
 
     // Attributes
-    private int successfulScraps;
-    private int uncompletedScraps;
-    private int failedScraps;
+    // Counters updated concurrently by the scrapping threads
+    private final LongAdder successfulScraps;
+    private final LongAdder uncompletedScraps;
+    private final LongAdder failedScraps;
     private int totalScraps;
-    private long totalScrapTime;
-    private int scrappingProgress;
+    private final LongAdder totalScrapTime;
+    private final AtomicInteger scrappingProgress;
+    // Live throughput of the current pass, used to estimate the remaining time
+    private volatile long passStartNanos;
+    private volatile int passFilms;
+    private final LongAdder passFinishedFilms;
+    private final MetricsRegistry metrics;
+    private final LatencyHistogram filmScrapTime;
+    private final LatencyHistogram serializationTime;
+    private final LatencyHistogram journalAppendTime;
     private final long initDate;
     private final ArrayList<Film> scrappedFilms;
-    private ArrayList<Integer> notScrappedFilms;
-    private final FileOutputStream outputStream = new FileOutputStream(new File(FilmScraper.SCRAP_LOG).getCanonicalPath(), true);
+    private final ConcurrentLinkedQueue<Integer> notScrappedFilms;
+    private final LshIndex duplicateIndex;
+    private final DictionaryTagger dictionaryTagger;
+    private final BulkSegmentWriter bulkWriter;
+    private final ExportManifest exportManifest;
+    private final ScrapJournal journal;
+    private final ValidatorStore validatorStore;
+    // The journal can only be emptied if its previous records have been restored (or there were none)
+    private boolean journalRestored;
+    // The films of the journal are only safe once both the bulk segments and the snapshot have been written
+    private boolean bulkTasksExported;
+    private boolean snapshotExported;
+    private final LongAdder unchangedFilms;
+    // True if every row of the excel file was loaded, so that films missing from it can be deleted
+    private final boolean fullSeedLoaded;
+    // Optional. If set, completed films are also sent to Elastic Search while scrapping
+    private BulkLoader bulkLoader;
+    // Optional. If set, the posters of the completed films are downloaded in the background
+    private PosterPipeline posterPipeline;
+    // Attributes scrapped from the web for every film
+    private ScrapPlan scrapPlan;
+    // Maximum time spent on the pages of a film, measured in nanoseconds. 0 for no limit
+    private long filmTimeBudget;
+    // Time (see System#nanoTime()) after which no film is started. WebScraper.NO_DEADLINE for no limit
+    private volatile long runDeadline;
+    // Films not started because the run deadline had expired
+    private final LongAdder skippedFilms;
+    // Optional. Mean scrap time of the films scrapped in previous runs, measured in seconds, so that the slowest start first
+    private Map<Integer, Double> expectedScrapTimes;
+    private final AsyncLogAppender outputStream = new AsyncLogAppender(FilmScraper.SCRAP_LOG, LOG_BUFFER_ENTRIES);
 
     /**
      * Constructor to initialize a new {@link FilmScraper} that will scrap the films contained in the specified excel file
@@ -34,56 +139,369 @@ public class FilmScraper {
      * @throws Exception Raised if the initial data load could not be completed
      */
     public FilmScraper(String imdbDataExcelFile, int startIndex, int totalFilmsToScrap) throws Exception {
-        this.successfulScraps = 0;
-        this.uncompletedScraps = 0;
-        this.failedScraps = 0;
+        this(imdbDataExcelFile, startIndex, totalFilmsToScrap, null);
+    }
+
+    /**
+     * Constructor to initialize a new {@link FilmScraper} that scraps a shard of the excel file, in parallel with
+     * other processes. The journal and the bulk segments of the shard are named after it, so that the outputs of
+     * different processes do not collide, while the manifest and the snapshot are shared and merged
+     *
+     * @param imdbDataExcelFile Route to the excel file containing imdb film data
+     * @param shardName         Name of the shard (i.e. "rows36000"). Null if the excel file is not sharded
+     * @throws Exception Raised if the initial data load could not be completed
+     */
+    public FilmScraper(String imdbDataExcelFile, int startIndex, int totalFilmsToScrap, String shardName) throws Exception {
+        this(imdbDataExcelFile, startIndex, totalFilmsToScrap, null, null, shardName);
+    }
+
+    /**
+     * Constructor to initialize a new {@link FilmScraper} that reads a range of rows from an {@link ExcelRowIndex}
+     * already open, instead of the excel file (i.e. kept open by a long-running process)
+     *
+     * @param imdbDataExcelFile Route to the excel file containing imdb film data
+     * @param rowIndex          {@link ExcelRowIndex} of the excel file. It is not closed by the {@link FilmScraper}
+     * @param shardName         Name of the shard. Null if the excel file is not sharded
+     * @throws Exception Raised if the initial data load could not be completed
+     */
+    public FilmScraper(String imdbDataExcelFile, ExcelRowIndex rowIndex, int startIndex, int totalFilmsToScrap, String shardName) throws Exception {
+        this(imdbDataExcelFile, startIndex, totalFilmsToScrap, null, rowIndex, shardName);
+    }
+
+    /**
+     * Constructor to initialize a new {@link FilmScraper} that reads the given films from an {@link ExcelRowIndex}
+     * already open (i.e. kept open by a long-running process)
+     *
+     * @param imdbDataExcelFile Route to the excel file containing imdb film data
+     * @param rowIndex          {@link ExcelRowIndex} of the excel file. It is not closed by the {@link FilmScraper}
+     * @param imdbIDs           Ids of the films to load. Films missing from the excel file are reported when they are scrapped
+     * @param shardName         Name of the shard. Null if the excel file is not sharded
+     * @throws Exception Raised if the initial data load could not be completed
+     */
+    public FilmScraper(String imdbDataExcelFile, ExcelRowIndex rowIndex, List<Integer> imdbIDs, String shardName) throws Exception {
+        this(imdbDataExcelFile, 0, 0, imdbIDs, rowIndex, shardName);
+    }
+
+    /**
+     * Constructor to initialize a new {@link FilmScraper} that will scrap the given films of the specified excel file,
+     * wherever they are. The films are loaded from the row index of the excel file (see {@link ExcelRowIndex}),
+     * so the excel file is only read if the index has to be built
+     *
+     * @param imdbDataExcelFile Route to the excel file containing imdb film data
+     * @param imdbIDs           Ids of the films to load. Films missing from the excel file are reported when they are scrapped
+     * @throws Exception Raised if the initial data load could not be completed
+     */
+    public FilmScraper(String imdbDataExcelFile, List<Integer> imdbIDs) throws Exception {
+        this(imdbDataExcelFile, 0, 0, imdbIDs, null, null);
+    }
+
+    /**
+     * Loads the films of a range of rows or, if imdbIDs is not null, the given films. They are read from the
+     * rowIndex if it is not null
+     */
+    private FilmScraper(String imdbDataExcelFile, int startIndex, int totalFilmsToScrap, List<Integer> imdbIDs,
+                        ExcelRowIndex rowIndex, String shardName) throws Exception {
+        this.successfulScraps = new LongAdder();
+        this.uncompletedScraps = new LongAdder();
+        this.failedScraps = new LongAdder();
         this.totalScraps = 0;
-        this.totalScrapTime = 0;
-        this.scrappingProgress = 0;
+        this.totalScrapTime = new LongAdder();
+        this.scrappingProgress = new AtomicInteger();
+        this.passStartNanos = System.nanoTime();
+        this.passFilms = 0;
+        this.passFinishedFilms = new LongAdder();
+        this.metrics = MetricsRegistry.getDefault();
+        this.filmScrapTime = this.metrics.histogram("filmdb_film_scrap_seconds");
+        this.serializationTime = this.metrics.histogram("filmdb_serialization_seconds");
+        this.journalAppendTime = this.metrics.histogram("filmdb_journal_append_seconds");
         this.initDate = System.currentTimeMillis();
         this.scrappedFilms = new ArrayList<>();
-        this.notScrappedFilms = new ArrayList<>();
+        this.notScrappedFilms = new ConcurrentLinkedQueue<>();
+        this.duplicateIndex = new LshIndex(LSH_BANDS, LSH_ROWS_PER_BAND, DUPLICATE_THRESHOLD);
+        this.dictionaryTagger = DictionaryTagger.fromDefaultDictionaries(ANIMALS_DICTIONARY, SPANISH_DICTIONARY);
+        this.bulkWriter = new BulkSegmentWriter(BULK_TASKS_DIR, shardName == null ? BULK_TASKS_PREFIX : BULK_TASKS_PREFIX + "-" + shardName,
+                BULK_SEGMENT_BYTES, BULK_COMPRESSION_BLOCK_SIZE);
+
+        this.exportManifest = new ExportManifest(BULK_MANIFEST);
+        this.journal = new ScrapJournal(shardName == null ? SCRAP_JOURNAL : SCRAP_JOURNAL.replace(".wal", "-" + shardName + ".wal"),
+                JOURNAL_FSYNC_RECORDS, JOURNAL_FSYNC_INTERVAL);
+        this.journalRestored = this.journal.isEmpty();
+        this.validatorStore = new ValidatorStore(VALIDATOR_STORE);
+        this.unchangedFilms = new LongAdder();
+        this.scrapPlan = ScrapPlan.full();
+        this.filmTimeBudget = 0;
+        this.runDeadline = WebScraper.NO_DEADLINE;
+        this.skippedFilms = new LongAdder();
+        FilmScraper.registerGauges(this.metrics);
 
         this.writeInitialStats(imdbDataExcelFile);
         File excelFile = new File(imdbDataExcelFile);
-        this.scrappedFilms.addAll(new ExcelScraper(excelFile.getCanonicalPath()).scrapExcel(startIndex, totalFilmsToScrap, this.outputStream));
-        if (this.scrappedFilms.isEmpty()) {
-            throw new Exception("The excel format is not correct");
+        ExcelScraper excelScraper = new ExcelScraper(excelFile.getCanonicalPath(),
+                shardName == null ? REJECT_REPORT : REJECT_REPORT.replace(".ndjson", "-" + shardName + ".ndjson"));
+        if (imdbIDs != null) {
+            // The films missing from the excel file are reported when they are scrapped
+            this.scrappedFilms.addAll(rowIndex == null ? excelScraper.scrapFilms(imdbIDs, EXCEL_ROW_INDEX, this.outputStream)
+                    : excelScraper.scrapFilms(imdbIDs, rowIndex, this.outputStream));
+            this.fullSeedLoaded = false;
+        } else {
+            this.scrappedFilms.addAll(rowIndex == null ? excelScraper.scrapExcel(startIndex, totalFilmsToScrap, this.outputStream)
+                    : excelScraper.scrapRows(startIndex, totalFilmsToScrap, rowIndex, this.outputStream));
+            this.fullSeedLoaded = startIndex <= 1 && startIndex + totalFilmsToScrap >= excelScraper.getTotalRows();
+            if (this.scrappedFilms.isEmpty()) {
+                throw new Exception("The excel format is not correct");
+            }
         }
         this.totalScraps = this.scrappedFilms.size();
+        LIVE_SCRAPERS.add(this);
+    }
+
+    /**
+     * Number of films loaded from the excel file
+     */
+    public int getTotalScraps() {
+        return totalScraps;
     }
 
     /**
-     * Prints the final statistics and closes the {@link FilmScraper#outputStream}
+     * Number of films completed (scrapped, refreshed or restored from the journal) so far
+     */
+    public long getSuccessfulScraps() {
+        return successfulScraps.sum();
+    }
+
+    /**
+     * Prints the final statistics and closes the {@link FilmScraper#outputStream}. The journal is emptied if its films
+     * have been exported (i.e. both {@link FilmScraper#generateBulkTasksFile()} and {@link FilmScraper#generateSnapshotFile()}
+     * succeeded); otherwise it is kept so that the run can still be resumed
      *
-     * @throws IOException Raised if the {@link FileOutputStream} could not be closed
+     * @throws IOException Raised if the {@link AsyncLogAppender} could not write the pending entries
      */
     public void close() throws IOException {
+        LIVE_SCRAPERS.remove(this);
         this.writeFinalStats();
+        if (this.journalRestored && this.bulkTasksExported && this.snapshotExported) {
+            this.journal.reset();
+        }
+        this.journal.close();
         this.outputStream.close();
     }
 
     /**
-     * Scraps the remaining {@link Film} attributes that the excel could not set
+     * Replays the scrapping journal left by an interrupted run. Every film of the journal recovers its scrapped
+     * attributes and is marked as completed, so that it is not scrapped again
+     *
+     * @return Number of films restored from the journal
+     */
+    public int resumeFromJournal() {
+        int restoredFilms = 0;
+        try {
+            Map<Integer, String> documents = this.journal.replay();
+            for (Film film : this.scrappedFilms) {
+                String document = documents.get(film.getImdbID());
+                if (document != null) {
+                    film.restoreFromJson(document);
+                    film.getStatus().setStatusCompleted();
+                    this.successfulScraps.increment();
+                    boolean duplicate = this.duplicateIndex.add(film);
+                    if (!(SKIP_DUPLICATE_FILMS && duplicate)) {
+                        this.writeBulkTask(film);
+                        this.submitPoster(film);
+                    }
+                    restoredFilms++;
+                }
+            }
+            this.journalRestored = true;
+            this.outputStream.write(("Films restored from the journal: " + restoredFilms + "/" + documents.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return restoredFilms;
+    }
+
+    /**
+     * Scraps the remaining {@link Film} attributes that the excel could not set.
+     * Completed films are written in the bulk segments straight away
      *
      * @param film {@link Film} initialized with IMDb Excel data
      */
     private void scrapRemainingAttr(Film film) {
+        if (this.isRunExpired()) {
+            // The run is draining: the films in progress end within their own budget, and the rest are not started
+            this.skippedFilms.increment();
+            this.notScrappedFilms.add(film.getImdbID());
+            return;
+        }
         long start = System.currentTimeMillis();
-        film.initializeUnsetAttributes();
+        long startNanos = System.nanoTime();
+        film.initializeUnsetAttributes(this.scrapPlan, this.getFilmDeadline());
+        this.filmScrapTime.recordSince(startNanos);
+        this.passFinishedFilms.increment();
         this.writeFilmScrappingStats(film.getImdbID(), System.currentTimeMillis() - start, film.getStatus());
         this.updateScrappingProgress();
         if (!film.getStatus().isCompleted()) {
             this.notScrappedFilms.add(film.getImdbID());
+        } else {
+            this.dictionaryTagger.tag(film);
+            this.writeJournalRecord(film);
+            boolean duplicate = this.duplicateIndex.add(film);
+            if (!(SKIP_DUPLICATE_FILMS && duplicate)) {
+                this.writeBulkTask(film);
+                this.submitPoster(film);
+            }
         }
     }
 
+    /**
+     * Records a completed {@link Film} in the scrapping journal
+     *
+     * @param film Completed {@link Film}
+     */
+    private void writeJournalRecord(Film film) {
+        try {
+            long start = System.nanoTime();
+            this.journal.append(film);
+            this.journalAppendTime.recordSince(start);
+        } catch (Exception e) {
+            System.out.println("UNSUCCESSFUL function 'writeJournalRecord' (ref: " + e + ")");
+        }
+    }
+
+    /**
+     * Appends the index task of a completed {@link Film} to the bulk segments and,
+     * if there is a {@link BulkLoader} attached, sends it to Elastic Search.
+     * Films whose document is the same as in the previous export are skipped
+     *
+     * @param film Completed {@link Film}
+     */
+    private void writeBulkTask(Film film) {
+        try {
+            long start = System.nanoTime();
+            String document = film.toJson();
+            this.serializationTime.recordSince(start);
+            if (!this.exportManifest.update(film.getImdbID(), ExportManifest.contentHash(document))) {
+                this.unchangedFilms.increment();
+                return;
+            }
+            this.bulkWriter.append(film.getImdbID(), document);
+            if (this.bulkLoader != null) {
+                this.bulkLoader.add(BulkSegmentWriter.indexAction(film.getImdbID()), document);
+            }
+        } catch (Exception e) {
+            System.out.println("UNSUCCESSFUL function 'writeBulkTask' (ref: " + e + ")");
+        }
+    }
+
+    /**
+     * Attaches a {@link BulkLoader} so that films are indexed as soon as they are completed.
+     * The loader is not closed by the {@link FilmScraper}
+     *
+     * @param bulkLoader {@link BulkLoader} connected to the Bulk API
+     */
+    public void attachBulkLoader(BulkLoader bulkLoader) {
+        this.bulkLoader = bulkLoader;
+    }
+
+    /**
+     * Queues the poster of a completed {@link Film} in the {@link PosterPipeline}, if there is one attached.
+     * It does not wait for the poster to be downloaded
+     *
+     * @param film Completed {@link Film}
+     */
+    private void submitPoster(Film film) {
+        if (this.posterPipeline != null) {
+            this.posterPipeline.submit(film.getImdbID(), film.getPosterUrl());
+        }
+    }
+
+    /**
+     * Attaches a {@link PosterPipeline} so that the posters of the films are downloaded as soon as they are completed.
+     * The pipeline is not closed by the {@link FilmScraper}
+     *
+     * @param posterPipeline {@link PosterPipeline} that stores the thumbnails
+     */
+    public void attachPosterPipeline(PosterPipeline posterPipeline) {
+        this.posterPipeline = posterPipeline;
+    }
+
+    /**
+     * Sets the {@link ScrapPlan} used to scrap the films from now on. By default, every attribute is scrapped
+     *
+     * @param scrapPlan {@link ScrapPlan} with the attributes to be scrapped
+     */
+    public void setScrapPlan(ScrapPlan scrapPlan) {
+        if (scrapPlan == null) {
+            throw new NullPointerException("Impossible to set scrapPlan to null");
+        }
+        this.scrapPlan = scrapPlan;
+        try {
+            this.outputStream.write(("Scrap plan: " + scrapPlan + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("UNSUCCESSFUL function 'setScrapPlan' (ref: " + e + ")");
+        }
+    }
+
+    /**
+     * Sets the scrap time expected for every film (i.e. its mean in the previous runs, see
+     * {@link filmdb.logging.LogAnalyzer.Report#getExpectedScrapTimes()}). The films of a full scrap are started from the
+     * slowest to the fastest, so that the slowest films do not delay the end of the run. Films without an expected time
+     * are assumed to take the mean time of the rest
+     *
+     * @param expectedScrapTimes Map of imdbID to expected scrap time, measured in seconds. Null to keep the order of the excel file
+     */
+    public void setExpectedScrapTimes(Map<Integer, Double> expectedScrapTimes) {
+        this.expectedScrapTimes = expectedScrapTimes;
+    }
+
+    /**
+     * Limits the time spent scrapping. Every film gets a deadline when it is started: the page being downloaded when it
+     * expires is cancelled, and the attributes whose page was not downloaded are recorded as failed, so that the film
+     * keeps its partial attributes and is retried later. Once the run deadline expires, no film is started (nor retried),
+     * while the films in progress end within their own deadline
+     *
+     * @param filmTimeBudget Maximum time spent on the pages of a film, measured in milliseconds. 0 for no limit
+     * @param runTimeBudget  Maximum time, from now, during which films are started, measured in milliseconds. 0 for no limit
+     */
+    public void setTimeBudgets(long filmTimeBudget, long runTimeBudget) {
+        this.filmTimeBudget = TimeUnit.MILLISECONDS.toNanos(Math.max(0, filmTimeBudget));
+        this.runDeadline = runTimeBudget > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(runTimeBudget) : WebScraper.NO_DEADLINE;
+        try {
+            this.outputStream.write(("Time budgets: " + (filmTimeBudget > 0 ? filmTimeBudget + " ms" : "unlimited") + " per film, "
+                    + (runTimeBudget > 0 ? runTimeBudget + " ms" : "unlimited") + " per run\r\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("UNSUCCESSFUL function 'setTimeBudgets' (ref: " + e + ")");
+        }
+    }
+
+    /**
+     * Provides the deadline of a film started now
+     *
+     * @return A time as given by {@link System#nanoTime()}, or {@link WebScraper#NO_DEADLINE} if films have no time budget
+     */
+    private long getFilmDeadline() {
+        return this.filmTimeBudget > 0 ? System.nanoTime() + this.filmTimeBudget : WebScraper.NO_DEADLINE;
+    }
+
+    /**
+     * Checks if the run deadline has expired, so that no film must be started
+     */
+    private boolean isRunExpired() {
+        return this.runDeadline != WebScraper.NO_DEADLINE && System.nanoTime() - this.runDeadline >= 0;
+    }
+
+    /**
+     * Stops the run as if its time budget had expired: no film is started (nor retried) from now on, while the films
+     * in progress end within their own deadline. It can be called from any thread
+     */
+    public void stop() {
+        this.runDeadline = System.nanoTime();
+    }
+
     /**
      * Provides the ratio between the specified parameter and {@link FilmScraper#totalScraps}
      *
      * @return A String containing the stats of the {@link FilmScraper} with the format "#successful/#total"
      */
-    private String getOverallRatio(int numerator) {
+    private String getOverallRatio(long numerator) {
         return numerator + "/" + this.totalScraps;
     }
 
@@ -93,19 +511,79 @@ public class FilmScraper {
      */
     private void updateScrappingProgress() {
 
-        double currentProgress = ((double) (this.successfulScraps + this.uncompletedScraps + this.failedScraps) / this.totalScraps) * 100;
-        if (currentProgress > this.scrappingProgress) {
-            this.scrappingProgress++;
-            System.out.println("****** Scrapping progress: " + this.scrappingProgress + "%");
+        double currentProgress = ((double) (this.successfulScraps.sum() + this.uncompletedScraps.sum() + this.failedScraps.sum()) / this.totalScraps) * 100;
+        int progress = this.scrappingProgress.get();
+        if (currentProgress > progress && this.scrappingProgress.compareAndSet(progress, progress + 1)) {
+            double eta = this.getEstimatedRemainingSeconds();
+            System.out.println("****** Scrapping progress: " + (progress + 1) + "%"
+                    + (eta < 0 ? "" : " (remaining time: " + String.format("%.2f", eta / 60) + " minutes)"));
         }
     }
 
     /**
-     * Prints, in the standard output, the estimated execution time of the current scrapping process
+     * Estimates the remaining time of the current pass from its live throughput
+     *
+     * @return Remaining time measured in seconds. -1 if no film of the pass has been scrapped yet
+     */
+    private double getEstimatedRemainingSeconds() {
+        long finished = this.passFinishedFilms.sum();
+        if (finished == 0) {
+            return -1;
+        }
+        double elapsed = (System.nanoTime() - this.passStartNanos) / 1e9;
+        return Math.max(0, this.passFilms - finished) * (elapsed / finished);
+    }
+
+    /**
+     * Exposes the scrapping counters and the live throughput through the {@link MetricsRegistry}. The gauges add up
+     * every scrapper not closed yet, so that concurrent jobs are all counted
+     */
+    private static void registerGauges(MetricsRegistry metrics) {
+        metrics.gauge("filmdb_successful_scraps", () -> FilmScraper.sumOfLiveScrapers(scraper -> scraper.successfulScraps.sum()));
+        metrics.gauge("filmdb_uncompleted_scraps", () -> FilmScraper.sumOfLiveScrapers(scraper -> scraper.uncompletedScraps.sum()));
+        metrics.gauge("filmdb_failed_scraps", () -> FilmScraper.sumOfLiveScrapers(scraper -> scraper.failedScraps.sum()));
+        metrics.gauge("filmdb_unchanged_films", () -> FilmScraper.sumOfLiveScrapers(scraper -> scraper.unchangedFilms.sum()));
+        metrics.gauge("filmdb_skipped_films", () -> FilmScraper.sumOfLiveScrapers(scraper -> scraper.skippedFilms.sum()));
+        metrics.gauge("filmdb_pass_films", () -> FilmScraper.sumOfLiveScrapers(scraper -> scraper.passFilms));
+        metrics.gauge("filmdb_pass_finished_films", () -> FilmScraper.sumOfLiveScrapers(scraper -> scraper.passFinishedFilms.sum()));
+        metrics.gauge("filmdb_throughput_films_per_second", () -> FilmScraper.sumOfLiveScrapers(scraper -> {
+            double elapsed = (System.nanoTime() - scraper.passStartNanos) / 1e9;
+            return elapsed <= 0 ? 0 : scraper.passFinishedFilms.sum() / elapsed;
+        }));
+        // The scrappers run at the same time, so the remaining time is the one of the slowest of them
+        metrics.gauge("filmdb_eta_seconds", () -> {
+            double eta = -1;
+            for (FilmScraper scraper : LIVE_SCRAPERS) {
+                eta = Math.max(eta, scraper.getEstimatedRemainingSeconds());
+            }
+            return eta;
+        });
+    }
+
+    /**
+     * Adds up a value of every scrapper not closed yet
+     *
+     * @param value Value of a scrapper
+     * @return Sum of the values of the live scrappers
+     */
+    private static double sumOfLiveScrapers(ToDoubleFunction<FilmScraper> value) {
+        double sum = 0;
+        for (FilmScraper scraper : LIVE_SCRAPERS) {
+            sum += value.applyAsDouble(scraper);
+        }
+        return sum;
+    }
+
+    /**
+     * Prints, in the standard output, the estimated execution time of the current scrapping process, and starts
+     * measuring the throughput of the pass. Before any film is scrapped, the estimation uses {@link FilmScraper#AVG_SCRAP_TIME}
      *
      * @param filmsToScrap Number of films to be scrapped
      */
     private void printEstimatedExecutionTime(int filmsToScrap) {
+        this.passStartNanos = System.nanoTime();
+        this.passFilms = filmsToScrap;
+        this.passFinishedFilms.reset();
         int numCores = Runtime.getRuntime().availableProcessors();
         double dExeTime = AVG_SCRAP_TIME * filmsToScrap;
         if (filmsToScrap > 1) {
@@ -125,15 +603,56 @@ public class FilmScraper {
 
     /**
      * Scraps all the information of the films parsed from the IMDb data excel. The scrapping process is
-     * parallelized using all the available CPU cores
+     * parallelized using all the available CPU cores. Films already completed (i.e. restored from the journal) are skipped
      */
     public void scrapAllFilms() {
+        this.scrapAllFilms(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Scraps all the information of the films parsed from the IMDb data excel, using the given number of threads.
+     * If the expected scrap times have been set, the slowest films are started first. Films already completed (i.e.
+     * restored from the journal) are skipped
+     *
+     * @param threads Number of threads scrapping films at the same time
+     */
+    public void scrapAllFilms(int threads) {
         long start = System.currentTimeMillis();
         try {
-            this.printEstimatedExecutionTime(this.totalScraps);
+            List<Film> pendingFilms = new ArrayList<>();
+            for (Film film : this.scrappedFilms) {
+                if (!film.getStatus().isCompleted()) {
+                    pendingFilms.add(film);
+                }
+            }
+            this.printEstimatedExecutionTime(pendingFilms.size());
             this.outputStream.write(("-----|STARTING WEB SCRAPPING|-----\r\n").getBytes(StandardCharsets.UTF_8));
             this.outputStream.write(("--------|Mode: full scrap|--------\r\n").getBytes(StandardCharsets.UTF_8));
-            this.scrappedFilms.parallelStream().forEach(this::scrapRemainingAttr);
+            if (this.expectedScrapTimes != null && !this.expectedScrapTimes.isEmpty()) {
+                this.sortBySlowestFirst(pendingFilms);
+            }
+            // Films are taken in order by every thread, so the slowest films are started first
+            ConcurrentLinkedQueue<Film> queue = new ConcurrentLinkedQueue<>(pendingFilms);
+            ExecutorService scrapPool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> workers = new ArrayList<>();
+            try {
+                for (int i = 0; i < threads; i++) {
+                    workers.add(scrapPool.submit(() -> {
+                        Film film;
+                        while ((film = queue.poll()) != null) {
+                            this.scrapRemainingAttr(film);
+                        }
+                    }));
+                }
+            } finally {
+                scrapPool.shutdown();
+            }
+            scrapPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            // Raises the error of any thread that stopped before the queue was drained
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            this.retryFailedFilms();
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
@@ -143,6 +662,205 @@ public class FilmScraper {
 
     }
 
+    /**
+     * Sorts the films by their expected scrap time, slowest first. The expected times must have been set
+     *
+     * @param films Films to be scrapped
+     */
+    private void sortBySlowestFirst(List<Film> films) {
+        double meanTime = 0;
+        for (double time : this.expectedScrapTimes.values()) {
+            meanTime += time;
+        }
+        double defaultTime = meanTime / this.expectedScrapTimes.size();
+        films.sort(Comparator.comparingDouble((Film film) -> this.expectedScrapTimes.getOrDefault(film.getImdbID(), defaultTime)).reversed());
+    }
+
+    /**
+     * Refreshes the films of the previous snapshot whose pages have validators, in priority order (highest avgScore first),
+     * until the request budget is spent. Every page is requested conditionally: films whose pages have not changed are
+     * restored from the snapshot without parsing or exporting them, and the attributes of the unchanged pages of the
+     * rest of the films are kept. Films that are not refreshed keep their previous version in the snapshot
+     *
+     * @param requestBudget Maximum number of HTTP requests sent
+     */
+    public void refreshFilms(int requestBudget) {
+        long start = System.currentTimeMillis();
+        try {
+            Map<Integer, Film> previousFilms = new HashMap<>();
+            if (new File(FILM_SNAPSHOT).isFile()) {
+                try (FilmSnapshot snapshot = new FilmSnapshot(FILM_SNAPSHOT)) {
+                    for (Film film : this.scrappedFilms) {
+                        if (!film.getStatus().isCompleted() && this.validatorStore.contains(film.getImdbID()) && snapshot.contains(film.getImdbID())) {
+                            previousFilms.put(film.getImdbID(), snapshot.get(film.getImdbID()));
+                        }
+                    }
+                }
+            }
+            List<Film> pendingFilms = new ArrayList<>();
+            for (Film film : this.scrappedFilms) {
+                if (previousFilms.containsKey(film.getImdbID())) {
+                    pendingFilms.add(film);
+                }
+            }
+            pendingFilms.sort(Comparator.comparingDouble(Film::getAvgScore).reversed());
+            this.printEstimatedExecutionTime(Math.min(pendingFilms.size(), requestBudget / MAX_REQUESTS_PER_FILM));
+            this.outputStream.write(("-----|STARTING WEB SCRAPPING|-----\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("---------|Mode: refresh|---------\r\n").getBytes(StandardCharsets.UTF_8));
+
+            // Films are taken in priority order by every thread, so the budget is spent on the highest rated films
+            ConcurrentLinkedQueue<Film> queue = new ConcurrentLinkedQueue<>(pendingFilms);
+            AtomicInteger remainingBudget = new AtomicInteger(requestBudget);
+            LongAdder refreshedFilms = new LongAdder();
+            LongAdder changedFilms = new LongAdder();
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService refreshPool = Executors.newFixedThreadPool(threads);
+            try {
+                for (int i = 0; i < threads; i++) {
+                    refreshPool.submit(() -> {
+                        Film film;
+                        while (!this.isRunExpired() && (film = queue.poll()) != null) {
+                            if (remainingBudget.addAndGet(-MAX_REQUESTS_PER_FILM) < 0) {
+                                remainingBudget.addAndGet(MAX_REQUESTS_PER_FILM);
+                                break;
+                            }
+                            boolean changed = this.refreshFilm(film, previousFilms.get(film.getImdbID()));
+                            remainingBudget.addAndGet(MAX_REQUESTS_PER_FILM - film.getRequestCount());
+                            refreshedFilms.increment();
+                            if (changed) {
+                                changedFilms.increment();
+                            }
+                        }
+                    });
+                }
+            } finally {
+                refreshPool.shutdown();
+            }
+            refreshPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            this.outputStream.write(("Films refreshed: " + refreshedFilms.sum() + "/" + pendingFilms.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Films changed: " + changedFilms.sum() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Requests sent: " + (requestBudget - remainingBudget.get()) + "/" + requestBudget + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            //Try to write the statistics into the Log
+            this.writeWebScrappingStats(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Refreshes a film with conditional requests. Changed films are tagged, recorded in the journal and exported as
+     * in a full scrap. Unchanged films are restored from their previous version
+     *
+     * @param film     {@link Film} initialized with IMDb Excel data
+     * @param previous The film as it is in the snapshot
+     * @return True if, at least, one page of the film has changed
+     */
+    private boolean refreshFilm(Film film, Film previous) {
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        boolean changed = film.refreshAttributes(previous, this.validatorStore.getSubpageUrls(film.getImdbID()),
+                this.validatorStore.getValidators(film.getImdbID()), this.scrapPlan, this.getFilmDeadline());
+        this.filmScrapTime.recordSince(startNanos);
+        this.passFinishedFilms.increment();
+        if (!changed && film.getStatus().isCompleted()) {
+            // Nothing to parse or export: the previous version, tags included, is still valid
+            film.restoreFromJson(previous.toJson());
+            this.successfulScraps.increment();
+            this.unchangedFilms.increment();
+            this.duplicateIndex.add(film);
+            this.metrics.counter("filmdb_unchanged_refreshes_total").increment();
+        } else {
+            this.writeFilmScrappingStats(film.getImdbID(), System.currentTimeMillis() - start, film.getStatus());
+            if (!film.getStatus().isCompleted()) {
+                this.notScrappedFilms.add(film.getImdbID());
+            } else {
+                this.dictionaryTagger.tag(film);
+                this.writeJournalRecord(film);
+                boolean duplicate = this.duplicateIndex.add(film);
+                if (!(SKIP_DUPLICATE_FILMS && duplicate)) {
+                    this.writeBulkTask(film);
+                }
+            }
+        }
+        this.updateScrappingProgress();
+        return changed;
+    }
+
+    /**
+     * Second pass over the films whose attributes could not be scrapped because a page could not be downloaded.
+     * Only the failed subpages are requested again, with a reduced number of threads to avoid overloading the server.
+     * Films completed in this pass, or whose optional attributes are recovered, are written as if they had been
+     * completed in the main pass
+     */
+    private void retryFailedFilms() {
+        List<Film> failedFilms = new ArrayList<>();
+        for (Film film : this.scrappedFilms) {
+            if (film.getStatus().hasFailedAttributes()) {
+                failedFilms.add(film);
+            }
+        }
+        if (failedFilms.isEmpty() || this.isRunExpired()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LongAdder recoveredFilms = new LongAdder();
+        LongAdder completedFilms = new LongAdder();
+        ForkJoinPool retryPool = new ForkJoinPool(RETRY_PARALLELISM);
+        try {
+            this.outputStream.write(("-----|RETRYING FAILED ATTRIBUTES|-----\r\n").getBytes(StandardCharsets.UTF_8));
+            retryPool.submit(() -> failedFilms.parallelStream().forEach(film -> {
+                if (this.isRunExpired()) {
+                    return;
+                }
+                int previousStatus = film.getStatus().getStatusCode();
+                int previousAttributes = film.getStatus().getFailedAttributes();
+                this.metrics.counter("filmdb_attribute_retries_total").add(Integer.bitCount(previousAttributes));
+                if (!film.retryFailedAttributes(this.getFilmDeadline())) {
+                    return;
+                }
+                this.metrics.counter("filmdb_recovered_attributes_total")
+                        .add(Integer.bitCount(previousAttributes & ~film.getStatus().getFailedAttributes()));
+                boolean completed = film.getStatus().isCompleted();
+                recoveredFilms.increment();
+                if (completed && previousStatus != ScrapStatus.COMPLETED_STATUS) {
+                    completedFilms.increment();
+                    if (previousStatus == ScrapStatus.ERROR_STATUS) {
+                        this.failedScraps.decrement();
+                    } else {
+                        this.uncompletedScraps.decrement();
+                    }
+                    this.successfulScraps.increment();
+                    this.notScrappedFilms.remove(film.getImdbID());
+                }
+                try {
+                    this.outputStream.write(("Retried film: " + film.getImdbID() + " (recovered: "
+                            + ScrapStatus.getAttributeNames(previousAttributes & ~film.getStatus().getFailedAttributes())
+                            + ")\r\n").getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    System.out.println("UNSUCCESSFUL function 'retryFailedFilms' (ref: " + e + ")");
+                }
+                if (completed) {
+                    this.dictionaryTagger.tag(film);
+                    this.writeJournalRecord(film);
+                    boolean duplicate = previousStatus != ScrapStatus.COMPLETED_STATUS && this.duplicateIndex.add(film);
+                    if (!(SKIP_DUPLICATE_FILMS && duplicate)) {
+                        this.writeBulkTask(film);
+                    }
+                }
+            })).get();
+
+            this.outputStream.write(("Films retried: " + failedFilms.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Films with recovered attributes: " + recoveredFilms.sum() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Films completed: " + completedFilms.sum() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Retry time: " + ((System.currentTimeMillis() - start) / 1000) + " seconds\r\n").getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            retryPool.shutdown();
+        }
+    }
+
     /**
      * Scraps a single film from {@link FilmScraper#scrappedFilms} given its imdbID
      *
@@ -155,7 +873,7 @@ public class FilmScraper {
             if (filmIndex == -1) {
                 this.notScrappedFilms.add(imdbID);
                 outputStream.write(("ERROR scrapping film: " + imdbID + " (ref: Film not found in the list)\r\n").getBytes(StandardCharsets.UTF_8));
-                this.failedScraps++;
+                this.failedScraps.increment();
             } else {
                 this.scrapRemainingAttr(this.scrappedFilms.get(filmIndex));
             }
@@ -177,6 +895,7 @@ public class FilmScraper {
             this.outputStream.write(("-----|STARTING WEB SCRAPPING|-----\r\n").getBytes(StandardCharsets.UTF_8));
             this.outputStream.write(("-------|Mode: single scrap|-------\r\n").getBytes(StandardCharsets.UTF_8));
             this.scrapFilmByImdbID(imdbID);
+            this.retryFailedFilms();
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
@@ -201,6 +920,7 @@ public class FilmScraper {
             this.outputStream.write(("------|Mode: partial scrap|-------\r\n").getBytes(StandardCharsets.UTF_8));
 
             list.parallelStream().forEach(this::scrapFilmByImdbID);
+            this.retryFailedFilms();
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
@@ -243,10 +963,11 @@ public class FilmScraper {
         //Try to write the statistics into the Log
         try {
             double avgScrapTime;
-            if (this.successfulScraps <= 0) {
+            long successfulScraps = this.successfulScraps.sum();
+            if (successfulScraps <= 0) {
                 avgScrapTime = 0;
             } else {
-                avgScrapTime = (this.totalScrapTime / this.successfulScraps) / 1000.0;
+                avgScrapTime = (this.totalScrapTime.sum() / successfulScraps) / 1000.0;
             }
 
             this.outputStream.write(("-------------------------------------\r\n").getBytes(StandardCharsets.UTF_8));
@@ -257,12 +978,16 @@ public class FilmScraper {
             this.outputStream.write(strToBytes);
             strToBytes = ("Successful scraps: " + this.getOverallRatio(successfulScraps) + "\r\n").getBytes(StandardCharsets.UTF_8);
             this.outputStream.write(strToBytes);
-            strToBytes = ("Uncompleted scraps: " + this.getOverallRatio(uncompletedScraps) + "\r\n").getBytes(StandardCharsets.UTF_8);
+            strToBytes = ("Uncompleted scraps: " + this.getOverallRatio(this.uncompletedScraps.sum()) + "\r\n").getBytes(StandardCharsets.UTF_8);
             this.outputStream.write(strToBytes);
-            strToBytes = ("Failed scraps: " + this.getOverallRatio(failedScraps) + "\r\n").getBytes(StandardCharsets.UTF_8);
+            strToBytes = ("Failed scraps: " + this.getOverallRatio(this.failedScraps.sum()) + "\r\n").getBytes(StandardCharsets.UTF_8);
             this.outputStream.write(strToBytes);
             strToBytes = ("Non-scrapped films: " + this.notScrappedFilms + "\r\n").getBytes(StandardCharsets.UTF_8);
             this.outputStream.write(strToBytes);
+            if (this.skippedFilms.sum() > 0) {
+                strToBytes = ("Films not started (run time budget exhausted): " + this.getOverallRatio(this.skippedFilms.sum()) + "\r\n").getBytes(StandardCharsets.UTF_8);
+                this.outputStream.write(strToBytes);
+            }
 
             this.outputStream.write(("-------------------------------------\r\n").getBytes(StandardCharsets.UTF_8));
             result = true;
@@ -285,19 +1010,19 @@ public class FilmScraper {
         try {
             switch (status.getStatusCode()) {
                 case ScrapStatus.COMPLETED_STATUS:
-                    this.successfulScraps++;
+                    this.successfulScraps.increment();
                     outputStream.write(("Scrapped film: " + filmID + " (" + (timelapse / 1000) + " seconds)\r\n").getBytes(StandardCharsets.UTF_8));
                     break;
                 case ScrapStatus.ERROR_STATUS:
-                    this.failedScraps++;
+                    this.failedScraps.increment();
                     outputStream.write(("ERROR scrapping film: " + filmID + " (ref: " + status.getMessage() + ")\r\n").getBytes(StandardCharsets.UTF_8));
                     break;
                 case ScrapStatus.NOT_COMPLETED_STATUS:
-                    this.uncompletedScraps++;
+                    this.uncompletedScraps.increment();
                     outputStream.write(("INCOMPLETE scrapping film: " + filmID + " (ref: " + status.getMessage() + ")\r\n").getBytes(StandardCharsets.UTF_8));
                     break;
             }
-            this.totalScrapTime += timelapse;
+            this.totalScrapTime.add(timelapse);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -315,6 +1040,7 @@ public class FilmScraper {
         try {
             this.outputStream.write(("-----|CLOSING SCRAPPING APP|----------\r\n").getBytes(StandardCharsets.UTF_8));
             this.outputStream.write(("Total execution time: " + ((System.currentTimeMillis() - initDate) / 1000 / 60) + " minutes\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Discarded log entries (log buffer full): " + this.outputStream.getDroppedEntries() + "\r\n").getBytes(StandardCharsets.UTF_8));
             this.outputStream.write(("======================================\r\n").getBytes(StandardCharsets.UTF_8));
             result = true;
         } catch (Exception e) {
@@ -324,29 +1050,143 @@ public class FilmScraper {
     }
 
     /**
-     * Generates a json file containing insert Bulk tasks
+     * Closes the bulk segments, that have been written while scrapping, and reports the duplicate films found
      *
-     * @return True if the file could be completely written
+     * @return True if the segments could be completely written
      */
     public boolean generateBulkTasksFile() {
         boolean result = false;
         try {
-            int successfulWrites = 0;
             long start = System.currentTimeMillis();
-            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
-                    new FileOutputStream(new File(BULK_TASKS_FILE).getCanonicalPath(), true)));
-            for (Film film : this.scrappedFilms) {
-                if (film.getStatus().isCompleted()) {
-                    out.writeBytes("{\"index\":{}}\r\n");
-                    out.writeBytes(film.toJson() + "\r\n");
-                    successfulWrites++;
+            this.reportDuplicateFilms();
+            int deletedFilms = this.writeDeleteTasks();
+            this.bulkWriter.close();
+            this.exportManifest.save();
+
+            this.writeBulkStats((System.currentTimeMillis() - start), this.bulkWriter.getWrittenTasks() - deletedFilms, deletedFilms, this.bulkWriter.getSegmentCount());
+
+            System.out.println("Bulk segments generated (" + (System.currentTimeMillis() - start) + " ms)");
+            result = true;
+            this.bulkTasksExported = true;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * Writes the completed films in the binary snapshot {@link FilmScraper#FILM_SNAPSHOT}. The films of the
+     * previous snapshot that have not been scrapped again are kept, so the snapshot accumulates all the runs.
+     * The snapshot is rewritten while holding a lock on its lock file, so that several processes can merge their films into it.
+     * If it cannot be completed, the previous snapshot is left untouched (see {@link FilmSnapshot} about Windows)
+     *
+     * @return True if the snapshot could be completely written
+     */
+    public boolean generateSnapshotFile() {
+        boolean result = false;
+        long start = System.currentTimeMillis();
+        try (RandomAccessFile lockFile = new RandomAccessFile(new File(FILM_SNAPSHOT + ".lock").getCanonicalFile(), "rw")) {
+            FileLock fileLock = lockFile.getChannel().lock();
+            try {
+                Set<Integer> completedIDs = new HashSet<>();
+                FilmSnapshotWriter snapshotWriter = new FilmSnapshotWriter(FILM_SNAPSHOT);
+                int previousFilms = 0;
+                boolean written = false;
+                try {
+                    for (Film film : this.scrappedFilms) {
+                        if (film.getStatus().isCompleted()) {
+                            snapshotWriter.write(film);
+                            completedIDs.add(film.getImdbID());
+                        }
+                    }
+                    if (new File(FILM_SNAPSHOT).isFile()) {
+                        try (FilmSnapshot previous = new FilmSnapshot(FILM_SNAPSHOT)) {
+                            previousFilms = previous.size();
+                            previous.forEach(film -> {
+                                if (!completedIDs.contains(film.getImdbID())) {
+                                    try {
+                                        snapshotWriter.write(film);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                }
+                            });
+                        }
+                    }
+                    snapshotWriter.close();
+                    written = true;
+                } finally {
+                    // An incomplete snapshot is deleted, so the previous one stays in place
+                    if (!written) {
+                        snapshotWriter.discard();
+                    }
+                }
+                // The validators are saved along with the films scrapped from their pages
+                for (Film film : this.scrappedFilms) {
+                    if (film.getStatus().isCompleted() && film.getPageValidators() != null) {
+                        this.validatorStore.update(film.getImdbID(), film.getPageValidators(), film.getSubpageUrls());
+                    }
                 }
+                this.validatorStore.save();
+                System.out.println("Snapshot generated: " + completedIDs.size() + " films scrapped, " + previousFilms
+                        + " films in the previous snapshot (" + (System.currentTimeMillis() - start) + " ms)");
+                result = true;
+                this.snapshotExported = true;
+            } finally {
+                fileLock.release();
             }
-            out.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
 
-            this.writeBulkStats((System.currentTimeMillis() - start), successfulWrites);
+    /**
+     * Appends a delete task for every film of the {@link FilmScraper#exportManifest} that is no longer present in the excel file.
+     * Films are only deleted when the whole excel file was loaded
+     *
+     * @return Number of delete tasks written
+     * @throws IOException Raised if the tasks could not be written
+     */
+    private int writeDeleteTasks() throws IOException {
+        if (!this.fullSeedLoaded) {
+            return 0;
+        }
+        Set<Integer> seedIDs = new HashSet<>();
+        for (Film film : this.scrappedFilms) {
+            seedIDs.add(film.getImdbID());
+        }
+        List<Integer> removedFilms = this.exportManifest.removeMissing(seedIDs);
+        for (int imdbID : removedFilms) {
+            this.bulkWriter.appendDelete(imdbID);
+            if (this.bulkLoader != null) {
+                try {
+                    this.bulkLoader.add(BulkSegmentWriter.deleteAction(imdbID), null);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return removedFilms.size();
+    }
 
-            System.out.println("Bulk file generated (" + (System.currentTimeMillis() - start) + " ms)");
+    /**
+     * Reports, in the {@link FilmScraper#SCRAP_LOG}, the clusters of films whose synopsis and plot keywords are
+     * near-duplicates. The clusters are obtained from {@link FilmScraper#duplicateIndex}
+     *
+     * @return True if the clusters could be written in the log. False otherwise
+     */
+    private boolean reportDuplicateFilms() {
+        boolean result = false;
+        List<List<Integer>> clusters = this.duplicateIndex.getCandidateClusters();
+        try {
+            this.outputStream.write(("-----|DUPLICATE CANDIDATES|----------\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Indexed films: " + this.duplicateIndex.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.write(("Candidate clusters: " + clusters.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            for (List<Integer> cluster : clusters) {
+                this.outputStream.write(("Duplicate cluster: " + cluster + "\r\n").getBytes(StandardCharsets.UTF_8));
+            }
+            this.outputStream.write(("-------------------------------------\r\n").getBytes(StandardCharsets.UTF_8));
             result = true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -357,16 +1197,24 @@ public class FilmScraper {
     /**
      * Adds to the {@link FilmScraper#SCRAP_LOG} the statistics obtained from creating the JSON Bulk file
      *
-     * @param timelapse        time elapses scrapping the necessary information
-     * @param successfulWrites number of tasks successfully written in the {@link FilmScraper#SCRAP_LOG}
+     * @param timelapse        time elapses closing the bulk segments
+     * @param successfulWrites number of index tasks successfully written in the bulk segments
+     * @param deleteTasks      number of delete tasks written in the bulk segments
+     * @param segments         number of segments written
      * @return True if the statistics could be written in the log. False otherwise
      */
-    private boolean writeBulkStats(long timelapse, int successfulWrites) {
+    private boolean writeBulkStats(long timelapse, int successfulWrites, int deleteTasks, int segments) {
         boolean result = false;
         //Try to write the statistics into the Log
         try {
             this.outputStream.write(("-----|BULK TASK FILE|----------------\r\n").getBytes(StandardCharsets.UTF_8));
-            byte[] strToBytes = ("Number of tasks created: " + successfulWrites + "/" + this.successfulScraps + "\r\n").getBytes(StandardCharsets.UTF_8);
+            byte[] strToBytes = ("Number of tasks created: " + successfulWrites + "/" + this.successfulScraps.sum() + "\r\n").getBytes(StandardCharsets.UTF_8);
+            this.outputStream.write(strToBytes);
+            strToBytes = ("Unchanged films (not exported): " + this.unchangedFilms.sum() + "\r\n").getBytes(StandardCharsets.UTF_8);
+            this.outputStream.write(strToBytes);
+            strToBytes = ("Number of delete tasks: " + deleteTasks + "\r\n").getBytes(StandardCharsets.UTF_8);
+            this.outputStream.write(strToBytes);
+            strToBytes = ("Number of segments: " + segments + "\r\n").getBytes(StandardCharsets.UTF_8);
             this.outputStream.write(strToBytes);
             strToBytes = ("Writing time: " + (timelapse / 1000.0) + " seconds\r\n").getBytes(StandardCharsets.UTF_8);
             this.outputStream.write(strToBytes);
@@ -0,0 +1,258 @@
+package filmdb.scrappers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reusable buffers to read the body of a page. The body is read in chunks and decoded as it arrives, so the transfer
+ * can be stopped as soon as the content needed from the page has been received (see {@link StopRule}), or when the page
+ * reaches a maximum size. The decoded page is handed to the parser through {@link PageBuffer#reader()}, without copying it.
+ * <p>
+ * Buffers are taken from a bounded pool shared by all the threads ({@link PageBuffer#acquire()}) and must be
+ * returned to it ({@link PageBuffer#release()}) once the page has been parsed.
+ */
+class PageBuffer {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int INITIAL_PAGE_CHARS = 64 * 1024;
+    private static final int POOL_SIZE = 64;
+    // Buffers that grew beyond this size are not returned to the pool, so that an unusual page does not stay in memory
+    private static final int MAX_POOLED_CHARS = 1024 * 1024;
+    private static final ArrayBlockingQueue<PageBuffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * Content after which nothing else is needed from a page: every marker has been received, followed by the closing tag
+     * (i.e. the end of the block that contains the last marker)
+     */
+    static class StopRule {
+        private final String closingTag;
+        private final String[] markers;
+
+        /**
+         * Constructor to initialize a new {@link StopRule}
+         *
+         * @param closingTag Tag that must follow the last marker received (i.e. "&lt;/div&gt;")
+         * @param markers    Strings that identify the elements needed from the page, in any order
+         */
+        StopRule(String closingTag, String... markers) {
+            this.closingTag = closingTag;
+            this.markers = markers;
+        }
+    }
+
+    private final byte[] bytes;
+    private final ByteBuffer input;
+    private final CharBuffer decoded;
+    private final StringBuilder page;
+    private long readBytes;
+    private boolean stopped;
+    private boolean truncated;
+
+    private PageBuffer() {
+        this.bytes = new byte[CHUNK_SIZE];
+        this.input = ByteBuffer.wrap(this.bytes);
+        this.decoded = CharBuffer.allocate(CHUNK_SIZE);
+        this.page = new StringBuilder(INITIAL_PAGE_CHARS);
+    }
+
+    /**
+     * Takes a buffer from the pool, or creates a new one if the pool is empty
+     */
+    static PageBuffer acquire() {
+        PageBuffer buffer = POOL.poll();
+        return buffer == null ? new PageBuffer() : buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool. The buffer, and the readers obtained from it, must not be used afterwards
+     */
+    void release() {
+        if (this.page.capacity() <= MAX_POOLED_CHARS) {
+            this.page.setLength(0);
+            POOL.offer(this);
+        }
+    }
+
+    /**
+     * Number of bytes read from the stream in the last call to {@link PageBuffer#read(InputStream, Charset, StopRule, int)}
+     */
+    long getReadBytes() {
+        return readBytes;
+    }
+
+    /**
+     * Checks if the last page was stopped by its {@link StopRule}, before the end of the body
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Checks if the last page was cut at the maximum size, before the end of the body
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Reads and decodes a body until its end, until the content required by the rule has been received, or until
+     * the maximum size has been read. The stream is not closed
+     *
+     * @param in       Body of the response
+     * @param charset  Charset of the body. Malformed bytes are replaced
+     * @param rule     {@link StopRule} of the page. Null to read the whole body
+     * @param maxBytes Maximum number of bytes read
+     * @throws IOException Raised if the body could not be read
+     */
+    void read(InputStream in, Charset charset, StopRule rule, int maxBytes) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.page.setLength(0);
+        this.input.clear();
+        this.readBytes = 0;
+        this.stopped = false;
+        this.truncated = false;
+        int[] markerEnds = new int[rule == null ? 0 : rule.markers.length];
+        int longestMarker = 0;
+        if (rule != null) {
+            for (String marker : rule.markers) {
+                longestMarker = Math.max(longestMarker, marker.length());
+            }
+            longestMarker = Math.max(longestMarker, rule.closingTag.length());
+        }
+        while (true) {
+            int space = (int) Math.min(this.input.remaining(), maxBytes - this.readBytes);
+            if (space <= 0) {
+                // At the limit, the rest of the body is not read
+                this.truncated = in.read() >= 0;
+                this.input.flip();
+                this.decode(decoder, true);
+                return;
+            }
+            int count = in.read(this.bytes, this.input.position(), space);
+            if (count < 0) {
+                this.input.flip();
+                this.decode(decoder, true);
+                return;
+            }
+            this.readBytes += count;
+            this.input.position(this.input.position() + count);
+            this.input.flip();
+            // Markers may be split between chunks, so the tail of the previous chunk is searched again
+            int searchFrom = Math.max(0, this.page.length() - longestMarker);
+            this.decode(decoder, false);
+            // Bytes of an incomplete character are kept for the next chunk
+            this.input.compact();
+            if (rule != null && this.isComplete(rule, markerEnds, searchFrom)) {
+                this.stopped = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Provides the decoded page of the last call to {@link PageBuffer#read(InputStream, Charset, StopRule, int)}
+     *
+     * @return A {@link Reader} over the page, valid until the buffer is released
+     */
+    Reader reader() {
+        // The parser of Jsoup requires a reader that supports mark()
+        return new Reader() {
+            private int position = 0;
+            private int mark = 0;
+
+            @Override
+            public boolean markSupported() {
+                return true;
+            }
+
+            @Override
+            public void mark(int readAheadLimit) {
+                this.mark = this.position;
+            }
+
+            @Override
+            public void reset() {
+                this.position = this.mark;
+            }
+
+            @Override
+            public long skip(long count) {
+                long skipped = Math.max(0, Math.min(count, PageBuffer.this.page.length() - this.position));
+                this.position += (int) skipped;
+                return skipped;
+            }
+
+            @Override
+            public int read(char[] chars, int offset, int length) {
+                int available = PageBuffer.this.page.length() - this.position;
+                if (available <= 0) {
+                    return -1;
+                }
+                int count = Math.min(length, available);
+                PageBuffer.this.page.getChars(this.position, this.position + count, chars, offset);
+                this.position += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Decodes the bytes of the input buffer and appends them to the page
+     */
+    private void decode(CharsetDecoder decoder, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(this.input, this.decoded, endOfInput);
+            this.drainDecoded();
+        } while (result.isOverflow());
+        if (endOfInput) {
+            while (decoder.flush(this.decoded).isOverflow()) {
+                this.drainDecoded();
+            }
+            this.drainDecoded();
+        }
+    }
+
+    private void drainDecoded() {
+        this.decoded.flip();
+        this.page.append(this.decoded);
+        this.decoded.clear();
+    }
+
+    /**
+     * Checks if every marker of the rule has been received, followed by its closing tag
+     *
+     * @param rule       {@link StopRule} of the page
+     * @param markerEnds End of every marker in the page (0 if it has not been found yet), updated by this call
+     * @param searchFrom Position of the page from which the new content is searched
+     * @return True if nothing else is needed from the page
+     */
+    private boolean isComplete(StopRule rule, int[] markerEnds, int searchFrom) {
+        int lastMarkerEnd = 0;
+        boolean allFound = true;
+        for (int i = 0; i < rule.markers.length; i++) {
+            if (markerEnds[i] == 0) {
+                int index = this.page.indexOf(rule.markers[i], searchFrom);
+                if (index < 0) {
+                    allFound = false;
+                    continue;
+                }
+                markerEnds[i] = index + rule.markers[i].length();
+            }
+            lastMarkerEnd = Math.max(lastMarkerEnd, markerEnds[i]);
+        }
+        return allFound && this.page.indexOf(rule.closingTag, lastMarkerEnd) >= 0;
+    }
+}
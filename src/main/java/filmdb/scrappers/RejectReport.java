@@ -0,0 +1,138 @@
+package filmdb.scrappers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import filmdb.entities.FilmValidator;
+import filmdb.metrics.MetricsRegistry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Report of the rows of the seed file rejected by the {@link FilmValidator}. Every rejected row is written as a JSON
+ * line with its number, the result code and reason of the rejection, and the cells that could be read, so that the
+ * seed file can be fixed. Lines are buffered and written in batches of {@link RejectReport#BATCH_SIZE} rows.
+ * The report is written in a temporary file that replaces the previous report when it is closed
+ */
+public class RejectReport implements Closeable {
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * A rejected row, as written in the report
+     */
+    private static class RejectedRow {
+        private final int row;
+        private final int code;
+        private final String reason;
+        private final Integer imdbID;
+        private final String url;
+        private final String title;
+        private final Float avgScore;
+        private final String genres;
+
+        private RejectedRow(int row, int code, int imdbID, String url, String title, float avgScore, String genres) {
+            this.row = row;
+            this.code = code;
+            this.reason = FilmValidator.getReason(code);
+            this.imdbID = imdbID > 0 ? imdbID : null;
+            this.url = url;
+            this.title = title;
+            this.avgScore = Float.isNaN(avgScore) ? null : avgScore;
+            this.genres = genres;
+        }
+    }
+
+    private final File file;
+    private final File temporaryFile;
+    private final OutputStream out;
+    private final Gson gson;
+    private final StringBuilder batch;
+    private final int[] rejectsByCode;
+    private int batchRows;
+    private int rejectedRows;
+
+    /**
+     * Constructor to initialize a new {@link RejectReport}
+     *
+     * @param path Route to the report file
+     * @throws IOException Raised if the temporary file could not be created
+     */
+    public RejectReport(String path) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        this.temporaryFile = new File(parent, this.file.getName() + ".tmp");
+        this.out = new FileOutputStream(this.temporaryFile);
+        this.gson = new GsonBuilder().disableHtmlEscaping().create();
+        this.batch = new StringBuilder();
+        this.rejectsByCode = new int[FilmValidator.MISSING_GENRES + 1];
+        this.batchRows = 0;
+        this.rejectedRows = 0;
+    }
+
+    public int getRejectedRows() {
+        return rejectedRows;
+    }
+
+    /**
+     * Records a rejected row. The cells that could not be read are passed as null (or NaN, or -1 for the imdbID)
+     *
+     * @param row  Number of the row in the first sheet
+     * @param code Result code of the {@link FilmValidator}
+     * @throws IOException Raised if the batch could not be written
+     */
+    public void reject(int row, int code, int imdbID, String url, String title, float avgScore, String genres) throws IOException {
+        this.batch.append(this.gson.toJson(new RejectedRow(row, code, imdbID, url, title, avgScore, genres))).append('\n');
+        this.rejectedRows++;
+        if (code >= 0 && code < this.rejectsByCode.length) {
+            this.rejectsByCode[code]++;
+        }
+        MetricsRegistry.getDefault().counter("filmdb_rejected_rows_total", "reason", FilmValidator.getReason(code)).increment();
+        if (++this.batchRows >= BATCH_SIZE) {
+            this.flushBatch();
+        }
+    }
+
+    /**
+     * Provides the number of rejected rows of every reason
+     *
+     * @return A String like "invalidReleaseYear=12, missingGenres=3". Empty if no row was rejected
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (int code = 0; code < this.rejectsByCode.length; code++) {
+            if (this.rejectsByCode[code] > 0) {
+                summary.append(summary.length() == 0 ? "" : ", ").append(FilmValidator.getReason(code)).append('=').append(this.rejectsByCode[code]);
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Writes the pending rows and replaces the previous report
+     *
+     * @throws IOException Raised if the report could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        this.flushBatch();
+        this.out.close();
+        Files.move(this.temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void flushBatch() throws IOException {
+        if (this.batchRows > 0) {
+            this.out.write(this.batch.toString().getBytes(StandardCharsets.UTF_8));
+            this.batch.setLength(0);
+            this.batchRows = 0;
+        }
+    }
+}
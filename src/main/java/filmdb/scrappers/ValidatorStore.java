@@ -0,0 +1,208 @@
+package filmdb.scrappers;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persisted map of the HTTP validators (ETag and Last-Modified headers) of the pages every film was scrapped from,
+ * along with the URLs of its subpages. It is used to refresh the films with conditional requests: a page that has not
+ * changed is answered with "304 Not Modified" and no content, so its attributes are kept from the previous scrap.
+ * The validators of a film must only be updated along with the scrapped film (i.e. in the snapshot), so that the
+ * attributes kept for an unchanged page are always the ones scrapped from it.
+ * Several processes can share the same store: every process only saves the films it has updated.
+ */
+public class ValidatorStore {
+
+    /**
+     * Validators of a page, as received in the headers of its last complete response. Any of them may be null
+     */
+    public static class Validator {
+        private final String etag;
+        private final String lastModified;
+
+        public Validator(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Checks if the validator can be used in a conditional request
+         *
+         * @return True if, at least, one of the headers was received
+         */
+        public boolean isValid() {
+            return this.etag != null || this.lastModified != null;
+        }
+    }
+
+    /**
+     * Validators of the pages of a film, by URL, and URLs of its subpages, by keyword
+     */
+    private static class FilmValidators {
+        private Map<String, Validator> pages;
+        private Map<String, String> subpageUrls;
+    }
+
+    private final File file;
+    private final Map<Integer, FilmValidators> films;
+    // Films updated by this process, merged into the store when it is saved
+    private final Set<Integer> updatedIDs;
+
+    /**
+     * Constructor to initialize a new {@link ValidatorStore}. If the file exists, the validators of the previous runs are loaded
+     *
+     * @param path Route to the JSON store file
+     * @throws IOException Raised if the existing store could not be read
+     */
+    public ValidatorStore(String path) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        this.films = new ConcurrentHashMap<>();
+        this.updatedIDs = ConcurrentHashMap.newKeySet();
+        this.films.putAll(this.read());
+    }
+
+    public int size() {
+        return this.films.size();
+    }
+
+    /**
+     * Checks if the pages of a film have validators, so that it can be refreshed with conditional requests
+     *
+     * @param imdbID Id of the film
+     * @return True if the film has, at least, one page with validators
+     */
+    public boolean contains(int imdbID) {
+        FilmValidators film = this.films.get(imdbID);
+        return film != null && film.pages != null && !film.pages.isEmpty();
+    }
+
+    /**
+     * Provides the validators of the pages of a film
+     *
+     * @param imdbID Id of the film
+     * @return A Map with the {@link Validator} of every page, by URL. Empty if the film has no validators
+     */
+    public Map<String, Validator> getValidators(int imdbID) {
+        FilmValidators film = this.films.get(imdbID);
+        return film == null || film.pages == null ? new HashMap<>() : new HashMap<>(film.pages);
+    }
+
+    /**
+     * Provides the URLs of the subpages of a film, so that they can be requested without downloading the main page
+     *
+     * @param imdbID Id of the film
+     * @return A Map with the URL of every subpage, by keyword. Empty if they are unknown
+     */
+    public Map<String, String> getSubpageUrls(int imdbID) {
+        FilmValidators film = this.films.get(imdbID);
+        return film == null || film.subpageUrls == null ? new HashMap<>() : new HashMap<>(film.subpageUrls);
+    }
+
+    /**
+     * Records the validators of the pages downloaded for a film. The validators of the pages that were not downloaded
+     * (i.e. unchanged pages) are kept
+     *
+     * @param imdbID      Id of the film
+     * @param pages       {@link Validator} of every page downloaded, by URL
+     * @param subpageUrls URLs of the subpages of the film, by keyword. Null or empty to keep the previous ones
+     */
+    public void update(int imdbID, Map<String, Validator> pages, Map<String, String> subpageUrls) {
+        this.films.compute(imdbID, (id, previous) -> {
+            FilmValidators film = new FilmValidators();
+            film.pages = new TreeMap<>();
+            film.subpageUrls = new TreeMap<>();
+            if (previous != null) {
+                if (previous.pages != null) {
+                    film.pages.putAll(previous.pages);
+                }
+                if (previous.subpageUrls != null) {
+                    film.subpageUrls.putAll(previous.subpageUrls);
+                }
+            }
+            for (Map.Entry<String, Validator> page : pages.entrySet()) {
+                if (page.getValue().isValid()) {
+                    film.pages.put(page.getKey(), page.getValue());
+                } else {
+                    film.pages.remove(page.getKey());
+                }
+            }
+            if (subpageUrls != null) {
+                film.subpageUrls.putAll(subpageUrls);
+            }
+            return film;
+        });
+        this.updatedIDs.add(imdbID);
+    }
+
+    /**
+     * Writes the store. The films updated by this process are merged into the current content of the store, while
+     * holding a lock on its lock file, so that the films saved meanwhile by other processes are kept.
+     * The content is written in a temporary file that replaces the previous store
+     *
+     * @throws IOException Raised if the store could not be written
+     */
+    public void save() throws IOException {
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        File lockFile = new File(parent, this.file.getName() + ".lock");
+        try (RandomAccessFile lock = new RandomAccessFile(lockFile, "rw")) {
+            FileLock fileLock = lock.getChannel().lock();
+            try {
+                Map<Integer, FilmValidators> merged = new TreeMap<>(this.read());
+                for (Integer imdbID : new HashSet<>(this.updatedIDs)) {
+                    FilmValidators film = this.films.get(imdbID);
+                    if (film != null) {
+                        merged.put(imdbID, film);
+                    }
+                }
+                File temporary = new File(parent, this.file.getName() + ".tmp");
+                try (FileOutputStream out = new FileOutputStream(temporary)) {
+                    out.write(new Gson().toJson(merged).getBytes(StandardCharsets.UTF_8));
+                }
+                Files.move(temporary.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    /**
+     * Reads the content of the store file
+     *
+     * @return A Map with the validators of every film. Empty if the file does not exist
+     */
+    private Map<Integer, FilmValidators> read() throws IOException {
+        if (!this.file.isFile()) {
+            return new TreeMap<>();
+        }
+        String json = new String(Files.readAllBytes(this.file.toPath()), StandardCharsets.UTF_8);
+        Map<Integer, FilmValidators> content = new Gson().fromJson(json, new TypeToken<Map<Integer, FilmValidators>>() {
+        }.getType());
+        return content == null ? new TreeMap<>() : content;
+    }
+}
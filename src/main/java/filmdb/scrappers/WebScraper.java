@@ -1,27 +1,495 @@
 package filmdb.scrappers;
 
+import filmdb.entities.ScrapStatus;
+import filmdb.metrics.MetricsRegistry;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
 import org.jsoup.select.Elements;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class WebScraper {
-    private final static String IMDb_ROOT = "https://www.imdb.com";
+    /**
+     * System property with the root URL of the site to scrap instead of IMDb (i.e. "http://localhost:8080", the
+     * address of a {@link filmdb.loadtest.MockImdbServer}). It is read once, when this class is loaded
+     */
+    public static final String BASE_URL_PROPERTY = "filmdb.imdb.baseUrl";
+    /**
+     * Deadline of the scrapers whose pages can be requested for as long as needed
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+    private final static String IMDb_DEFAULT_ROOT = "https://www.imdb.com";
+    private final static String IMDb_ROOT = WebScraper.getBaseUrl();
+    // Root of the IMDb URLs found in the excel file, replaced by IMDb_ROOT before downloading a page
+    private final static Pattern IMDb_URL_ROOT = Pattern.compile("^https?://(www\\.)?imdb\\.com");
     /**
      * To see more about this regex visit https://regex101.com/library/yL3zV3
      */
     private final static String NON_ASCII_REGEX = "[^\\x00-\\x7F|\\s]";
+    private final static int HTTP_NOT_MODIFIED = 304;
+    private final static int FETCH_TIMEOUT = 30 * 1000; // measured in milliseconds
+    // Pages are cut at this size, as Jsoup does by default
+    private final static int MAX_PAGE_BYTES = 2 * 1024 * 1024;
+    /**
+     * Content after which the download of a page is stopped, by page type: every attribute scrapped from the page is
+     * contained in the elements identified by the markers. The main page needs the release date, the country, the
+     * languages and the links to the subpages, which are at the top of the page. Pages without a rule are read
+     * completely, as well as the pages where any marker is missing
+     */
+    private final static Map<String, PageBuffer.StopRule> STOP_RULES = WebScraper.createStopRules();
+
+    /**
+     * Raised when a conditional request is answered with "304 Not Modified": the page has not changed since the
+     * validators were received, and its content is not sent again
+     */
+    private static class PageNotModifiedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private PageNotModifiedException(String url) {
+            super("Page not modified: " + url);
+        }
+    }
+
+    /**
+     * Raised when a page is going to be requested after the deadline of the film: the attribute is recorded as failed,
+     * without sending the request, so that it can be retried later
+     */
+    private static class DeadlineExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private DeadlineExceededException(String url) {
+            super("Deadline exceeded before requesting: " + url);
+        }
+    }
 
     private final String url;
-    private final Document doc;
+    private Document doc;
+    // Subpage URLs found in the main page, by keyword
+    private final Map<String, String> subpageUrls;
+    // Subpages already downloaded, by keyword. Only used when scrapping pages that are already available
+    private final Map<String, Document> subpageDocuments;
+    // Attributes that could not be scrapped because a page could not be downloaded (see ScrapStatus)
+    private int failedAttributes;
+    // True if the main page could not be downloaded, so that the subpages could not be found either
+    private boolean documentUnavailable;
+    // Validators of the previous scrap, by URL, sent in conditional requests. Empty to download every page
+    private final Map<String, ValidatorStore.Validator> knownValidators;
+    // Validators received for the pages downloaded by this scraper and its subpages, by URL
+    private final Map<String, ValidatorStore.Validator> fetchedValidators;
+    // Requests sent by this scraper and its subpages
+    private final AtomicInteger requestCount;
+    // Attributes whose page has not changed since the validators of the previous scrap were received
+    private int notModifiedAttributes;
+    // True if the main page has not changed, so that its content (and the subpages not known yet) is not available
+    private boolean documentNotModified;
+    // Time (see System#nanoTime()) after which no page is requested, and at which the request in progress is cancelled
+    private long deadline;
+    // True once a request of this scraper or its subpages has been cancelled, or not sent, because of the deadline
+    private final AtomicBoolean deadlineExceeded;
 
     public WebScraper(String url) throws Exception {
+        this(url, NO_DEADLINE);
+    }
+
+    /**
+     * Constructor that downloads the main page of a film whose pages must be scrapped before a deadline. Every request
+     * times out, at the latest, at the deadline, and no request is sent after it
+     *
+     * @param url      URL of the film's main page
+     * @param deadline Time, as given by {@link System#nanoTime()}, at which the scrap of the film ends. {@link WebScraper#NO_DEADLINE} for no limit
+     * @throws Exception Raised if the main page could not be downloaded
+     */
+    public WebScraper(String url, long deadline) throws Exception {
         this.url = url;
-        this.doc = Jsoup.connect(url).get();
+        this.subpageUrls = new HashMap<>();
+        this.subpageDocuments = Collections.emptyMap();
+        this.failedAttributes = 0;
+        this.knownValidators = Collections.emptyMap();
+        this.fetchedValidators = new HashMap<>();
+        this.requestCount = new AtomicInteger();
+        this.deadline = deadline;
+        this.deadlineExceeded = new AtomicBoolean();
+        this.doc = this.fetch(url);
+
+    }
+
+    /**
+     * Constructor that does not download the main page until it is needed. The subpages whose URL is already
+     * known are downloaded directly, so that a film can be partially scrapped again with the minimum number of requests
+     *
+     * @param url         URL of the film's main page
+     * @param subpageUrls URLs of the subpages found in a previous scrap, by keyword
+     */
+    public WebScraper(String url, Map<String, String> subpageUrls) {
+        this(url, subpageUrls, Collections.<String, ValidatorStore.Validator>emptyMap());
+    }
+
+    /**
+     * Constructor to refresh a film scrapped before. Like {@link WebScraper#WebScraper(String, Map)}, the main page
+     * is not downloaded until it is needed, and every page with validators is requested conditionally: the attributes
+     * of the pages that have not changed are reported by {@link WebScraper#getNotModifiedAttributes()} instead of scrapped
+     *
+     * @param url         URL of the film's main page
+     * @param subpageUrls URLs of the subpages found in a previous scrap, by keyword
+     * @param validators  Validators of the pages received in a previous scrap, by URL
+     */
+    public WebScraper(String url, Map<String, String> subpageUrls, Map<String, ValidatorStore.Validator> validators) {
+        this.url = url;
+        this.subpageUrls = new HashMap<>(subpageUrls);
+        this.subpageDocuments = Collections.emptyMap();
+        this.failedAttributes = 0;
+        this.knownValidators = validators;
+        this.fetchedValidators = new HashMap<>();
+        this.requestCount = new AtomicInteger();
+        this.deadline = NO_DEADLINE;
+        this.deadlineExceeded = new AtomicBoolean();
+        this.doc = null;
+    }
+
+    /**
+     * Constructor of the scraper of a subpage, that shares the validators and the request count of the main page
+     *
+     * @param url    URL of the subpage
+     * @param parent {@link WebScraper} of the film's main page
+     */
+    private WebScraper(String url, WebScraper parent) {
+        this.url = url;
+        this.subpageUrls = new HashMap<>();
+        this.subpageDocuments = Collections.emptyMap();
+        this.failedAttributes = 0;
+        this.knownValidators = parent.knownValidators;
+        this.fetchedValidators = parent.fetchedValidators;
+        this.requestCount = parent.requestCount;
+        this.deadline = parent.deadline;
+        this.deadlineExceeded = parent.deadlineExceeded;
+        this.doc = null;
+    }
+
+    /**
+     * Constructor to scrap pages that have already been downloaded (i.e. saved pages or benchmark fixtures).
+     * Subpages that are not provided are downloaded as usual
+     *
+     * @param url              URL of the film's main page
+     * @param document         Parsed main page
+     * @param subpageDocuments Parsed subpages, by keyword (i.e. "fullcredits", "plotsummary", "keywords", "locations")
+     */
+    public WebScraper(String url, Document document, Map<String, Document> subpageDocuments) {
+        this.url = url;
+        this.subpageUrls = new HashMap<>();
+        this.subpageDocuments = subpageDocuments;
+        this.failedAttributes = 0;
+        this.knownValidators = Collections.emptyMap();
+        this.fetchedValidators = new HashMap<>();
+        this.requestCount = new AtomicInteger();
+        this.deadline = NO_DEADLINE;
+        this.deadlineExceeded = new AtomicBoolean();
+        this.doc = document;
+    }
+
+    /**
+     * Provides the main page, downloading it if it has not been downloaded yet
+     *
+     * @return The parsed main page
+     * @throws IOException Raised if the page could not be downloaded
+     */
+    private Document getDocument() throws IOException {
+        if (this.doc == null) {
+            // An unchanged main page is only requested once
+            if (this.documentNotModified) {
+                throw new PageNotModifiedException(this.url);
+            }
+            try {
+                this.doc = this.fetch(this.url);
+            } catch (PageNotModifiedException e) {
+                this.documentNotModified = true;
+                throw e;
+            } catch (IOException e) {
+                this.documentUnavailable = true;
+                throw e;
+            }
+        }
+        return this.doc;
+    }
+
+    /**
+     * Downloads and parses a page. The download and parse times are recorded, by page type, in the default
+     * {@link MetricsRegistry}, along with the bytes downloaded and the HTTP status codes received.
+     * If the page has validators, it is requested conditionally, and it is not parsed if it has not changed
+     *
+     * @param url URL of the page
+     * @return The parsed page
+     * @throws IOException Raised if the page could not be downloaded ({@link PageNotModifiedException} if it has not changed)
+     */
+    private Document fetch(String url) throws IOException {
+        ValidatorStore.Validator validator = this.knownValidators.get(url);
+        String pageUrl = url;
+        url = WebScraper.toBaseUrl(url);
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        String pageType = WebScraper.getPageType(url);
+        long start = System.nanoTime();
+        long timeout = FETCH_TIMEOUT;
+        if (this.deadline != NO_DEADLINE) {
+            timeout = Math.min(timeout, TimeUnit.NANOSECONDS.toMillis(this.deadline - start));
+            // Once a request has been cut short, the little time left is not spent on the rest of the pages
+            if (timeout <= 0 || this.deadlineExceeded.get()) {
+                this.deadlineExceeded.set(true);
+                metrics.counter("filmdb_cancelled_fetches_total", "page", pageType).increment();
+                throw new DeadlineExceededException(url);
+            }
+        }
+        Connection.Response response;
+        try {
+            // The timeout of Jsoup covers the connection and the whole body, so a request never outlasts the deadline
+            // (the response headers are only waited for half of it)
+            Connection connection = Jsoup.connect(url).timeout((int) timeout).maxBodySize(0);
+            if (validator != null && validator.getEtag() != null) {
+                connection.header("If-None-Match", validator.getEtag());
+            }
+            if (validator != null && validator.getLastModified() != null) {
+                connection.header("If-Modified-Since", validator.getLastModified());
+            }
+            this.requestCount.incrementAndGet();
+            response = connection.execute();
+        } catch (HttpStatusException e) {
+            metrics.counter("filmdb_http_responses_total", "code", String.valueOf(e.getStatusCode())).increment();
+            throw e;
+        } catch (IOException e) {
+            this.recordFetchError(pageType, e, timeout);
+            throw e;
+        } finally {
+            metrics.histogram("filmdb_fetch_seconds", "page", pageType).recordSince(start);
+        }
+        metrics.counter("filmdb_http_responses_total", "code", String.valueOf(response.statusCode())).increment();
+        if (response.statusCode() == HTTP_NOT_MODIFIED) {
+            throw new PageNotModifiedException(url);
+        }
+        PageBuffer buffer = PageBuffer.acquire();
+        try {
+            try (InputStream body = response.bodyStream()) {
+                buffer.read(body, WebScraper.getCharset(response), STOP_RULES.get(pageType), MAX_PAGE_BYTES);
+            } catch (IOException e) {
+                this.recordFetchError(pageType, e, timeout);
+                throw e;
+            }
+            metrics.counter("filmdb_fetched_bytes_total", "page", pageType).add(buffer.getReadBytes());
+            if (buffer.isStopped()) {
+                metrics.counter("filmdb_stopped_pages_total", "page", pageType).increment();
+            } else if (buffer.isTruncated()) {
+                metrics.counter("filmdb_truncated_pages_total", "page", pageType).increment();
+            }
+            start = System.nanoTime();
+            Document document = Parser.htmlParser().parseInput(buffer.reader(), response.url().toExternalForm());
+            metrics.histogram("filmdb_parse_seconds", "page", pageType).recordSince(start);
+            // The validators are only kept once the page has been read and parsed, so that a page that failed is
+            // downloaded again by the next refresh instead of being answered as not modified
+            synchronized (this.fetchedValidators) {
+                this.fetchedValidators.put(pageUrl, new ValidatorStore.Validator(response.header("ETag"), response.header("Last-Modified")));
+            }
+            return document;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Counts a failed download in the default {@link MetricsRegistry}. A timeout shortened by the deadline means that
+     * the request was cancelled because the deadline expired
+     *
+     * @param pageType Type of the page (see {@link WebScraper#getPageType(String)})
+     * @param e        Exception raised by the request
+     * @param timeout  Timeout of the request, measured in milliseconds
+     */
+    private void recordFetchError(String pageType, IOException e, long timeout) {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.counter("filmdb_fetch_errors_total", "page", pageType).increment();
+        if (e instanceof SocketTimeoutException && timeout < FETCH_TIMEOUT) {
+            this.deadlineExceeded.set(true);
+            metrics.counter("filmdb_cancelled_fetches_total", "page", pageType).increment();
+        }
+    }
+
+    /**
+     * Provides the charset declared in the Content-Type of a response
+     *
+     * @param response Response of a page
+     * @return The declared charset, or UTF-8 if it is missing or not supported
+     */
+    private static Charset getCharset(Connection.Response response) {
+        try {
+            if (response.charset() != null) {
+                return Charset.forName(response.charset());
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("UNSUCCESSFUL function 'getCharset' (ref: " + e + ")");
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Map<String, PageBuffer.StopRule> createStopRules() {
+        Map<String, PageBuffer.StopRule> rules = new HashMap<>();
+        rules.put("main", new PageBuffer.StopRule("</div>", "See more release dates", "country_of_origin=", "primary_language=",
+                "fullcredits", "plotsummary", "keywords?", "locations?"));
+        rules.put("fullcredits", new PageBuffer.StopRule("</table>", "cast_list"));
+        rules.put("plotsummary", new PageBuffer.StopRule("</ul>", "plot-synopsis-content"));
+        rules.put("keywords", new PageBuffer.StopRule("</table>", "keywords_content"));
+        return rules;
+    }
+
+    /**
+     * Provides the {@link WebScraper} of a subpage, downloading it unless it was provided in the constructor
+     *
+     * @param keyword Keyword contained in the URL of the subpage
+     * @return The {@link WebScraper} of the subpage
+     * @throws Exception Raised if the subpage could not be downloaded
+     */
+    private WebScraper openSubpage(String keyword) throws Exception {
+        Document subpage = this.subpageDocuments.get(keyword);
+        if (subpage != null) {
+            return new WebScraper(this.getUrlByKeyword(keyword), subpage, Collections.<String, Document>emptyMap());
+        }
+        String subpageUrl = this.getUrlByKeyword(keyword);
+        if (subpageUrl == null) {
+            throw new Exception("Subpage '" + keyword + "' not found");
+        }
+        // The subpage is downloaded at once, so that a failed or unchanged page is reported to the attribute being scrapped
+        WebScraper subpageScraper = new WebScraper(subpageUrl, this);
+        subpageScraper.getDocument();
+        return subpageScraper;
+    }
+
+    /**
+     * Provides the root URL of the scrapped site: the value of {@link WebScraper#BASE_URL_PROPERTY} if it is set,
+     * or the IMDb site otherwise
+     *
+     * @return The root URL, without a trailing slash
+     */
+    public static String getBaseUrl() {
+        String baseUrl = System.getProperty(BASE_URL_PROPERTY, IMDb_DEFAULT_ROOT).trim();
+        while (baseUrl.endsWith("/")) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+        }
+        return baseUrl;
+    }
+
+    /**
+     * Points an IMDb URL (i.e. the URL of a film found in the excel file) to the scrapped site
+     *
+     * @param url URL of an IMDb page
+     * @return The same URL, with its root replaced by {@link WebScraper#IMDb_ROOT}. Other URLs are returned unchanged
+     */
+    public static String toBaseUrl(String url) {
+        return IMDb_URL_ROOT.matcher(url).replaceFirst(Matcher.quoteReplacement(IMDb_ROOT));
+    }
+
+    /**
+     * Classifies a film's page by the subpage keyword contained in its URL
+     *
+     * @param url URL of the page
+     * @return The keyword of the subpage (i.e. "keywords"), or "main" for the film's main page
+     */
+    private static String getPageType(String url) {
+        for (String keyword : new String[]{"fullcredits", "plotsummary", "keywords", "locations"}) {
+            if (url.contains("/" + keyword)) {
+                return keyword;
+            }
+        }
+        return "main";
+    }
 
+    public Map<String, String> getSubpageUrls() {
+        return subpageUrls;
+    }
+
+    /**
+     * Provides the attributes that could not be scrapped because a page could not be downloaded
+     *
+     * @return A bit mask of {@link ScrapStatus} attributes
+     */
+    public int getFailedAttributes() {
+        return failedAttributes;
+    }
+
+    /**
+     * Provides the attributes that were not scrapped because their page has not changed since the previous scrap
+     *
+     * @return A bit mask of {@link ScrapStatus} attributes
+     */
+    public int getNotModifiedAttributes() {
+        return notModifiedAttributes;
+    }
+
+    /**
+     * Provides the validators received for the pages downloaded (not the unchanged ones), to be recorded in a {@link ValidatorStore}
+     *
+     * @return A Map with the {@link ValidatorStore.Validator} of every page downloaded, by URL
+     */
+    public Map<String, ValidatorStore.Validator> getFetchedValidators() {
+        synchronized (this.fetchedValidators) {
+            return new HashMap<>(this.fetchedValidators);
+        }
+    }
+
+    /**
+     * Sets the time after which no page is requested. Subpages opened from now on share it
+     *
+     * @param deadline Time, as given by {@link System#nanoTime()}, at which the scrap of the film ends. {@link WebScraper#NO_DEADLINE} for no limit
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Checks if a page of the film could not be downloaded because of the deadline: its request was cancelled when
+     * the deadline expired, or it was not sent because the deadline had already expired
+     *
+     * @return True if, at least, one page was not downloaded because of the deadline
+     */
+    public boolean isDeadlineExceeded() {
+        return this.deadlineExceeded.get();
+    }
+
+    /**
+     * Provides the number of requests sent for the main page and its subpages, including the unchanged and failed pages
+     */
+    public int getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     * Marks an attribute as failed when the exception was raised downloading a page (or the main page, needed to find
+     * the subpage, could not be downloaded). Attributes that are
+     * simply not present in the page are not marked, because scrapping them again would not change the result
+     *
+     * @param attribute {@link ScrapStatus} attribute
+     * @param e         Exception raised while scrapping the attribute
+     */
+    private void checkFailedAttribute(int attribute, Exception e) {
+        if (e instanceof PageNotModifiedException) {
+            this.notModifiedAttributes |= attribute;
+        } else if (e instanceof IOException || this.documentUnavailable) {
+            this.failedAttributes |= attribute;
+        } else if (this.documentNotModified) {
+            // The attribute was not found in the unchanged main page, so it is still not found
+            this.notModifiedAttributes |= attribute;
+        }
     }
 
     /**
@@ -31,16 +499,23 @@ public class WebScraper {
      * @return the year contained in the String date
      */
     public static int parseYear(String date) {
-        //String year = "";
-        int year = -1;
-        for (int i = 0; i < date.length() - 3; i += 1) {
-            //verify if the substring has a valid year format
-            if (date.substring(i, i + 4).matches("[0-9]{4}")) {
-                year = Integer.parseInt(date.substring(i, i + 4));
-                break;
+        // It is called for every row of the seed file, so the digits are checked without substrings or regex
+        int digits = 0;
+        int year = 0;
+        for (int i = 0; i < date.length(); i += 1) {
+            char c = date.charAt(i);
+            if (c >= '0' && c <= '9') {
+                year = year * 10 + (c - '0');
+                //verify if the substring has a valid year format
+                if (++digits == 4) {
+                    return year;
+                }
+            } else {
+                digits = 0;
+                year = 0;
             }
         }
-        return year;
+        return -1;
     }
 
     /**
@@ -50,7 +525,7 @@ public class WebScraper {
      * @param text String whose non-Ascii chars will be removed
      * @return a new String without non-ascii chars
      */
-    private static String removeNonAsciiChars(String text) {
+    public static String removeNonAsciiChars(String text) {
         try {
             /*
             TODO: replace each non-ascii char by its corresponding readable representation
@@ -70,11 +545,16 @@ public class WebScraper {
      * @return The first complete URL that contains the specified keyword
      */
     public String getUrlByKeyword(String keyword) {
-        String url = null;
+        String url = this.subpageUrls.get(keyword);
         try {
-            String link = doc.select("a[href~=[\\w\\d\\W]" + keyword + "[\\w\\d\\W]]").attr("href");
-            if (link != null) {
-                url = IMDb_ROOT + link;
+            if (url == null) {
+                String link = this.getDocument().select("a[href~=[\\w\\d\\W]" + keyword + "[\\w\\d\\W]]").attr("href");
+                if (link != null) {
+                    url = IMDb_ROOT + link;
+                    if (!link.isEmpty()) {
+                        this.subpageUrls.put(keyword, url);
+                    }
+                }
             }
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getUrlByKeyword' (ref: " + e + ")");
@@ -90,7 +570,7 @@ public class WebScraper {
      */
     public String getPageTitle() {
         try {
-            return (this.url + ":\t" + this.doc.title() + "\n");
+            return (this.url + ":\t" + this.getDocument().title() + "\n");
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getPageTitle' (ref: " + e + ")");
             return null;
@@ -104,10 +584,11 @@ public class WebScraper {
      */
     public int getReleaseYear() {
         try {
-            String completeDate = this.doc.select("a[title='See more release dates']").text();
+            String completeDate = this.getDocument().select("a[title='See more release dates']").text();
             return WebScraper.parseYear(completeDate);
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getReleaseYear' (ref: " + e + ")");
+            this.checkFailedAttribute(ScrapStatus.ATTR_RELEASE_YEAR, e);
             return -1;
         }
     }
@@ -119,8 +600,8 @@ public class WebScraper {
      */
     public String[] getMainActors() {
         try {
-            WebScraper actorScraper = new WebScraper(this.getUrlByKeyword("fullcredits"));
-            Element table = actorScraper.doc.selectFirst("table[class='cast_list']");
+            WebScraper actorScraper = this.openSubpage("fullcredits");
+            Element table = actorScraper.getDocument().selectFirst("table[class='cast_list']");
 
             Elements elements = table.select("a[href~=/name/[\\w\\d\\W]]");
             List<String> mainActors = new ArrayList<>();
@@ -135,6 +616,7 @@ public class WebScraper {
             return mainActors.toArray(new String[0]);
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getMainActors' (ref: " + e + ")");
+            this.checkFailedAttribute(ScrapStatus.ATTR_MAIN_ACTORS, e);
             return null;
         }
 
@@ -148,18 +630,19 @@ public class WebScraper {
     public String getSynopsis() {
         String synopsis;
         try {
-            WebScraper synopsisScraper = new WebScraper(this.getUrlByKeyword("plotsummary"));
-            synopsis = synopsisScraper.doc.selectFirst("li[id~=synopsis-[\\w\\d\\W]]").text();
+            WebScraper synopsisScraper = this.openSubpage("plotsummary");
+            synopsis = synopsisScraper.getDocument().selectFirst("li[id~=synopsis-[\\w\\d\\W]]").text();
             if (synopsis.contains("It looks like we don't have a Synopsis for this title yet")) {
                 //The synopsis for that film has not been written yet
                 //Obtain the first short summary in available for the film
-                synopsis = synopsisScraper.doc.selectFirst("li[id~=summary-[\\w\\d\\W]]").child(0).text();
+                synopsis = synopsisScraper.getDocument().selectFirst("li[id~=summary-[\\w\\d\\W]]").child(0).text();
             }
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getSynopsis' (ref: " + e + ")");
+            this.checkFailedAttribute(ScrapStatus.ATTR_SYNOPSIS, e);
             synopsis = null;
         }
-        return WebScraper.removeNonAsciiChars(synopsis);
+        return synopsis == null ? null : WebScraper.removeNonAsciiChars(synopsis);
     }
 
     /**
@@ -170,7 +653,7 @@ public class WebScraper {
     public String[] getPlotKeywords() {
         ArrayList<String> plotKeywords = new ArrayList<>();
         try {
-            WebScraper keywordScraper = new WebScraper(this.getUrlByKeyword("keywords"));
+            WebScraper keywordScraper = this.openSubpage("keywords");
             Elements elements = keywordScraper.getElementsLinkStartingBy("/search/keyword");
             for (Element elem : elements) {
                 plotKeywords.add(removeNonAsciiChars(elem.text()));
@@ -178,6 +661,7 @@ public class WebScraper {
             return plotKeywords.toArray(new String[0]);
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getPlotKeywords' (ref: " + e + ")");
+            this.checkFailedAttribute(ScrapStatus.ATTR_PLOT_KEYWORDS, e);
             return null;
         }
     }
@@ -192,6 +676,7 @@ public class WebScraper {
             return removeNonAsciiChars(getElemLinkContaining("country_of_origin").text());
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getOriginCountry' (ref: " + e + ")");
+            this.checkFailedAttribute(ScrapStatus.ATTR_ORIGIN_COUNTRY, e);
             return null;
         }
     }
@@ -211,6 +696,7 @@ public class WebScraper {
             return primaryLanguages.toArray(new String[0]);
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getPrimaryLanguages' (ref: " + e + ")");
+            this.checkFailedAttribute(ScrapStatus.ATTR_PRIMARY_LANGUAGES, e);
             return null;
         }
     }
@@ -223,7 +709,7 @@ public class WebScraper {
     public String[] getFilmingLocations() {
         ArrayList<String> locations = new ArrayList<>();
         try {
-            WebScraper locationScraper = new WebScraper(this.getUrlByKeyword("locations"));
+            WebScraper locationScraper = this.openSubpage("locations");
             Elements elements = locationScraper.getElementsLinkContaining("locations=");
 
             for (Element elem : elements) {
@@ -235,6 +721,7 @@ public class WebScraper {
             return locations.toArray(new String[0]);
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getFilmingLocations' (ref: " + e + ")");
+            this.checkFailedAttribute(ScrapStatus.ATTR_FILMING_LOCATIONS, e);
             return null;
         }
     }
@@ -250,7 +737,7 @@ public class WebScraper {
     private Element getElemLinkContaining(String keyword) {
         Element linkElem;
         try {
-            linkElem = this.doc.selectFirst("a[href~=[\\w\\d\\W]" + keyword + "[\\w\\d\\W]]");
+            linkElem = this.getDocument().selectFirst("a[href~=[\\w\\d\\W]" + keyword + "[\\w\\d\\W]]");
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getElemLinkContaining' (ref: " + e + ")");
             linkElem = null;
@@ -268,7 +755,7 @@ public class WebScraper {
     private Elements getElementsLinkContaining(String keyword) {
         Elements linkElemList;
         try {
-            linkElemList = this.doc.select("a[href~=[\\w\\d\\W]" + keyword + "[\\w\\d\\W]]");
+            linkElemList = this.getDocument().select("a[href~=[\\w\\d\\W]" + keyword + "[\\w\\d\\W]]");
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getElementsLinkContaining' (ref: " + e + ")");
             linkElemList = null;
@@ -285,7 +772,7 @@ public class WebScraper {
     private Elements getElementsLinkStartingBy(String substring) {
         Elements linkElemList;
         try {
-            linkElemList = this.doc.select("a[href~=" + substring + "[\\w\\d\\W]]");
+            linkElemList = this.getDocument().select("a[href~=" + substring + "[\\w\\d\\W]]");
         } catch (Exception e) {
             System.out.println("UNSUCCESSFUL function 'getElementsLinkStartingBy' (ref: " + e + ")");
             linkElemList = null;
@@ -298,10 +785,10 @@ public class WebScraper {
      *
      * @return An ArrayList containing all the links contained in the specified page
      */
-    public List<String> getLinks() {
+    public List<String> getLinks() throws IOException {
         ArrayList<String> links = new ArrayList<>();
 
-        Elements elements = this.doc.select("a[href]");
+        Elements elements = this.getDocument().select("a[href]");
         for (Element elem : elements) {
             links.add(elem.attr("href"));
         }
@@ -313,10 +800,10 @@ public class WebScraper {
      *
      * @return An ArrayList of Strings with all the images' links matching the regex
      */
-    public List<String> getImageLinks() {
+    public List<String> getImageLinks() throws IOException {
         ArrayList<String> links = new ArrayList<>();
 
-        Elements elements = this.doc.select("img[src~=[\\w\\d\\W]log[\\w\\d\\W]]");
+        Elements elements = this.getDocument().select("img[src~=[\\w\\d\\W]log[\\w\\d\\W]]");
         for (Element elem : elements) {
             links.add(elem.attr("src"));
         }
@@ -333,10 +820,10 @@ public class WebScraper {
      * @param selector String to be used as selector
      * @return An ArrayList of Strings, containing the inner text of all the elements found
      */
-    public List<String> selectElementsText(String selector) {
+    public List<String> selectElementsText(String selector) throws IOException {
         ArrayList<String> list = new ArrayList<>();
 
-        Elements elements = this.doc.select(selector);
+        Elements elements = this.getDocument().select(selector);
 
         for (Element elem : elements) {
             list.add(removeNonAsciiChars(elem.text()));
@@ -0,0 +1,296 @@
+package filmdb.scrappers;
+
+import filmdb.dedup.BloomFilter;
+import filmdb.tagging.DictionaryTrie;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Crawls Wikipedia pages from a set of seeds, following the links to other articles ("/wiki/...") up to a maximum
+ * depth, and extracts the remarkable words of every page (see {@link WikiScraper#checkElementAttributes(Element)})
+ * while it is parsed.
+ * <p>
+ * Pages are downloaded by a pool of threads that share a bounded FIFO frontier, so pages are crawled roughly by depth.
+ * Every host receives a limited number of concurrent requests, separated by a minimum delay. Visited URLs are recorded
+ * in a set of 64-bit fingerprints up to a maximum size, and in a {@link BloomFilter}; once the set is full, only the
+ * Bloom filter is checked, so that memory stays bounded at the cost of skipping a few pages (its false positives).
+ */
+public class WikiCrawler {
+    private static final int FETCH_TIMEOUT = 30 * 1000; // measured in milliseconds
+    private static final long POLL_INTERVAL = 100; // measured in milliseconds
+    private static final double VISITED_FALSE_POSITIVE_RATE = 0.001;
+    // Relative links to articles of the same host, optionally to one of their sections. Namespaces
+    // (i.e. "Archivo:", "Categoría:", "Especial:") contain a colon in the name of the page
+    private static final String ARTICLE_PATH_REGEX = "/wiki/[^:#?]+(#.*)?";
+
+    /**
+     * Page waiting in the frontier
+     */
+    private static class CrawlTask {
+        private final String url;
+        private final int depth;
+
+        private CrawlTask(String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Politeness limits of a host: concurrent requests, and minimum time between the start of two requests
+     */
+    private static class HostLimiter {
+        private final Semaphore permits;
+        private final AtomicLong nextRequest;
+
+        private HostLimiter(int maxRequests) {
+            this.permits = new Semaphore(maxRequests);
+            this.nextRequest = new AtomicLong();
+        }
+    }
+
+    private final int maxDepth;
+    private final int maxPages;
+    private final int threads;
+    private final int maxRequestsPerHost;
+    private final long hostDelayNanos;
+    private final int maxVisitedFingerprints;
+    private final LinkedBlockingQueue<CrawlTask> frontier;
+    private final BloomFilter visitedFilter;
+    private final Set<Long> visitedFingerprints;
+    private final Map<String, HostLimiter> hostLimiters;
+    private final Set<String> terms;
+    // Tasks in the frontier or being crawled. The crawl ends when there are none left
+    private final AtomicInteger pendingTasks;
+    private final AtomicInteger startedPages;
+    private final LongAdder crawledPages;
+    private final LongAdder failedPages;
+    private final LongAdder skippedLinks;
+    private final LongAdder droppedLinks;
+
+    /**
+     * Constructor to initialize a new {@link WikiCrawler}
+     *
+     * @param maxDepth           Maximum number of links followed from a seed (0 to crawl only the seeds)
+     * @param maxPages           Maximum number of pages downloaded
+     * @param threads            Number of pages downloaded at the same time
+     * @param maxRequestsPerHost Maximum number of concurrent requests to the same host
+     * @param hostDelayMillis    Minimum time between two requests to the same host, measured in milliseconds
+     */
+    public WikiCrawler(int maxDepth, int maxPages, int threads, int maxRequestsPerHost, long hostDelayMillis) {
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+        this.threads = threads;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.hostDelayNanos = TimeUnit.MILLISECONDS.toNanos(hostDelayMillis);
+        // Every crawled page adds tens of links, so the frontier is limited to a few times the pages still to be crawled
+        this.frontier = new LinkedBlockingQueue<>(Math.max(1024, 4 * maxPages));
+        this.maxVisitedFingerprints = Math.max(1024, 8 * maxPages);
+        this.visitedFilter = new BloomFilter(64L * maxPages, VISITED_FALSE_POSITIVE_RATE);
+        this.visitedFingerprints = ConcurrentHashMap.newKeySet();
+        this.hostLimiters = new ConcurrentHashMap<>();
+        this.terms = ConcurrentHashMap.newKeySet();
+        this.pendingTasks = new AtomicInteger();
+        this.startedPages = new AtomicInteger();
+        this.crawledPages = new LongAdder();
+        this.failedPages = new LongAdder();
+        this.skippedLinks = new LongAdder();
+        this.droppedLinks = new LongAdder();
+    }
+
+    public long getCrawledPages() {
+        return crawledPages.sum();
+    }
+
+    public long getFailedPages() {
+        return failedPages.sum();
+    }
+
+    /**
+     * Number of links not followed because their page had already been visited (or enqueued)
+     */
+    public long getSkippedLinks() {
+        return skippedLinks.sum();
+    }
+
+    /**
+     * Number of links not followed because the frontier was full
+     */
+    public long getDroppedLinks() {
+        return droppedLinks.sum();
+    }
+
+    /**
+     * Crawls the pages reachable from the seeds and collects their remarkable words
+     *
+     * @param seeds URLs of the first pages to crawl
+     * @return The normalized words found (see {@link DictionaryTrie#normalize(String)}), without repetitions
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for the crawl to end
+     */
+    public Set<String> crawl(List<String> seeds) throws InterruptedException {
+        for (String seed : seeds) {
+            this.enqueue(seed, 0);
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+        for (int i = 0; i < this.threads; i++) {
+            workers.submit(this::crawlFrontier);
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        return this.terms;
+    }
+
+    /**
+     * Loop of every worker: takes pages from the frontier until there are no pending pages, or the maximum number
+     * of pages has been reached
+     */
+    private void crawlFrontier() {
+        try {
+            while (this.pendingTasks.get() > 0) {
+                CrawlTask task = this.frontier.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    continue;
+                }
+                try {
+                    if (this.startedPages.incrementAndGet() <= this.maxPages) {
+                        this.crawlPage(task);
+                    }
+                } finally {
+                    this.pendingTasks.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Downloads a page, respecting the limits of its host, and processes its links: the remarkable words are added to
+     * the terms, and the articles are added to the frontier if the maximum depth has not been reached
+     *
+     * @param task Page to be crawled
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for its host
+     */
+    private void crawlPage(CrawlTask task) throws InterruptedException {
+        Document document;
+        try {
+            document = this.fetch(task.url);
+        } catch (IOException | URISyntaxException e) {
+            this.failedPages.increment();
+            System.out.println("UNSUCCESSFUL function 'crawlPage' (ref: " + e + ")");
+            return;
+        }
+        Element mainSection = document.selectFirst("div[id=mw-content-text]");
+        if (mainSection == null) {
+            this.failedPages.increment();
+            return;
+        }
+        for (Element elem : mainSection.select("a[href~=/wiki/[\\w\\d\\W]]")) {
+            if (WikiScraper.checkElementAttributes(elem)) {
+                String term = DictionaryTrie.normalize(elem.text());
+                if (!term.isEmpty()) {
+                    this.terms.add(term);
+                }
+            }
+            if (task.depth < this.maxDepth && elem.attr("href").matches(ARTICLE_PATH_REGEX)) {
+                this.enqueue(elem.absUrl("href"), task.depth + 1);
+            }
+        }
+        this.crawledPages.increment();
+    }
+
+    /**
+     * Downloads a page once its host accepts a new request
+     *
+     * @param url URL of the page
+     * @return The parsed page
+     * @throws IOException          Raised if the page could not be downloaded
+     * @throws URISyntaxException   Raised if the URL is not valid
+     * @throws InterruptedException Raised if the thread was interrupted while waiting for the host
+     */
+    private Document fetch(String url) throws IOException, URISyntaxException, InterruptedException {
+        String host = new URI(url).getHost();
+        HostLimiter limiter = this.hostLimiters.computeIfAbsent(host == null ? "" : host, k -> new HostLimiter(this.maxRequestsPerHost));
+        limiter.permits.acquire();
+        try {
+            // Reserve the next slot of the host, and wait for it
+            long now = System.nanoTime();
+            long slot = limiter.nextRequest.getAndAccumulate(now, (next, current) -> Math.max(next, current) + this.hostDelayNanos);
+            long wait = Math.max(slot, now) - now;
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            return Jsoup.connect(url).maxBodySize(0).timeout(FETCH_TIMEOUT).get();
+        } finally {
+            limiter.permits.release();
+        }
+    }
+
+    /**
+     * Adds a page to the frontier, unless it has already been visited or the frontier is full
+     *
+     * @param url   URL of the page, whose fragment is ignored
+     * @param depth Number of links followed from a seed
+     */
+    private void enqueue(String url, int depth) {
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        if (url.isEmpty() || !this.markVisited(url)) {
+            this.skippedLinks.increment();
+            return;
+        }
+        this.pendingTasks.incrementAndGet();
+        if (!this.frontier.offer(new CrawlTask(url, depth))) {
+            this.pendingTasks.decrementAndGet();
+            this.droppedLinks.increment();
+        }
+    }
+
+    /**
+     * Records a URL as visited. While the set of fingerprints has room, it gives the exact answer. Once it is full,
+     * URLs that are not in the set are only checked against the Bloom filter, which may report a new URL as visited
+     *
+     * @param url URL of the page
+     * @return True if the URL had not been visited before
+     */
+    private boolean markVisited(String url) {
+        long fingerprint = WikiCrawler.fingerprint(url);
+        boolean newUrl = this.visitedFilter.put(url);
+        if (this.visitedFingerprints.size() < this.maxVisitedFingerprints) {
+            return this.visitedFingerprints.add(fingerprint);
+        }
+        return newUrl && !this.visitedFingerprints.contains(fingerprint);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-8 bytes of a URL
+     */
+    private static long fingerprint(String url) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -1,88 +1,205 @@
 package filmdb.scrappers;
 
 import com.google.gson.Gson;
+import filmdb.tagging.DictionaryTrie;
+import filmdb.tagging.DictionaryTrieWriter;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class WikiScraper {
     // Execution parameters
     private static final String WIKI_ESP_WORDS = "https://es.wiktionary.org/wiki/Ap%C3%A9ndice:1000_palabras_b%C3%A1sicas_en_espa%C3%B1ol";
     private static final String WIKI_ESP_HISTORY = "https://es.wikipedia.org/wiki/Historia_de_Espa%C3%B1a";
     private static final String WIKI_LATIN_HISTORY = "https://es.wikipedia.org/wiki/Historia_de_Sudam%C3%A9rica";
-    private static final String DICTIONARY_NAME = "spanish-word-dic.json";
+    private static final String DICTIONARY_NAME = "..//mm-IMDb-database//output//spanish-word-dic.json";
+    // Binary version of the dictionary, that can be memory-mapped for membership lookups (see DictionaryTrie)
+    private static final String DICTIONARY_TRIE_NAME = "..//mm-IMDb-database//output//spanish-word-dic.trie";
+    private static final int FETCH_TIMEOUT = 30 * 1000; // measured in milliseconds
+    // Crawler mode parameters: the predefined URLs are the seeds of the crawl (see WikiCrawler)
+    private static final int CRAWL_MAX_DEPTH = 2;
+    private static final int CRAWL_MAX_PAGES = 2000;
+    private static final int CRAWL_THREADS = 8;
+    private static final int CRAWL_REQUESTS_PER_HOST = 2;
+    private static final long CRAWL_HOST_DELAY = 250; // measured in milliseconds
 
     /**
-     * Generates an spanish-word dictionary scrapping the predefined Wikipedia URLs
+     * Generates an spanish-word dictionary scrapping the predefined Wikipedia URLs. The pages are downloaded
+     * concurrently, and the words are normalized and deduplicated (see {@link DictionaryTrie#normalize(String)})
+     * before writing the JSON dictionary and its binary trie
      *
      * @return 0 if the dictionary could be generated. 1 otherwise
      */
     public static int generateSpanishDictionary() {
         int errno = 1;
-        ArrayList<String> spanishWords = new ArrayList<>();
+        ExecutorService fetchPool = Executors.newFixedThreadPool(3);
         try {
             //Scrap the wiki page: 1000 basic spanish words
-            Element mainSection = Jsoup.connect(WIKI_ESP_WORDS).get().selectFirst("div[id=mw-content-text]");
-            Elements elements = mainSection.select("a[href~=/wiki/[\\w\\d\\W]]");
-            for (Element elem : elements) {
-                spanishWords.add(elem.text());
-            }
+            Future<List<String>> basicWords = fetchPool.submit(() -> WikiScraper.scrapWikiPage(WIKI_ESP_WORDS, false));
             //Scrap the wiki page: History of Spain
-            spanishWords.addAll(WikiScraper.scrapComplexWikiPage(WIKI_ESP_HISTORY));
+            Future<List<String>> spainHistory = fetchPool.submit(() -> WikiScraper.scrapComplexWikiPage(WIKI_ESP_HISTORY));
             //Scrap the wiki page: History of South America
-            spanishWords.addAll(WikiScraper.scrapComplexWikiPage(WIKI_LATIN_HISTORY));
+            Future<List<String>> latinHistory = fetchPool.submit(() -> WikiScraper.scrapComplexWikiPage(WIKI_LATIN_HISTORY));
+
+            // Words are kept in the order of the pages
+            Set<String> spanishWords = new LinkedHashSet<>();
+            int scrappedWords = WikiScraper.addNormalized(spanishWords, basicWords.get());
+            scrappedWords += WikiScraper.addNormalized(spanishWords, spainHistory.get());
+            scrappedWords += WikiScraper.addNormalized(spanishWords, latinHistory.get());
             WikiScraper.generateJsonDictionary(spanishWords);
-            System.out.println("Dictionary successfully created: " + spanishWords.size() + " words");
+            WikiScraper.generateTrieDictionary(spanishWords);
+            System.out.println("Dictionary successfully created: " + spanishWords.size() + " words (" + scrappedWords + " scrapped)");
             errno = 0;
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            fetchPool.shutdown();
         }
         return errno;
     }
 
+    /**
+     * Generates an spanish-word dictionary crawling Wikipedia from the predefined URLs, following the links to other
+     * articles up to {@link WikiScraper#CRAWL_MAX_DEPTH} links away and {@link WikiScraper#CRAWL_MAX_PAGES} pages.
+     * The remarkable words of every page are written in the JSON dictionary and its binary trie
+     *
+     * @param maxDepth Maximum number of links followed from the predefined URLs
+     * @return 0 if the dictionary could be generated. 1 otherwise
+     * @see WikiCrawler
+     */
+    public static int generateCrawledSpanishDictionary(int maxDepth) {
+        int errno = 1;
+        try {
+            WikiCrawler crawler = new WikiCrawler(maxDepth, CRAWL_MAX_PAGES, CRAWL_THREADS, CRAWL_REQUESTS_PER_HOST, CRAWL_HOST_DELAY);
+            long start = System.currentTimeMillis();
+            List<String> seeds = new ArrayList<>();
+            seeds.add(WIKI_ESP_WORDS);
+            seeds.add(WIKI_ESP_HISTORY);
+            seeds.add(WIKI_LATIN_HISTORY);
+            // Sorted, so that consecutive crawls produce comparable dictionaries
+            Set<String> spanishWords = new TreeSet<>(crawler.crawl(seeds));
+            WikiScraper.generateJsonDictionary(spanishWords);
+            WikiScraper.generateTrieDictionary(spanishWords);
+            System.out.println("Dictionary successfully created: " + spanishWords.size() + " words from " + crawler.getCrawledPages()
+                    + " pages (" + crawler.getFailedPages() + " failed, " + crawler.getSkippedLinks() + " links already visited, "
+                    + crawler.getDroppedLinks() + " dropped) in " + (System.currentTimeMillis() - start) + " ms");
+            errno = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return errno;
+    }
+
+    /**
+     * Generates an spanish-word dictionary crawling Wikipedia from the predefined URLs up to the default depth
+     *
+     * @return 0 if the dictionary could be generated. 1 otherwise
+     * @see WikiScraper#generateCrawledSpanishDictionary(int)
+     */
+    public static int generateCrawledSpanishDictionary() {
+        return WikiScraper.generateCrawledSpanishDictionary(CRAWL_MAX_DEPTH);
+    }
+
     /**
      * Scraps a Wikipedia page looking for remarkable words. Remarkable words are considered those that are enclosed in an <a> element
      *
+     * @param wikiURL       URL of the Wikipedia page to be scrapped
+     * @param checkElements True to discard the links that are not remarkable words (see {@link WikiScraper#checkElementAttributes(Element)})
+     * @return a List of Strings with all the remarkable words found, including repeated words
+     * @throws IOException Raised if the page could not be downloaded
+     */
+    private static List<String> scrapWikiPage(String wikiURL, boolean checkElements) throws IOException {
+        List<String> words = new ArrayList<>();
+        // The history pages are bigger than the default maximum body size of Jsoup, so it is disabled
+        Element mainSection = Jsoup.connect(wikiURL).maxBodySize(0).timeout(FETCH_TIMEOUT).get().selectFirst("div[id=mw-content-text]");
+        Elements elements = mainSection.select("a[href~=/wiki/[\\w\\d\\W]]");
+        for (Element elem : elements) {
+            if (!checkElements || WikiScraper.checkElementAttributes(elem)) {
+                words.add(elem.text());
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Scraps the remarkable words of a Wikipedia page. The dictionary is generated even if the page could not be downloaded
+     *
      * @param wikiURL URL of the Wikipedia page to be scrapped
-     * @return an ArrayList of Strings with all the remarkable words found
+     * @return a List of Strings with all the remarkable words found. Empty if the page could not be downloaded
      */
     private static List<String> scrapComplexWikiPage(String wikiURL) {
-        ArrayList<String> words = new ArrayList<>();
         try {
-            Element mainSection = Jsoup.connect(wikiURL).get().selectFirst("div[id=mw-content-text]");
-            Elements elements = mainSection.select("a[href~=/wiki/[\\w\\d\\W]]");
-            for (Element elem : elements) {
-                if (WikiScraper.checkElementAttributes(elem) && (!words.contains(elem.text()))) {
-                    words.add(elem.text());
-                }
-            }
+            return WikiScraper.scrapWikiPage(wikiURL, true);
         } catch (IOException e) {
             System.out.println("UNSUCCESSFUL function 'scrapComplexWikiPage' (ref: " + e + ")");
+            return new ArrayList<>();
         }
-        return words;
     }
 
     /**
-     * Generates a JSON-dictionary from the specified word list
+     * Adds a list of words to a set of normalized words
+     *
+     * @param dictionary Set of normalized words
+     * @param words      Words to be normalized and added
+     * @return Number of words processed (including repeated and blank words)
+     */
+    private static int addNormalized(Set<String> dictionary, List<String> words) {
+        for (String word : words) {
+            String normalized = DictionaryTrie.normalize(word);
+            if (!normalized.isEmpty()) {
+                dictionary.add(normalized);
+            }
+        }
+        return words.size();
+    }
+
+    /**
+     * Generates a JSON-dictionary from the specified word list. The file is written in UTF-8, streaming the JSON array
+     * so that the size of the dictionary is not limited, and replaces the previous dictionary once it is complete
      *
      * @param wordList List of words to be written in the file
+     * @throws IOException Raised if the file could not be written
      */
-    private static void generateJsonDictionary(List<String> wordList) {
-        try {
-            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
-                    new FileOutputStream(WikiScraper.DICTIONARY_NAME)));
-            out.writeUTF(new Gson().toJson(wordList));
-            out.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void generateJsonDictionary(Collection<String> wordList) throws IOException {
+        File file = new File(WikiScraper.DICTIONARY_NAME).getCanonicalFile();
+        File temporaryFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8))) {
+            new Gson().toJson(wordList, out);
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Generates the binary trie of the dictionary, read by {@link DictionaryTrie}
+     *
+     * @param wordList List of words to be written in the file
+     * @throws IOException Raised if the file could not be written
+     */
+    private static void generateTrieDictionary(Collection<String> wordList) throws IOException {
+        DictionaryTrieWriter writer = new DictionaryTrieWriter(WikiScraper.DICTIONARY_TRIE_NAME);
+        for (String word : wordList) {
+            writer.add(word);
         }
+        writer.close();
     }
 
     /**
@@ -91,7 +208,7 @@ public class WikiScraper {
      * @param elem {@link Element} whose attributes are checked
      * @return True if the element matches all the attribute requirements. False otherwise
      */
-    private static boolean checkElementAttributes(Element elem) {
+    static boolean checkElementAttributes(Element elem) {
         return elem.attr("title").length() > 1 && !elem.attr("title").equals("ISBN") && !elem.attr("title").equals("ISSN") && !elem.parent().hasClass("citation") && !elem.text().matches("[0-9\\-]*") && elem.text().length() != 0;
 
     }
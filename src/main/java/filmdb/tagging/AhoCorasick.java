@@ -0,0 +1,149 @@
+package filmdb.tagging;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Multi-pattern matcher that finds every occurrence of a set of patterns in a single pass over the text.
+ * The matching cost depends on the length of the text and the number of matches, but not on the number of patterns.
+ * Patterns are matched case-insensitively and only as whole words.
+ */
+public class AhoCorasick {
+    private static final int ROOT = 0;
+    private static final int NO_NODE = -1;
+
+    private final List<Map<Character, Integer>> children;
+    private final List<Integer> failures;
+    /**
+     * Closest node, following the failure links, that ends a pattern. Used to enumerate all the outputs of a state
+     */
+    private final List<Integer> outputLinks;
+    private final List<int[]> outputs;
+    private final List<String> patterns;
+    private final List<Integer> patternLengths;
+
+    /**
+     * Builds the automaton containing all the specified patterns. Once built, the automaton is immutable
+     * and can be used concurrently from any number of threads
+     *
+     * @param patterns List of patterns to be matched. Empty patterns are ignored
+     */
+    public AhoCorasick(List<String> patterns) {
+        this.children = new ArrayList<>();
+        this.failures = new ArrayList<>();
+        this.outputLinks = new ArrayList<>();
+        this.outputs = new ArrayList<>();
+        this.patterns = new ArrayList<>(patterns);
+        this.patternLengths = new ArrayList<>();
+        this.newNode();
+
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i).trim();
+            this.patternLengths.add(pattern.length());
+            if (!pattern.isEmpty()) {
+                this.insert(pattern, i);
+            }
+        }
+        this.buildFailureLinks();
+    }
+
+    public String getPattern(int patternIndex) {
+        return this.patterns.get(patternIndex);
+    }
+
+    /**
+     * Scans the text looking for whole-word occurrences of every pattern
+     *
+     * @param text     Text to be scanned
+     * @param listener Callback invoked with the index of the pattern found and the position where the occurrence ends
+     */
+    public void match(CharSequence text, MatchListener listener) {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            Integer next = this.children.get(state).get(c);
+            while (next == null && state != ROOT) {
+                state = this.failures.get(state);
+                next = this.children.get(state).get(c);
+            }
+            state = (next == null) ? ROOT : next;
+
+            int outputNode = this.outputs.get(state).length > 0 ? state : this.outputLinks.get(state);
+            while (outputNode != NO_NODE) {
+                for (int patternIndex : this.outputs.get(outputNode)) {
+                    int start = i - this.patternLengths.get(patternIndex) + 1;
+                    if (AhoCorasick.isWordBoundary(text, start - 1) && AhoCorasick.isWordBoundary(text, i + 1)) {
+                        listener.onMatch(patternIndex, i + 1);
+                    }
+                }
+                outputNode = this.outputLinks.get(outputNode);
+            }
+        }
+    }
+
+    private static boolean isWordBoundary(CharSequence text, int position) {
+        return position < 0 || position >= text.length() || !Character.isLetterOrDigit(text.charAt(position));
+    }
+
+    private int newNode() {
+        this.children.add(new HashMap<>());
+        this.failures.add(ROOT);
+        this.outputLinks.add(NO_NODE);
+        this.outputs.add(new int[0]);
+        return this.children.size() - 1;
+    }
+
+    private void insert(String pattern, int patternIndex) {
+        int node = ROOT;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = Character.toLowerCase(pattern.charAt(i));
+            Integer next = this.children.get(node).get(c);
+            if (next == null) {
+                next = this.newNode();
+                this.children.get(node).put(c, next);
+            }
+            node = next;
+        }
+        int[] previous = this.outputs.get(node);
+        int[] updated = new int[previous.length + 1];
+        System.arraycopy(previous, 0, updated, 0, previous.length);
+        updated[previous.length] = patternIndex;
+        this.outputs.set(node, updated);
+    }
+
+    /**
+     * Computes the failure and output links of every node traversing the trie in breadth-first order
+     */
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>(this.children.get(ROOT).values());
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : this.children.get(node).entrySet()) {
+                int child = edge.getValue();
+                if (node != ROOT) {
+                    int failure = this.failures.get(node);
+                    Integer target = this.children.get(failure).get(edge.getKey());
+                    while (target == null && failure != ROOT) {
+                        failure = this.failures.get(failure);
+                        target = this.children.get(failure).get(edge.getKey());
+                    }
+                    this.failures.set(child, target == null ? ROOT : target);
+                }
+                int failure = this.failures.get(child);
+                this.outputLinks.set(child, this.outputs.get(failure).length > 0 ? failure : this.outputLinks.get(failure));
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Callback used to report the occurrences found by {@link AhoCorasick#match(CharSequence, MatchListener)}
+     */
+    public interface MatchListener {
+        void onMatch(int patternIndex, int end);
+    }
+}
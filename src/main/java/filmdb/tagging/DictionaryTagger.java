@@ -0,0 +1,110 @@
+package filmdb.tagging;
+
+import com.google.gson.Gson;
+import filmdb.entities.Film;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class DictionaryTagger {
+    /**
+     * Separator placed between the scanned attributes so that no pattern can match across two of them
+     */
+    private static final char ATTRIBUTE_SEPARATOR = '\n';
+
+    private final List<String> dictionaryNames;
+    // Dictionary of every pattern added to the automaton
+    private final List<Integer> patternDictionaries;
+    private final AhoCorasick automaton;
+
+    /**
+     * Constructor to initialize a new {@link DictionaryTagger} from a set of JSON dictionaries. Each dictionary
+     * is a JSON array of words, such as the ones in the output folder. The automaton is built only once
+     *
+     * @param dictionaryFiles Map containing, for every dictionary, its name (the tag) and the route to its JSON file
+     */
+    public DictionaryTagger(Map<String, String> dictionaryFiles) {
+        this.dictionaryNames = new ArrayList<>();
+        this.patternDictionaries = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        for (Map.Entry<String, String> dictionary : dictionaryFiles.entrySet()) {
+            try {
+                String[] words = DictionaryTagger.readDictionary(dictionary.getValue());
+                for (String word : words) {
+                    patterns.add(word);
+                    this.patternDictionaries.add(this.dictionaryNames.size());
+                }
+                this.dictionaryNames.add(dictionary.getKey());
+            } catch (Exception e) {
+                System.out.println("UNSUCCESSFUL function 'DictionaryTagger' (ref: " + e + ")");
+            }
+        }
+        this.automaton = new AhoCorasick(patterns);
+    }
+
+    /**
+     * Scans the title, synopsis and plot keywords of a {@link Film} in a single pass, and sets its
+     * dictionary tags (the name of every dictionary with at least one match) and the dictionary terms matched
+     *
+     * @param film {@link Film} to be tagged
+     */
+    public void tag(Film film) {
+        StringBuilder text = new StringBuilder();
+        DictionaryTagger.appendAttribute(text, film.getTitle());
+        DictionaryTagger.appendAttribute(text, film.getSynopsis());
+        if (film.getPlotKeywords() != null) {
+            for (String keyword : film.getPlotKeywords()) {
+                DictionaryTagger.appendAttribute(text, keyword);
+            }
+        }
+
+        TreeSet<String> tags = new TreeSet<>();
+        TreeSet<String> terms = new TreeSet<>();
+        this.automaton.match(text, (patternIndex, end) -> {
+            tags.add(this.dictionaryNames.get(this.patternDictionaries.get(patternIndex)));
+            terms.add(this.automaton.getPattern(patternIndex).trim().toLowerCase(Locale.ROOT));
+        });
+        film.setDictionaryTags(tags.toArray(new String[0]));
+        film.setDictionaryTerms(terms.toArray(new String[0]));
+    }
+
+    private static void appendAttribute(StringBuilder text, String attribute) {
+        if (attribute != null && !attribute.equals(Film.ATTR_NOT_FOUND)) {
+            text.append(attribute).append(ATTRIBUTE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Reads a JSON array of words. Any bytes before the opening bracket are ignored
+     *
+     * @param path Route to the JSON file
+     * @return An Array containing the words of the dictionary
+     * @throws IOException Raised if the file could not be read
+     */
+    private static String[] readDictionary(String path) throws IOException {
+        String json = new String(Files.readAllBytes(new File(path).getCanonicalFile().toPath()), StandardCharsets.UTF_8);
+        return new Gson().fromJson(json.substring(Math.max(0, json.indexOf('['))), String[].class);
+    }
+
+    /**
+     * Creates a {@link DictionaryTagger} with the dictionaries used by the predefined Elastic Search queries
+     *
+     * @param animalsFile      Route to the animal names dictionary
+     * @param spanishWordsFile Route to the spanish words dictionary
+     * @return a new {@link DictionaryTagger}
+     */
+    public static DictionaryTagger fromDefaultDictionaries(String animalsFile, String spanishWordsFile) {
+        Map<String, String> dictionaries = new LinkedHashMap<>();
+        dictionaries.put("animals", animalsFile);
+        dictionaries.put("spanish", spanishWordsFile);
+        return new DictionaryTagger(dictionaries);
+    }
+}
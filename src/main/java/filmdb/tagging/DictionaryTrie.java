@@ -0,0 +1,138 @@
+package filmdb.tagging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Read-only view of a dictionary written by {@link DictionaryTrieWriter}. The file is memory-mapped, so opening a
+ * dictionary only reads its footer, and a lookup only touches the nodes on the path of the word.
+ */
+public class DictionaryTrie implements Closeable {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int rootOffset;
+    private final int wordCount;
+
+    /**
+     * Opens and maps a dictionary file
+     *
+     * @param path Route to the dictionary file
+     * @throws IOException Raised if the file could not be mapped or is not a valid dictionary
+     */
+    public DictionaryTrie(String path) throws IOException {
+        this.file = new RandomAccessFile(new File(path).getCanonicalFile(), "r");
+        FileChannel channel = this.file.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) {
+            this.file.close();
+            throw new IOException("Dictionary too large to be mapped (" + channel.size() + " bytes)");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        int footer = this.buffer.capacity() - DictionaryTrieWriter.FOOTER_SIZE;
+        if (footer < DictionaryTrieWriter.HEADER_SIZE || this.buffer.getInt(0) != DictionaryTrieWriter.MAGIC
+                || this.buffer.getInt(footer + 12) != DictionaryTrieWriter.MAGIC) {
+            this.file.close();
+            throw new IOException("Invalid dictionary file " + path);
+        }
+        if (this.buffer.getInt(4) != DictionaryTrieWriter.VERSION) {
+            this.file.close();
+            throw new IOException("Unsupported dictionary version " + this.buffer.getInt(4));
+        }
+        this.rootOffset = this.buffer.getInt(footer);
+        this.wordCount = this.buffer.getInt(footer + 4);
+    }
+
+    /**
+     * Number of words in the dictionary
+     */
+    public int size() {
+        return this.wordCount;
+    }
+
+    /**
+     * Checks if a word is in the dictionary. The word is normalized as the words of the dictionary were
+     *
+     * @param word Word to be looked up
+     * @return True if the dictionary contains the word
+     */
+    public boolean contains(String word) {
+        String normalized = DictionaryTrie.normalize(word);
+        if (normalized.isEmpty()) {
+            return false;
+        }
+        byte[] bytes = normalized.getBytes(StandardCharsets.UTF_8);
+        int position = 0;
+        int node = this.rootOffset;
+        while (true) {
+            // The string of the node must match the next bytes of the word
+            int stringLength = this.buffer.get(node + 1) & 0xFF;
+            if (position + stringLength > bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < stringLength; i++) {
+                if (this.buffer.get(node + 2 + i) != bytes[position++]) {
+                    return false;
+                }
+            }
+            if (position == bytes.length) {
+                return (this.buffer.get(node) & DictionaryTrieWriter.TERMINAL_FLAG) != 0;
+            }
+            node = this.findChild(node + 2 + stringLength, bytes[position++] & 0xFF);
+            if (node < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Finds, with a binary search over the children of a node, the child reached with a byte
+     *
+     * @param children Offset of the children of the node (their number, followed by their entries)
+     * @param label    Byte of the word, as an unsigned value
+     * @return The offset of the child. -1 if the node has no child with that label
+     */
+    private int findChild(int children, int label) {
+        int entries = children + 2;
+        int low = 0;
+        int high = (this.buffer.getShort(children) & 0xFFFF) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = entries + middle * DictionaryTrieWriter.CHILD_ENTRY_SIZE;
+            int middleLabel = this.buffer.get(entry) & 0xFF;
+            if (middleLabel < label) {
+                low = middle + 1;
+            } else if (middleLabel > label) {
+                high = middle - 1;
+            } else {
+                return this.buffer.getInt(entry + 1);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Normalizes a word of a dictionary: Unicode NFC form, lower case, without leading or trailing whitespace and with
+     * single spaces (also replacing non-breaking spaces) between words
+     *
+     * @param word Word to be normalized
+     * @return The normalized word. An empty String if the word is null or blank
+     */
+    public static String normalize(String word) {
+        if (word == null) {
+            return "";
+        }
+        return Normalizer.normalize(word, Normalizer.Form.NFC).replaceAll("[\\s\\u00A0]+", " ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
@@ -0,0 +1,159 @@
+package filmdb.tagging;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a dictionary in the binary trie format read by {@link DictionaryTrie}.
+ * <p>
+ * Words are normalized ({@link DictionaryTrie#normalize(String)}) and stored as the paths of their UTF-8 bytes in a trie.
+ * When the writer is closed, the trie is minimized (identical subtrees, i.e. common suffixes, are written only once),
+ * chains of nodes with a single child are collapsed into the byte string of a single node, and the nodes are written
+ * children first. Every node is a flags byte, the length and bytes of its string, the number of children and, sorted by
+ * byte, the first byte and offset of every child, so that a lookup only does a binary search per branch of the word.
+ * The file ends with a fixed-size footer with the offset of the root and the number of words.
+ */
+public class DictionaryTrieWriter implements Closeable {
+    static final int MAGIC = 0x46445452; // "FDTR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 16;
+    static final int MAX_NODE_STRING = 255;
+    static final int CHILD_ENTRY_SIZE = 5;
+    static final int TERMINAL_FLAG = 1;
+
+    /**
+     * Node of the trie while it is built. Children are sorted by their label, as unsigned bytes
+     */
+    private static class Node {
+        private final TreeMap<Integer, Node> children = new TreeMap<>();
+        private boolean terminal;
+    }
+
+    private final File file;
+    private final Node root;
+    private int wordCount;
+
+    /**
+     * Constructor to initialize a new {@link DictionaryTrieWriter}. The trie is written in a temporary file
+     * that replaces the destination file when the writer is closed
+     *
+     * @param path Route to the trie file
+     * @throws IOException Raised if the path could not be resolved
+     */
+    public DictionaryTrieWriter(String path) throws IOException {
+        this.file = new File(path).getCanonicalFile();
+        this.root = new Node();
+        this.wordCount = 0;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Adds a word to the dictionary. Words that are empty after being normalized, or already added, are ignored
+     *
+     * @param word Word to be added
+     * @return True if the word was added. False otherwise
+     */
+    public boolean add(String word) {
+        String normalized = DictionaryTrie.normalize(word);
+        if (normalized.isEmpty()) {
+            return false;
+        }
+        Node node = this.root;
+        for (byte b : normalized.getBytes(StandardCharsets.UTF_8)) {
+            node = node.children.computeIfAbsent(b & 0xFF, k -> new Node());
+        }
+        if (node.terminal) {
+            return false;
+        }
+        node.terminal = true;
+        this.wordCount++;
+        return true;
+    }
+
+    /**
+     * Writes the minimized trie and replaces the destination file
+     *
+     * @throws IOException Raised if the file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Impossible to create the directory " + parent);
+        }
+        File temporaryFile = new File(parent, this.file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            Map<String, Integer> writtenNodes = new HashMap<>();
+            int rootOffset = this.writeNode(out, this.root, writtenNodes);
+            out.writeInt(rootOffset);
+            out.writeInt(this.wordCount);
+            out.writeInt(writtenNodes.size());
+            out.writeInt(MAGIC);
+        }
+        Files.move(temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a node after its children. The chain of single-child nodes that starts at the node is written as the
+     * string of the node. A node equal to a node already written (same string, flags and children) is not written
+     * again: the offset of the first one is reused
+     *
+     * @param out          Stream positioned at the end of the file
+     * @param node         Node to be written
+     * @param writtenNodes Offset of every node written, by its signature
+     * @return The offset of the node in the file
+     * @throws IOException Raised if the node could not be written
+     */
+    private int writeNode(DataOutputStream out, Node node, Map<String, Integer> writtenNodes) throws IOException {
+        StringBuilder signature = new StringBuilder();
+        byte[] string = new byte[MAX_NODE_STRING];
+        int stringLength = 0;
+        while (!node.terminal && node.children.size() == 1 && stringLength < MAX_NODE_STRING) {
+            Map.Entry<Integer, Node> child = node.children.firstEntry();
+            string[stringLength++] = child.getKey().byteValue();
+            signature.append(child.getKey()).append('.');
+            node = child.getValue();
+        }
+        signature.append(node.terminal ? 'T' : 'N');
+        int[] labels = new int[node.children.size()];
+        int[] offsets = new int[node.children.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+            labels[i] = child.getKey();
+            offsets[i] = this.writeNode(out, child.getValue(), writtenNodes);
+            signature.append(',').append(labels[i]).append(':').append(offsets[i]);
+            i++;
+        }
+        Integer offset = writtenNodes.get(signature.toString());
+        if (offset != null) {
+            return offset;
+        }
+        offset = out.size();
+        out.writeByte(node.terminal ? TERMINAL_FLAG : 0);
+        out.writeByte(stringLength);
+        out.write(string, 0, stringLength);
+        out.writeShort(labels.length);
+        for (i = 0; i < labels.length; i++) {
+            out.writeByte(labels[i]);
+            out.writeInt(offsets[i]);
+        }
+        writtenNodes.put(signature.toString(), offset);
+        return offset;
+    }
+}
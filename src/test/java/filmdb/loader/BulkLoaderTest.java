@@ -0,0 +1,126 @@
+package filmdb.loader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link BulkLoader} against a stub of the Bulk API that answers with canned responses
+ */
+public class BulkLoaderTest {
+    private static final String ACCEPTED = "{\"took\":1,\"errors\":false,\"items\":[]}";
+
+    private HttpServer server;
+    // Responses of the next requests (status and body). When empty, every request is accepted
+    private ConcurrentLinkedQueue<Object[]> responses;
+    // Bodies of the requests received, in order
+    private List<String> requests;
+
+    @Before
+    public void startServer() throws IOException {
+        this.responses = new ConcurrentLinkedQueue<>();
+        this.requests = Collections.synchronizedList(new ArrayList<>());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/films/_bulk", this::handle);
+        this.server.start();
+    }
+
+    @After
+    public void stopServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void retriesTheRequestsThrottledWithBackoff() throws Exception {
+        this.responses.add(new Object[]{429, "{\"error\":\"too many requests\"}"});
+        long start = System.currentTimeMillis();
+        BulkLoader loader = this.newLoader();
+        loader.add(action(1), source(1));
+        loader.add(action(2), source(2));
+        loader.close();
+
+        assertEquals(2, loader.getIndexedDocs());
+        assertEquals(0, loader.getFailedDocs());
+        assertEquals(2, loader.getRetriedDocs());
+        assertEquals(1, loader.getThrottledRequests());
+        assertEquals(2, this.requests.size());
+        assertEquals(this.requests.get(0), this.requests.get(1));
+        // The retry waits for the initial backoff (500 ms)
+        assertTrue(System.currentTimeMillis() - start >= 500);
+    }
+
+    @Test
+    public void retriesOnlyTheItemsRejectedWithARetryableStatus() throws Exception {
+        this.responses.add(new Object[]{200, "{\"took\":1,\"errors\":true,\"items\":["
+                + "{\"index\":{\"_id\":\"1\",\"status\":201}},"
+                + "{\"index\":{\"_id\":\"2\",\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\"}}},"
+                + "{\"index\":{\"_id\":\"3\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}},"
+                + "{\"index\":{\"_id\":\"4\",\"status\":503,\"error\":{\"type\":\"unavailable_shards_exception\"}}}]}"});
+        BulkLoader loader = this.newLoader();
+        for (int id = 1; id <= 4; id++) {
+            loader.add(action(id), source(id));
+        }
+        loader.close();
+
+        assertEquals(3, loader.getIndexedDocs());
+        assertEquals(1, loader.getFailedDocs());
+        assertEquals(2, loader.getRetriedDocs());
+        assertEquals(2, this.requests.size());
+        String retry = this.requests.get(1);
+        assertEquals(action(2) + "\n" + source(2) + "\n" + action(4) + "\n" + source(4) + "\n", retry);
+        assertFalse(retry.contains("\"_id\":\"1\""));
+        assertFalse(retry.contains("\"_id\":\"3\""));
+    }
+
+    private BulkLoader newLoader() throws IOException {
+        return new BulkLoader("http://localhost:" + this.server.getAddress().getPort() + "/films/_bulk", 1, 1024 * 1024);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        this.requests.add(readFully(exchange.getRequestBody()));
+        Object[] response = this.responses.poll();
+        int status = response == null ? 200 : (Integer) response[0];
+        byte[] body = (response == null ? ACCEPTED : (String) response[1]).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String action(int id) {
+        return "{\"index\":{\"_id\":\"" + id + "\"}}";
+    }
+
+    private static String source(int id) {
+        return "{\"imdbID\":" + id + ",\"title\":\"Film " + id + "\"}";
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}